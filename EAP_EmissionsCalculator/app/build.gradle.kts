@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application)
+    alias(libs.plugins.baselineprofile)
 }
 
 android {
@@ -18,7 +19,8 @@ android {
 
     buildTypes {
         release {
-            isMinifyEnabled = false
+            isMinifyEnabled = true
+            isShrinkResources = true
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
@@ -33,14 +35,16 @@ android {
 
 dependencies {
 
+    implementation(project(":engine"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.recyclerview)
 
-    implementation("org.apache.xmlbeans:xmlbeans:5.0.3")
-    implementation("org.apache.commons:commons-compress:1.21")
-    implementation("commons-io:commons-io:2.11.0")
+    implementation(libs.commons.compress)
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":baselineprofile"))
     implementation("androidx.core:core:1.8.0")
     implementation("com.google.android.material:material:1.6.1")
     testImplementation(libs.junit)
@@ -18,4 +18,15 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# FactorCatalogue loads emission_factors.json relative to its own package, so the class must
+# keep its name.
+-keepnames class com.example.eap_emissionscalculator.engine.FactorCatalogue
+
+# Optional codecs of commons-compress that the app does not bundle or use.
+-dontwarn org.tukaani.xz.**
+-dontwarn com.github.luben.zstd.**
+-dontwarn org.brotli.dec.**
+-dontwarn org.objectweb.asm.**
+-dontwarn org.osgi.framework.**
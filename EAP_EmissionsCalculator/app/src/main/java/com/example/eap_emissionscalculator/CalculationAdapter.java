@@ -0,0 +1,224 @@
+package com.example.eap_emissionscalculator;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.eap_emissionscalculator.engine.EnergySource;
+import com.example.eap_emissionscalculator.engine.FixedPointFormatter;
+import com.example.eap_emissionscalculator.engine.RecordIndex;
+import com.example.eap_emissionscalculator.engine.RecordStore;
+
+import java.util.List;
+
+/**
+ * Binds calculation records to recycled table rows. Only the rows on screen own views,
+ * so memory stays bounded by the viewport rather than by the size of the history; the
+ * records themselves live in the columns of a {@link RecordStore}.
+ *
+ * <p>While a {@link RecordIndex.Selection selection} is set only its rows are shown, so adapter
+ * positions and store rows differ; {@link #row} and {@link #positionOf} translate between them.
+ */
+class CalculationAdapter extends RecyclerView.Adapter<CalculationAdapter.RowHolder> {
+
+    static final Object PAYLOAD_RESULTS = new Object();
+    static final Object PAYLOAD_EDITABLE = new Object();
+
+    private final RecordStore records;
+    private final List<EnergySource> sources;
+    private final FixedPointFormatter formatter;
+    private final EditCoalescer edits;
+    private boolean editable;
+    private RecordIndex.Selection selection;
+
+    CalculationAdapter(RecordStore records, List<EnergySource> sources,
+                       FixedPointFormatter formatter, EditCoalescer edits) {
+        this.records = records;
+        this.sources = sources;
+        this.formatter = formatter;
+        this.edits = edits;
+        setHasStableIds(true);
+    }
+
+    void setEditable(boolean editable) {
+        if (this.editable == editable) return;
+        this.editable = editable;
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_EDITABLE);
+    }
+
+    /**
+     * Shows only the rows of {@code selection}, or every record when it is null.
+     */
+    void setSelection(RecordIndex.Selection selection) {
+        this.selection = selection;
+        notifyDataSetChanged();
+    }
+
+    boolean isFiltered() {
+        return selection != null;
+    }
+
+    int row(int position) {
+        return selection == null ? position : selection.row(position);
+    }
+
+    /**
+     * Returns the adapter position of store row {@code row}, or -1 if it is filtered out.
+     */
+    int positionOf(int row) {
+        return selection == null ? row : selection.indexOf(row);
+    }
+
+    @NonNull
+    @Override
+    public RowHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View row = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_calculation_row, parent, false);
+        return new RowHolder(row);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position) {
+        int row = row(position);
+        EnergySource source = sources.get(records.sourceIndex(row));
+        holder.recordId = records.id(row);
+        holder.bindingText = true;
+        holder.sourceCell.setText(source.name);
+        // A row rebound before the coalescer has run shows the edit that is still pending
+        setNumber(holder.quantityCell, holder.quantityChars,
+                edits.pendingQuantity(holder.recordId, records.quantity(row)));
+        holder.unitCell.setText(source.unit);
+        holder.bindingText = false;
+        bindResults(holder, row);
+        bindEditable(holder);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position, @NonNull List<Object> payloads) {
+        long start = PerfTrace.begin(PerfTrace.BIND_ROW);
+        long allocated = PerfTrace.allocatedBytes();
+        try {
+            bind(holder, position, payloads);
+        } finally {
+            PerfTrace.end(PerfTrace.BIND_ROW, start, allocated);
+        }
+        PerfTrace.ROWS_BOUND.increment();
+    }
+
+    private void bind(RowHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_RESULTS) {
+                bindResults(holder, row(position));
+            } else if (payload == PAYLOAD_EDITABLE) {
+                if (!editable) {
+                    holder.bindingText = true;
+                    setNumber(holder.quantityCell, holder.quantityChars,
+                            records.quantity(row(position)));
+                    holder.bindingText = false;
+                }
+                bindEditable(holder);
+            }
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return selection == null ? records.size() : selection.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return records.id(row(position));
+    }
+
+    private void bindResults(RowHolder holder, int row) {
+        setNumber(holder.energyCell, holder.energyChars, records.energy(row));
+        setNumber(holder.emissionsCell, holder.emissionsChars, records.emissions(row));
+    }
+
+    private void bindEditable(RowHolder holder) {
+        holder.quantityCell.setEnabled(editable);
+        holder.quantityCell.setFocusable(editable);
+        holder.quantityCell.setFocusableInTouchMode(editable);
+        if (!editable) {
+            holder.quantityCell.clearFocus();
+        }
+    }
+
+    /**
+     * TextView keeps a reference to the char array rather than copying it, so every cell needs
+     * a buffer of its own that is only rewritten right before the next setText.
+     */
+    private void setNumber(TextView cell, char[] chars, double value) {
+        int length = formatter.format(value, chars);
+        if (length < 0) {
+            cell.setText(formatter.format(value));
+        } else {
+            cell.setText(chars, 0, length);
+        }
+    }
+
+    class RowHolder extends RecyclerView.ViewHolder implements TextWatcher {
+        final TextView sourceCell;
+        final EditText quantityCell;
+        final TextView unitCell;
+        final TextView energyCell;
+        final TextView emissionsCell;
+        final char[] quantityChars = new char[FixedPointFormatter.BUFFER_SIZE];
+        final char[] energyChars = new char[FixedPointFormatter.BUFFER_SIZE];
+        final char[] emissionsChars = new char[FixedPointFormatter.BUFFER_SIZE];
+        private int recordId;
+        private boolean bindingText;
+
+        RowHolder(View itemView) {
+            super(itemView);
+            sourceCell = itemView.findViewById(R.id.sourceCell);
+            quantityCell = itemView.findViewById(R.id.quantityCell);
+            unitCell = itemView.findViewById(R.id.unitCell);
+            energyCell = itemView.findViewById(R.id.energyCell);
+            emissionsCell = itemView.findViewById(R.id.emissionsCell);
+            quantityCell.addTextChangedListener(this);
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (bindingText || !editable) return;
+
+            String newQuantityStr = s.toString().trim();
+            double newQuantity = 0.0;
+
+            if (!newQuantityStr.isEmpty()) {
+                try {
+                    newQuantity = Double.parseDouble(newQuantityStr);
+                } catch (NumberFormatException e) {
+                    edits.remove(recordId);
+                    return;
+                }
+                if (newQuantity < 0) {
+                    edits.remove(recordId);
+                    return;
+                }
+            }
+
+            edits.put(recordId, newQuantity);
+        }
+    }
+}
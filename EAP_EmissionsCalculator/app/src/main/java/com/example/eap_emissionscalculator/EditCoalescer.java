@@ -0,0 +1,100 @@
+package com.example.eap_emissionscalculator;
+
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Collects quantity edits keyed by record id and hands them over in one batch on the first frame
+ * after typing pauses, so editing many rows costs one totals update and one layout pass.
+ */
+class EditCoalescer implements Choreographer.FrameCallback {
+
+    interface Applier {
+        /**
+         * Receives the pending edits. The arrays are reused once this returns and only the first
+         * {@code count} entries are valid.
+         */
+        void applyEdits(int[] recordIds, double[] quantities, int count);
+    }
+
+    private static final long DEBOUNCE_MS = 300;
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Applier applier;
+    private int[] recordIds = new int[16];
+    private double[] quantities = new double[16];
+    private int count;
+    private boolean applying;
+
+    EditCoalescer(Applier applier) {
+        this.applier = applier;
+    }
+
+    void put(int recordId, double quantity) {
+        int index = indexOf(recordId);
+        if (index < 0) {
+            if (count == recordIds.length) {
+                recordIds = Arrays.copyOf(recordIds, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
+            }
+            index = count++;
+            recordIds[index] = recordId;
+        }
+        quantities[index] = quantity;
+
+        choreographer.removeFrameCallback(this);
+        choreographer.postFrameCallbackDelayed(this, DEBOUNCE_MS);
+    }
+
+    /**
+     * Drops a pending edit, e.g. when the cell no longer holds a valid quantity.
+     */
+    void remove(int recordId) {
+        int index = indexOf(recordId);
+        if (index < 0) return;
+        count--;
+        recordIds[index] = recordIds[count];
+        quantities[index] = quantities[count];
+    }
+
+    /**
+     * Returns the quantity still waiting to be applied to a record, or {@code fallback}.
+     */
+    double pendingQuantity(int recordId, double fallback) {
+        int index = indexOf(recordId);
+        return index < 0 ? fallback : quantities[index];
+    }
+
+    /**
+     * Applies pending edits now instead of waiting for the next frame.
+     */
+    void flush() {
+        choreographer.removeFrameCallback(this);
+        if (count == 0 || applying) return;
+        applying = true;
+        try {
+            applier.applyEdits(recordIds, quantities, count);
+        } finally {
+            count = 0;
+            applying = false;
+        }
+    }
+
+    void clear() {
+        choreographer.removeFrameCallback(this);
+        count = 0;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        flush();
+    }
+
+    private int indexOf(int recordId) {
+        for (int i = 0; i < count; i++) {
+            if (recordIds[i] == recordId) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.eap_emissionscalculator;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.eap_emissionscalculator.engine.FixedPointFormatter;
+import com.example.eap_emissionscalculator.engine.MappedCsvExport;
+
+/**
+ * Shows the rows of a {@link MappedCsvExport} read-only in the table row layout. A row is
+ * decoded from the mapped file only when it is bound, so nothing is held for rows off screen.
+ */
+class ExportViewAdapter extends RecyclerView.Adapter<ExportViewAdapter.RowHolder> {
+
+    private final MappedCsvExport export;
+    private final FixedPointFormatter formatter;
+    private final MappedCsvExport.Row row = new MappedCsvExport.Row();
+
+    ExportViewAdapter(MappedCsvExport export, FixedPointFormatter formatter) {
+        this.export = export;
+        this.formatter = formatter;
+    }
+
+    @NonNull
+    @Override
+    public RowHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_calculation_row, parent, false);
+        return new RowHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position) {
+        export.read(position, row);
+        holder.sourceCell.setText(row.source);
+        setNumber(holder.quantityCell, holder.quantityChars, row.quantity);
+        holder.unitCell.setText(row.unit);
+        setNumber(holder.energyCell, holder.energyChars, row.energy);
+        setNumber(holder.emissionsCell, holder.emissionsChars, row.emissions);
+    }
+
+    @Override
+    public int getItemCount() {
+        return export.size();
+    }
+
+    private void setNumber(TextView cell, char[] chars, double value) {
+        int length = formatter.format(value, chars);
+        if (length < 0) {
+            cell.setText(formatter.format(value));
+        } else {
+            cell.setText(chars, 0, length);
+        }
+    }
+
+    static class RowHolder extends RecyclerView.ViewHolder {
+        final TextView sourceCell;
+        final EditText quantityCell;
+        final TextView unitCell;
+        final TextView energyCell;
+        final TextView emissionsCell;
+        final char[] quantityChars = new char[FixedPointFormatter.BUFFER_SIZE];
+        final char[] energyChars = new char[FixedPointFormatter.BUFFER_SIZE];
+        final char[] emissionsChars = new char[FixedPointFormatter.BUFFER_SIZE];
+
+        RowHolder(View itemView) {
+            super(itemView);
+            sourceCell = itemView.findViewById(R.id.sourceCell);
+            quantityCell = itemView.findViewById(R.id.quantityCell);
+            unitCell = itemView.findViewById(R.id.unitCell);
+            energyCell = itemView.findViewById(R.id.energyCell);
+            emissionsCell = itemView.findViewById(R.id.emissionsCell);
+            quantityCell.setEnabled(false);
+            quantityCell.setFocusable(false);
+        }
+    }
+}
@@ -2,104 +2,181 @@ package com.example.eap_emissionscalculator;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.res.ColorStateList;
-import android.graphics.Color;
+import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
-import android.text.Editable;
-import android.text.TextWatcher;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Trace;
 import android.util.Log;
-import android.view.Gravity;
+import android.util.TypedValue;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.EditText;
 import android.widget.HorizontalScrollView;
 import android.widget.ImageView;
-import android.widget.ScrollView;
+import android.widget.ProgressBar;
 import android.widget.Spinner;
-import android.widget.TableLayout;
-import android.widget.TableRow;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.core.view.ViewCompat;
-
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.eap_emissionscalculator.engine.CsvExporter;
+import com.example.eap_emissionscalculator.engine.CsvImporter;
+import com.example.eap_emissionscalculator.engine.EditJournal;
+import com.example.eap_emissionscalculator.engine.EmissionsEngine;
+import com.example.eap_emissionscalculator.engine.EnergySource;
+import com.example.eap_emissionscalculator.engine.ExportArchive;
+import com.example.eap_emissionscalculator.engine.FactorCatalogue;
+import com.example.eap_emissionscalculator.engine.FixedPointFormatter;
+import com.example.eap_emissionscalculator.engine.HistoryLog;
+import com.example.eap_emissionscalculator.engine.IoScheduler;
+import com.example.eap_emissionscalculator.engine.MappedCsvExport;
+import com.example.eap_emissionscalculator.engine.Recalculation;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+import com.example.eap_emissionscalculator.engine.RecordIndex;
+import com.example.eap_emissionscalculator.engine.RecordStore;
+import com.example.eap_emissionscalculator.engine.Rollup;
+import com.example.eap_emissionscalculator.engine.Rollups;
+import com.example.eap_emissionscalculator.engine.RunningTotals;
+import com.example.eap_emissionscalculator.engine.ScenarioEngine;
+import com.example.eap_emissionscalculator.engine.SiteTags;
+import com.example.eap_emissionscalculator.engine.XlsxExporter;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MainActivity extends AppCompatActivity {
 
-    private static class EnergySource {
-        String name;
-        String unit;
-        double energyFactor;
-        double emissionFactor;
-
-        EnergySource(String name, String unit, double energyFactor, double emissionFactor) {
-            this.name = name;
-            this.unit = unit;
-            this.energyFactor = energyFactor;
-            this.emissionFactor = emissionFactor;
-        }
+    private static final int STORAGE_PERMISSION_CODE = 100;
+    private static final String HISTORY_FILE_NAME = "history.log";
+    private static final String SITES_FILE_NAME = "sites.txt";
+    private static final String FACTORS_FILE_NAME = "emission_factors.json";
+    private static final String PREF_FACTOR_SET = "factorSet";
+    private static final String RESET_FILE_PREFIX = HISTORY_FILE_NAME + ".reset-";
+    private static final int HISTORY_PAGE_SIZE = 2048;
+    private static final String PREF_EXACT_ARITHMETIC = "exactArithmetic";
+
+    private static final int IO_QUEUE_CAPACITY = 64;
+    private static final String EXPORT_JOB = "export";
+    private static final String METRICS_JOB = "metrics";
+    private static final String ARCHIVE_DIR_NAME = "Emissions";
+    private static final int SCENARIOS_SHOWN = 20;
+    private static final long ARCHIVE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long ARCHIVE_MAX_AGE_MS = 365L * 24 * 60 * 60 * 1000;
+    private static final String[] CSV_MIME_TYPES = {
+            "text/csv", "text/comma-separated-values", "text/plain", "application/csv"};
+
+    // All file I/O runs here. Shared by all activity instances so that writes queued by a
+    // destroyed instance finish before a recreated one reloads the history.
+    private static final IoScheduler ioScheduler =
+            new IoScheduler(IO_QUEUE_CAPACITY, new Handler(Looper.getMainLooper())::post,
+                    e -> Log.e("FileError", "Грешка във фонова задача", e));
+    // Opened on first use and only touched on the I/O thread
+    private static ExportArchive exportArchive;
+
+    private interface HistoryWrite {
+        void apply(HistoryLog log) throws IOException;
     }
 
-    private static class CalculationRecord {
-        EnergySource source;
-        double quantity;
-        double energy;
-        double emissions;
-        EditText quantityEditText;
-        TextView energyTextView;
-        TextView emissionsTextView;
-
-        CalculationRecord(EnergySource source, double quantity) {
-            this.source = source;
-            this.quantity = quantity;
-            this.energy = quantity * source.energyFactor;
-            this.emissions = quantity * source.emissionFactor;
+    /**
+     * What a reset moved aside: the records, their totals and rollups, and the history log file.
+     * Undoing or redoing the reset exchanges them with the current ones.
+     */
+    private static final class ResetSnapshot {
+        final RecordStore records;
+        RunningTotals totals;
+        Rollups rollups;
+        final File logFile;
+
+        ResetSnapshot(RecordStore records, RunningTotals totals, Rollups rollups, File logFile) {
+            this.records = records;
+            this.totals = totals;
+            this.rollups = rollups;
+            this.logFile = logFile;
         }
     }
 
-    private static final int STORAGE_PERMISSION_CODE = 100;
-
     private Spinner energySourceSpinner;
-    private TextInputEditText quantityInput;
+    private TextInputEditText quantityInput, siteInput;
     private TextInputLayout quantityInputLayout;
     private TextView totalEnergyTextView, totalEmissionsTextView;
-    private MaterialButton calculateButton, exportButton, resetButton, editTableButton;
-    private TableLayout resultsTable;
+    private MaterialButton calculateButton, exportButton, resetButton, editTableButton, importButton,
+            summaryButton, factorsButton, undoButton, redoButton, filterButton;
+    private RecyclerView resultsRecyclerView;
     private HorizontalScrollView tableHorizontalScrollView;
-    private ScrollView tableVerticalScrollView;
     private ImageView scrollLeftButton, scrollRightButton;
-    private TextView tableNavigationHint;
+    private TextView tableNavigationHint, filterSummaryTextView;
 
     private final List<EnergySource> energySources = new ArrayList<>();
-    private final List<CalculationRecord> calculationHistory = new ArrayList<>();
-    private double totalEnergy = 0.0;
-    private double totalEmissions = 0.0;
-    private Handler scrollHandler = new Handler();
-    private Runnable scrollRunnable;
+    private FactorCatalogue catalogue;
+    private int factorSet;
+    private EmissionsEngine engine;
+    private final RecordStore calculationHistory = new RecordStore();
+    private CalculationAdapter calculationAdapter;
+    private RecordIndex recordIndex;
+    private RecordIndex.Filter filter;
+    private RecordIndex.Selection selection;
+    private final EditCoalescer editCoalescer = new EditCoalescer(this::applyQuantityEdits);
+    private final EditJournal journal = new EditJournal(this::releaseResetSnapshot);
+    private int resetCount = 0;
+    private boolean historyControlsEnabled = false;
+    private RunningTotals totals;
+    private Rollups rollups;
+    private SiteTags siteTags = new SiteTags();
+    private final FixedPointFormatter formatter = new FixedPointFormatter(Locale.getDefault());
+    private final char[] totalEnergyChars = new char[FixedPointFormatter.BUFFER_SIZE];
+    private final char[] totalEmissionsChars = new char[FixedPointFormatter.BUFFER_SIZE];
     private boolean isEditMode = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final StartupTracer startupTracer = new StartupTracer();
+    private final CsvExporter csvExporter = new CsvExporter();
+    private final XlsxExporter xlsxExporter = new XlsxExporter();
+    private boolean exportAsXlsx = false;
+    private HistoryLog historyLog;
+    private boolean historyLoaded = false;
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importCsv);
+    private final ActivityResultLauncher<String[]> openExportLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::openExport);
 
     @SuppressLint("MissingInflatedId")
     @Override
@@ -114,33 +191,65 @@ public class MainActivity extends AppCompatActivity {
             return insets;
         });
 
-        initializeEnergySources();
-        initializeViews();
-        setupSpinner();
-        setupTable();
-        setupButtonListeners();
-        setupTableScrollListeners();
-    }
-
-    private void initializeEnergySources() {
-        energySources.add(new EnergySource("Природен газ", "м³", 9.3, 1.9));
-        energySources.add(new EnergySource("Нафта", "л", 10.00, 2.70));
-        energySources.add(new EnergySource("Пропан-бутан", "л", 7.30, 1.7));
-        energySources.add(new EnergySource("Черни каменни въглища", "kg", 5.80, 2.0));
-        energySources.add(new EnergySource("Антрацитни въглища", "kg", 8.6, 3));
-        energySources.add(new EnergySource("Брикети от кафяви въглища", "kg", 5.60, 2));
-        energySources.add(new EnergySource("Кафяви въглища", "kg", 2.9, 1.1));
-        energySources.add(new EnergySource("Литнитни/кафяви каменни въглища", "kg", 3.7, 1.4));
-        energySources.add(new EnergySource("Дървени пелети, брикети", "kg", 4.70, 0.20));
-        energySources.add(new EnergySource("Иглолистна дървесина", "m³", 1358, 58.4));
-        energySources.add(new EnergySource("Широколистна дървесина", "m³", 1940, 83.4));
-        energySources.add(new EnergySource("Електричество", "kWh", 1.00, 0.8));
-        energySources.add(new EnergySource("Топлина от централизирано топлоснабдяване", "kWh", 1, 0.3));
+        // Only what the first frame shows is set up here. The catalogue and history load on the
+        // I/O thread meanwhile, and listeners are attached once the first frame is drawn.
+        Trace.beginSection("MainActivity.onCreate");
+        try {
+            initializeViews();
+            setupTable();
+            setHistoryControlsEnabled(false);
+            loadHistory();
+            startupTracer.onFirstFrame(findViewById(R.id.scrollView), () -> {
+                setupButtonListeners();
+                setupTableScrollListeners();
+                if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                    PerfTrace.setAllocationCounting(true);
+                }
+            });
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void initializeEnergySources(FactorCatalogue loaded, int loadedFactorSet) {
+        catalogue = loaded;
+        factorSet = loadedFactorSet;
+        engine = catalogue.engine(factorSet);
+        energySources.addAll(engine.sources());
+        totals = new RunningTotals(catalogue.sourceCount(), catalogue.isExact());
+        rollups = new Rollups(ZoneId.systemDefault());
+        recordIndex = new RecordIndex(calculationHistory, catalogue.sourceCount());
+        selection = new RecordIndex.Selection(catalogue.sourceCount(), catalogue.isExact());
+    }
+
+    /**
+     * Uses an updated factor file from the app's files directory when it is newer than the
+     * catalogue bundled with the app and only appends to it, since the history stores sources
+     * and factor sets by position.
+     */
+    private FactorCatalogue loadCatalogue() {
+        FactorCatalogue bundled = FactorCatalogue.bundled();
+        File updated = new File(getFilesDir(), FACTORS_FILE_NAME);
+        if (!updated.exists()) return bundled;
+
+        try (InputStream in = new FileInputStream(updated)) {
+            FactorCatalogue catalogue = FactorCatalogue.parse(in);
+            if (catalogue.version() <= bundled.version()) return bundled;
+            if (!catalogue.extendsCatalogue(bundled)) {
+                Log.e("FileError", "Обновените коефициенти пренареждат източниците или наборите");
+                return bundled;
+            }
+            return catalogue;
+        } catch (IOException e) {
+            Log.e("FileError", "Грешка при зареждане на коефициентите", e);
+            return bundled;
+        }
     }
 
     private void initializeViews() {
         energySourceSpinner = findViewById(R.id.energySourceSpinner);
         quantityInput = findViewById(R.id.quantityInput);
+        siteInput = findViewById(R.id.siteInput);
         quantityInputLayout = findViewById(R.id.quantityInputLayout);
         totalEnergyTextView = findViewById(R.id.totalEnergyTextView);
         totalEmissionsTextView = findViewById(R.id.totalEmissionsTextView);
@@ -148,22 +257,31 @@ public class MainActivity extends AppCompatActivity {
         exportButton = findViewById(R.id.exportButton);
         resetButton = findViewById(R.id.resetButton);
         editTableButton = findViewById(R.id.editTableButton);
-        resultsTable = findViewById(R.id.resultsTable);
+        importButton = findViewById(R.id.importButton);
+        summaryButton = findViewById(R.id.summaryButton);
+        factorsButton = findViewById(R.id.factorsButton);
+        undoButton = findViewById(R.id.undoButton);
+        redoButton = findViewById(R.id.redoButton);
+        filterButton = findViewById(R.id.filterButton);
+        resultsRecyclerView = findViewById(R.id.resultsRecyclerView);
         tableHorizontalScrollView = findViewById(R.id.tableHorizontalScrollView);
-        tableVerticalScrollView = findViewById(R.id.tableVerticalScrollView);
         scrollLeftButton = findViewById(R.id.scrollLeftButton);
         scrollRightButton = findViewById(R.id.scrollRightButton);
         tableNavigationHint = findViewById(R.id.tableNavigationHint);
+        filterSummaryTextView = findViewById(R.id.filterSummaryTextView);
     }
 
-    private void setupSpinner() {
-        List<String> sourceNames = new ArrayList<>();
-        for (EnergySource source : energySources) {
-            sourceNames.add(source.name + " (" + source.unit + ")");
+    private static List<String> sourceLabels(List<EnergySource> sources) {
+        List<String> labels = new ArrayList<>(sources.size());
+        for (EnergySource source : sources) {
+            labels.add(source.name + " (" + source.unit + ")");
         }
+        return labels;
+    }
 
+    private void setupSpinner(List<String> sourceLabels) {
         ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                this, R.layout.spinner_item, sourceNames);
+                this, R.layout.spinner_item, sourceLabels);
         adapter.setDropDownViewResource(R.layout.spinner_dropdown_item);
         energySourceSpinner.setAdapter(adapter);
 
@@ -171,7 +289,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 quantityInput.setText("");
-                calculateButton.setEnabled(true);
+                calculateButton.setEnabled(historyLoaded);
                 ((TextView) view).setTextColor(ContextCompat.getColor(MainActivity.this, R.color.dark_blue));
             }
 
@@ -182,45 +300,189 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void setupTable() {
-        resultsTable.removeAllViews();
+        calculationAdapter = new CalculationAdapter(calculationHistory, energySources, formatter,
+                editCoalescer);
+        resultsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        resultsRecyclerView.setHasFixedSize(true);
+        resultsRecyclerView.setItemAnimator(null);
+        resultsRecyclerView.setAdapter(calculationAdapter);
+    }
 
-        TableRow headerRow = new TableRow(this);
-        headerRow.setBackgroundColor(ContextCompat.getColor(this, R.color.dark_blue));
+    /**
+     * Loads the factor catalogue and then reloads the persisted history page by page. Controls
+     * that change the history stay disabled until every page has been added, so new rows keep
+     * their position in the log.
+     */
+    private void loadHistory() {
+        File path = new File(getFilesDir(), HISTORY_FILE_NAME);
+        File sitesPath = new File(getFilesDir(), SITES_FILE_NAME);
+
+        ioScheduler.execute(() -> {
+            deleteResetFiles();
+            SharedPreferences preferences = getPreferences(MODE_PRIVATE);
+            FactorCatalogue loadedCatalogue = loadCatalogue().withExactArithmetic(
+                    preferences.getBoolean(PREF_EXACT_ARITHMETIC, false));
+            // The chosen set is kept by its stable id; a set dropped from the catalogue falls back
+            // to the default.
+            int savedFactorSet = loadedCatalogue.factorSetIndex(preferences.getString(PREF_FACTOR_SET, ""));
+            int loadedFactorSet = savedFactorSet >= 0 ? savedFactorSet : loadedCatalogue.defaultFactorSet();
+            List<String> sourceLabels = sourceLabels(loadedCatalogue.engine(loadedFactorSet).sources());
+            mainHandler.post(() -> {
+                initializeEnergySources(loadedCatalogue, loadedFactorSet);
+                setupSpinner(sourceLabels);
+            });
+            try {
+                SiteTags loadedTags = SiteTags.load(sitesPath);
+                mainHandler.post(() -> siteTags = loadedTags);
+                historyLog = HistoryLog.open(path);
+                int size = historyLog.size();
+                int overflowed = 0;
+                for (int from = 0; from < size; from += HISTORY_PAGE_SIZE) {
+                    RecordBatch page = new RecordBatch(HISTORY_PAGE_SIZE);
+                    historyLog.read(from, HISTORY_PAGE_SIZE, page);
+                    // Each row is calculated with the factor set it was recorded with. Logged rows
+                    // are never dropped, or later rows would no longer match their log slots
+                    overflowed += loadedCatalogue.calculateKeepingOverflow(page);
+                    mainHandler.post(() -> appendHistoryPage(page));
+                }
+                if (overflowed > 0) {
+                    int rows = overflowed;
+                    mainHandler.post(() -> Toast.makeText(this, "Редове без резултат: " + rows
+                            + " (стойностите са твърде големи за точно смятане)", Toast.LENGTH_LONG).show());
+                }
+            } catch (IOException e) {
+                Log.e("FileError", "Грешка при зареждане на историята", e);
+            }
+            mainHandler.post(() -> {
+                historyLoaded = true;
+                setHistoryControlsEnabled(true);
+                startupTracer.onInteractive(this);
+            });
+        });
+    }
 
-        String[] headers = {"Източник", "Количество", "Ед.", "Енергия (kWh)", "CO₂ (kg)"};
-        for (String header : headers) {
-            TextView textView = createTableCell(header, true);
-            headerRow.addView(textView);
+    /**
+     * Deletes history logs moved aside by resets of an earlier session, which can no longer be
+     * undone.
+     */
+    private void deleteResetFiles() {
+        File[] files = getFilesDir().listFiles((dir, name) -> name.startsWith(RESET_FILE_PREFIX));
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
         }
+    }
 
-        resultsTable.addView(headerRow);
+    /**
+     * Adds a calculated page of logged rows to the table.
+     */
+    private void appendHistoryPage(RecordBatch page) {
+        long start = PerfTrace.begin(PerfTrace.APPEND_PAGE);
+        long allocated = PerfTrace.allocatedBytes();
+        // Undoing an earlier add would now remove an imported row instead
+        journal.clear();
+        int first = calculationHistory.addAll(page);
+        totals.addAll(calculationHistory, first, calculationHistory.size());
+        rollups.addAll(calculationHistory, first, calculationHistory.size());
+        recordIndex.added(first, calculationHistory.size());
+        notifyRowsInserted(first, page.size());
+        updateTotals();
+        PerfTrace.end(PerfTrace.APPEND_PAGE, start, allocated);
     }
 
-    private TextView createTableCell(String text, boolean isHeader) {
-        TextView textView = new TextView(this);
-        textView.setText(text);
-        textView.setPadding(24, 16, 24, 16);
-        textView.setTextSize(14);
-        textView.setGravity(Gravity.CENTER);
-        textView.setSingleLine(false);
+    private void setHistoryControlsEnabled(boolean enabled) {
+        calculateButton.setEnabled(enabled);
+        resetButton.setEnabled(enabled);
+        editTableButton.setEnabled(enabled);
+        importButton.setEnabled(enabled);
+        factorsButton.setEnabled(enabled);
+        summaryButton.setEnabled(enabled);
+        filterButton.setEnabled(enabled);
+        historyControlsEnabled = enabled;
+        updateUndoButtons();
+    }
 
-        if (isHeader) {
-            textView.setTextColor(Color.WHITE);
-            textView.setTypeface(null, android.graphics.Typeface.BOLD);
-        } else {
-            textView.setTextColor(ContextCompat.getColor(this, R.color.dark_blue));
-            textView.setBackgroundResource(R.drawable.cell_border);
-        }
+    private void writeHistory(HistoryWrite write) {
+        ioScheduler.execute(() -> {
+            if (historyLog == null) return;
+            try {
+                write.apply(historyLog);
+            } catch (IOException | RuntimeException e) {
+                Log.e("FileError", "Грешка при запис на историята", e);
+            }
+        });
+    }
 
-        TableRow.LayoutParams params = new TableRow.LayoutParams(
-                TableRow.LayoutParams.WRAP_CONTENT,
-                TableRow.LayoutParams.WRAP_CONTENT,
-                1f
-        );
-        params.setMargins(1, 1, 1, 1);
-        textView.setLayoutParams(params);
+    /**
+     * Parses the chosen CSV on the I/O thread, appending each accepted batch to the
+     * history log and then to the table. As with loading, controls that change the history
+     * stay disabled until the import has finished.
+     */
+    private void importCsv(Uri uri) {
+        if (uri == null) return;
+        importCsv(() -> {
+            InputStream in = getContentResolver().openInputStream(uri);
+            if (in == null) throw new FileNotFoundException(uri.toString());
+            return in;
+        });
+    }
 
-        return textView;
+    private interface InputOpener {
+        InputStream open() throws IOException;
+    }
+
+    private void importCsv(InputOpener input) {
+        setHistoryControlsEnabled(false);
+        tableNavigationHint.setText("Импортиране...");
+
+        // Imported rows are tagged with the site currently entered above the table
+        int site = internSite();
+        long createdAt = System.currentTimeMillis();
+        // The factor set and mode cannot change while the history controls are disabled
+        FactorCatalogue current = catalogue;
+
+        ioScheduler.execute(() -> {
+            CsvImporter importer = new CsvImporter(energySources, factorSet, site, createdAt,
+                    CsvImporter.DEFAULT_BATCH_SIZE);
+            long start = PerfTrace.begin(PerfTrace.IMPORT);
+            long allocated = PerfTrace.allocatedBytes();
+            try (InputStream in = input.open()) {
+                int[] overflowed = new int[1];
+                CsvImporter.Result result = importer.read(in, batch -> {
+                    // Calculated before logging, so a batch that overflows is never persisted
+                    try {
+                        current.calculate(batch);
+                    } catch (ArithmeticException e) {
+                        overflowed[0] += batch.size();
+                        return;
+                    }
+                    if (historyLog != null) {
+                        historyLog.appendAll(batch, createdAt);
+                    }
+                    mainHandler.post(() -> appendHistoryPage(batch));
+                }, null);
+                int imported = result.imported - overflowed[0];
+                PerfTrace.ROWS_IMPORTED.add(imported);
+
+                mainHandler.post(() -> {
+                    setHistoryControlsEnabled(true);
+                    tableNavigationHint.setText("Дръпнете за навигация в таблицата");
+                    scrollTableToEnd();
+                    Toast.makeText(this, "Импортирани редове: " + imported
+                            + ", отхвърлени: " + (result.rejected + overflowed[0]),
+                            Toast.LENGTH_LONG).show();
+                });
+            } catch (IOException e) {
+                Log.e("FileError", "Грешка при импорт на CSV", e);
+                mainHandler.post(() -> {
+                    setHistoryControlsEnabled(true);
+                    tableNavigationHint.setText("Дръпнете за навигация в таблицата");
+                    Toast.makeText(this, "Грешка при импорт: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            } finally {
+                PerfTrace.end(PerfTrace.IMPORT, start, allocated);
+            }
+        });
     }
 
     private void setupButtonListeners() {
@@ -228,6 +490,24 @@ public class MainActivity extends AppCompatActivity {
         exportButton.setOnClickListener(v -> handleExport());
         resetButton.setOnClickListener(v -> resetCalculator());
         editTableButton.setOnClickListener(v -> toggleEditMode());
+        importButton.setOnClickListener(v -> importLauncher.launch(CSV_MIME_TYPES));
+        importButton.setOnLongClickListener(v -> {
+            openExportLauncher.launch(CSV_MIME_TYPES);
+            return true;
+        });
+        summaryButton.setOnClickListener(v -> showSummary());
+        filterButton.setOnClickListener(v -> showFilter());
+        undoButton.setOnClickListener(v -> undo());
+        redoButton.setOnClickListener(v -> redo());
+        summaryButton.setOnLongClickListener(v -> {
+            showMetrics();
+            return true;
+        });
+        exportButton.setOnLongClickListener(v -> {
+            showArchive();
+            return true;
+        });
+        factorsButton.setOnClickListener(v -> chooseFactorSet());
 
         scrollLeftButton.setOnClickListener(v -> {
             tableHorizontalScrollView.smoothScrollBy(-200, 0);
@@ -246,83 +526,60 @@ public class MainActivity extends AppCompatActivity {
         if (isEditMode) {
             editTableButton.setText("Потвърди промените");
             editTableButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(this, R.color.green)));
-            enableTableEditing();
+            calculationAdapter.setEditable(true);
             tableNavigationHint.setText("Редактиране на данните е активирано");
         } else {
             editTableButton.setText("Редактиране");
             editTableButton.setBackgroundTintList(ColorStateList.valueOf(ContextCompat.getColor(this, R.color.dark_blue)));
-            disableTableEditing();
-            tableNavigationHint.setText("Дръпнете за навигация в таблицата");
             saveTableChanges();
+            calculationAdapter.setEditable(false);
+            tableNavigationHint.setText("Дръпнете за навигация в таблицата");
 
             new Handler().postDelayed(() -> {
-                tableVerticalScrollView.fullScroll(ScrollView.FOCUS_DOWN);
+                scrollTableToEnd();
                 tableHorizontalScrollView.fullScroll(HorizontalScrollView.FOCUS_LEFT);
             }, 100);
         }
     }
 
-    private void enableTableEditing() {
-        for (CalculationRecord record : calculationHistory) {
-            if (record.quantityEditText != null) {
-                record.quantityEditText.setEnabled(true);
-                record.quantityEditText.setFocusable(true);
-                record.quantityEditText.setFocusableInTouchMode(true);
-            }
-        }
-    }
-
-    private void disableTableEditing() {
-        for (CalculationRecord record : calculationHistory) {
-            if (record.quantityEditText != null) {
-                record.quantityEditText.setEnabled(false);
-                record.quantityEditText.setFocusable(false);
-                record.quantityEditText.setFocusableInTouchMode(false);
-                record.quantityEditText.clearFocus();
-            }
-        }
-    }
-
     private void saveTableChanges() {
-        for (CalculationRecord record : calculationHistory) {
-            if (record.quantityEditText != null && record.quantityEditText.getText().toString().trim().isEmpty()) {
-                record.quantityEditText.setText("0");
-                record.quantity = 0;
-                record.energy = 0;
-                record.emissions = 0;
-                record.energyTextView.setText("0.00");
-                record.emissionsTextView.setText("0.00");
-            }
-        }
+        // Cells left empty are applied as zero quantities
+        editCoalescer.flush();
 
-        recalculateTotals();
+        updateTotals();
         Toast.makeText(this, "Промените са запазени!", Toast.LENGTH_SHORT).show();
     }
 
     private void setupTableScrollListeners() {
-        tableHorizontalScrollView.getViewTreeObserver().addOnScrollChangedListener(() -> {
-            checkScrollButtonsVisibility();
-        });
-
-        scrollRunnable = new Runnable() {
-            @Override
-            public void run() {
-                checkScrollButtonsVisibility();
-                scrollHandler.postDelayed(this, 100);
-            }
-        };
-        scrollHandler.postDelayed(scrollRunnable, 100);
+        // The arrows only change when the table scrolls horizontally or when the table or its
+        // viewport changes size, so they are updated from those callbacks instead of polling.
+        tableHorizontalScrollView.setOnScrollChangeListener(
+                (v, scrollX, scrollY, oldScrollX, oldScrollY) -> checkScrollButtonsVisibility());
+
+        View.OnLayoutChangeListener layoutListener =
+                (v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+                    if (right - left != oldRight - oldLeft) {
+                        checkScrollButtonsVisibility();
+                    }
+                };
+        tableHorizontalScrollView.addOnLayoutChangeListener(layoutListener);
+        tableHorizontalScrollView.getChildAt(0).addOnLayoutChangeListener(layoutListener);
     }
 
     private void checkScrollButtonsVisibility() {
+        View table = tableHorizontalScrollView.getChildAt(0);
+        if (table == null) return;
+
         int scrollX = tableHorizontalScrollView.getScrollX();
-        int maxScrollX = tableHorizontalScrollView.getChildAt(0).getWidth() - tableHorizontalScrollView.getWidth();
+        int maxScrollX = table.getWidth() - tableHorizontalScrollView.getWidth();
 
         scrollLeftButton.setVisibility(scrollX > 0 ? View.VISIBLE : View.GONE);
         scrollRightButton.setVisibility(scrollX < maxScrollX - 10 ? View.VISIBLE : View.GONE);
     }
 
     private void calculateEmissions() {
+        long start = PerfTrace.begin(PerfTrace.CALCULATE);
+        long allocated = PerfTrace.allocatedBytes();
         try {
             String quantityStr = quantityInput.getText().toString();
             if (quantityStr.isEmpty()) {
@@ -338,19 +595,19 @@ public class MainActivity extends AppCompatActivity {
             quantityInputLayout.setError(null);
 
             int selectedPosition = energySourceSpinner.getSelectedItemPosition();
-            EnergySource source = energySources.get(selectedPosition);
-
-            CalculationRecord record = new CalculationRecord(source, quantity);
-            calculationHistory.add(record);
-            addTableRow(record);
-
-            totalEnergy += record.energy;
-            totalEmissions += record.emissions;
+            int site = internSite();
+
+            int recordFactorSet = factorSet;
+            long createdAt = System.currentTimeMillis();
+            int row = addRecord(selectedPosition, recordFactorSet, site, createdAt, quantity);
+            journal.recordAdd(calculationHistory.id(row), selectedPosition, recordFactorSet, site,
+                    createdAt, quantity);
+            updateUndoButtons();
             updateTotals();
 
             new Handler().postDelayed(() -> {
                 tableHorizontalScrollView.fullScroll(HorizontalScrollView.FOCUS_RIGHT);
-                tableVerticalScrollView.fullScroll(ScrollView.FOCUS_DOWN);
+                scrollTableToEnd();
             }, 100);
 
             Toast.makeText(this, "Изчислението е добавено!", Toast.LENGTH_SHORT).show();
@@ -359,135 +616,670 @@ public class MainActivity extends AppCompatActivity {
 
         } catch (NumberFormatException e) {
             quantityInputLayout.setError("Моля въведете валидно количество");
+        } catch (ArithmeticException e) {
+            quantityInputLayout.setError("Количеството е твърде голямо");
+        } finally {
+            PerfTrace.end(PerfTrace.CALCULATE, start, allocated);
         }
     }
 
-    private void addTableRow(CalculationRecord record) {
-        TableRow row = new TableRow(this);
-        int position = calculationHistory.size() - 1;
+    private int addRecord(int source, int recordFactorSet, int site, long createdAt, double quantity) {
+        EmissionsEngine recordEngine = recordFactorSet == factorSet
+                ? engine : catalogue.engine(recordFactorSet);
+        double energy = recordEngine.energy(source, quantity);
+        double emissions = recordEngine.emissions(source, quantity);
+
+        int row = calculationHistory.add(source, recordFactorSet, site, createdAt, quantity,
+                energy, emissions);
+        recordIndex.added(row, row + 1);
+        notifyRowsInserted(row, 1);
+        writeHistory(log -> log.append(source, recordFactorSet, site, createdAt, quantity));
+        totals.add(source, energy, emissions);
+        rollups.add(source, site, createdAt, energy, emissions);
+        return row;
+    }
 
-        TextView sourceView = createTableCell(record.source.name, false);
-        row.addView(sourceView);
+    private void removeLastRecord() {
+        int row = calculationHistory.size() - 1;
+        int source = calculationHistory.sourceIndex(row);
+        double energy = calculationHistory.energy(row);
+        double emissions = calculationHistory.emissions(row);
+        totals.remove(source, energy, emissions);
+        rollups.remove(source, calculationHistory.site(row), calculationHistory.createdAt(row),
+                energy, emissions);
+        calculationHistory.truncate(row);
+        recordIndex.truncated(row);
+        notifyRowsRemoved(row, 1);
+        writeHistory(log -> log.truncate(row));
+    }
 
-        EditText quantityView = new EditText(this);
-        setupEditableCell(quantityView, String.format(Locale.getDefault(), "%.2f", record.quantity), position);
-        record.quantityEditText = quantityView;
-        quantityView.setFocusable(false);
-        quantityView.setFocusableInTouchMode(false);
-        quantityView.setEnabled(false);
-        row.addView(quantityView);
+    private void scrollTableToEnd() {
+        if (calculationAdapter.getItemCount() > 0) {
+            resultsRecyclerView.scrollToPosition(calculationAdapter.getItemCount() - 1);
+        }
+    }
 
-        TextView unitView = createTableCell(record.source.unit, false);
-        row.addView(unitView);
+    private void applyQuantityEdits(int[] recordIds, double[] quantities, int count) {
+        long start = PerfTrace.begin(PerfTrace.APPLY_EDITS);
+        long allocated = PerfTrace.allocatedBytes();
+        try {
+            applyChangedQuantities(recordIds, quantities, count);
+        } finally {
+            PerfTrace.end(PerfTrace.APPLY_EDITS, start, allocated);
+        }
+    }
 
-        TextView energyView = createTableCell(String.format(Locale.getDefault(), "%.2f", record.energy), false);
-        record.energyTextView = energyView;
-        row.addView(energyView);
+    private void applyChangedQuantities(int[] recordIds, double[] quantities, int count) {
+        int[] changedRows = new int[count];
+        double[] changedQuantities = new double[count];
+        int changed = 0;
+
+        for (int i = 0; i < count; i++) {
+            int position = calculationHistory.rowOf(recordIds[i]);
+            if (position < 0) continue;
+            double newQuantity = quantities[i];
+
+            // Only update if the value has actually changed
+            double oldQuantity = calculationHistory.quantity(position);
+            if (oldQuantity == newQuantity) continue;
+
+            try {
+                setRecordQuantity(position, newQuantity);
+            } catch (ArithmeticException e) {
+                Toast.makeText(this, "Количеството е твърде голямо", Toast.LENGTH_SHORT).show();
+                continue;
+            }
+            journal.recordEdit(recordIds[i], oldQuantity, newQuantity);
+            changedRows[changed] = position;
+            changedQuantities[changed] = newQuantity;
+            changed++;
+        }
 
-        TextView emissionsView = createTableCell(String.format(Locale.getDefault(), "%.2f", record.emissions), false);
-        record.emissionsTextView = emissionsView;
-        row.addView(emissionsView);
+        if (changed == 0) return;
+        PerfTrace.ROWS_EDITED.add(changed);
+        updateUndoButtons();
+        int rows = changed;
+        writeHistory(log -> {
+            for (int i = 0; i < rows; i++) {
+                log.updateQuantity(changedRows[i], changedQuantities[i]);
+            }
+        });
+        updateTotals();
+    }
 
-        resultsTable.addView(row);
+    private void setRecordQuantity(int position, double newQuantity) {
+        // Edits keep the record on the factor set it was calculated with
+        int source = calculationHistory.sourceIndex(position);
+        EmissionsEngine recordEngine = catalogue.engine(calculationHistory.factorSet(position));
+        double oldQuantity = calculationHistory.quantity(position);
+        double oldEnergy = calculationHistory.energy(position);
+        double oldEmissions = calculationHistory.emissions(position);
+        double newEnergy = recordEngine.energy(source, newQuantity);
+        double newEmissions = recordEngine.emissions(source, newQuantity);
+        totals.replace(source, oldEnergy, oldEmissions, newEnergy, newEmissions);
+        rollups.replace(source, calculationHistory.site(position),
+                calculationHistory.createdAt(position), oldEnergy, oldEmissions,
+                newEnergy, newEmissions);
+
+        calculationHistory.setQuantity(position, newQuantity, newEnergy, newEmissions);
+        recordIndex.changed(position, oldQuantity, oldEmissions);
+        notifyRowChanged(position, CalculationAdapter.PAYLOAD_RESULTS);
     }
 
-    private void setupEditableCell(EditText editText, String initialValue, final int position) {
-        editText.setText(initialValue);
-        editText.setPadding(24, 16, 24, 16);
-        editText.setTextSize(14);
-        editText.setGravity(Gravity.CENTER);
-        editText.setInputType(android.text.InputType.TYPE_CLASS_NUMBER |
-                android.text.InputType.TYPE_NUMBER_FLAG_DECIMAL);
-        editText.setTextColor(ContextCompat.getColor(this, R.color.dark_blue));
-        editText.setBackgroundResource(R.drawable.cell_border);
+    private void chooseFactorSet() {
+        String[] labels = new String[catalogue.factorSetCount()];
+        for (int i = 0; i < labels.length; i++) {
+            FactorCatalogue.FactorSet set = catalogue.factorSet(i);
+            labels[i] = set.id + " (" + set.region + (set.year != 0 ? ", " + set.year : "") + ")";
+        }
 
-        TableRow.LayoutParams params = new TableRow.LayoutParams(
-                TableRow.LayoutParams.WRAP_CONTENT,
-                TableRow.LayoutParams.WRAP_CONTENT,
-                1f
-        );
-        params.setMargins(1, 1, 1, 1);
-        editText.setLayoutParams(params);
+        new AlertDialog.Builder(this)
+                .setTitle("Набор коефициенти")
+                .setSingleChoiceItems(labels, factorSet, (dialog, which) -> {
+                    dialog.dismiss();
+                    factorSet = which;
+                    engine = catalogue.engine(which);
+                    getPreferences(MODE_PRIVATE).edit()
+                            .putString(PREF_FACTOR_SET, catalogue.factorSet(which).id).apply();
+                    if (calculationHistory.isEmpty()) return;
+
+                    new AlertDialog.Builder(this)
+                            .setTitle("Преизчисляване")
+                            .setMessage("Да се преизчислят ли всички " + calculationHistory.size()
+                                    + " записа с „" + labels[which] + "“? Иначе наборът важи само за нови изчисления.")
+                            .setPositiveButton("Да", (d, w) -> recalculateHistory(catalogue, which))
+                            .setNegativeButton("Не", null)
+                            .show();
+                })
+                .setNeutralButton(catalogue.isExact() ? "Точно смятане: вкл." : "Точно смятане: изкл.",
+                        (dialog, which) -> chooseExactArithmetic())
+                .show();
+    }
 
-        editText.addTextChangedListener(new TextWatcher() {
-            private Runnable updateRunnable;
+    /**
+     * Switches between calculating in doubles and in exact fixed-point, where every row is
+     * rounded to hundredths and totals are exactly the sum of the rows shown and exported. The
+     * history is recalculated in the new mode.
+     */
+    private void chooseExactArithmetic() {
+        boolean exact = !catalogue.isExact();
+        new AlertDialog.Builder(this)
+                .setTitle("Точно смятане")
+                .setMessage(exact
+                        ? "Всеки ред ще се закръгля до стотни и сборовете ще са точно сумата на редовете. "
+                                + "Историята ще бъде преизчислена."
+                        : "Редовете ще се смятат без закръгляне. Историята ще бъде преизчислена.")
+                .setPositiveButton(exact ? "Включи" : "Изключи", (dialog, which) -> {
+                    FactorCatalogue target = catalogue.withExactArithmetic(exact);
+                    if (calculationHistory.isEmpty()) {
+                        useCatalogue(target, new RunningTotals(target.sourceCount(), exact));
+                        // An undone reset would bring back totals kept in the other mode
+                        journal.clear();
+                        updateUndoButtons();
+                        updateTotals();
+                    } else {
+                        recalculateHistory(target, Recalculation.KEEP_FACTOR_SET);
+                    }
+                })
+                .setNegativeButton("Отказ", null)
+                .show();
+    }
 
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+    private void useCatalogue(FactorCatalogue target, RunningTotals newTotals) {
+        if (target.isExact() != catalogue.isExact()) {
+            getPreferences(MODE_PRIVATE).edit()
+                    .putBoolean(PREF_EXACT_ARITHMETIC, target.isExact()).apply();
+        }
+        catalogue = target;
+        engine = target.engine(factorSet);
+        totals = newTotals;
+        selection = new RecordIndex.Selection(target.sourceCount(), target.isExact());
+    }
 
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+    /**
+     * Recalculates every record with {@code target}, pinning it to {@code newFactorSet} unless
+     * that is {@link Recalculation#KEEP_FACTOR_SET}. The rows are recalculated in parallel on a
+     * copy of the history, together with fresh totals and rollups, and the results are swapped
+     * in on the main thread in one step. If exact arithmetic overflows, nothing is swapped and
+     * the current catalogue stays in use.
+     */
+    private void recalculateHistory(FactorCatalogue target, int newFactorSet) {
+        if (isEditMode) {
+            toggleEditMode();
+        }
+        editCoalescer.flush();
+        setHistoryControlsEnabled(false);
+        tableNavigationHint.setText("Преизчисляване...");
+        RecordStore snapshot = calculationHistory.copy();
+
+        ioScheduler.execute(() -> {
+            long start = PerfTrace.begin(PerfTrace.RECALCULATE);
+            long allocated = PerfTrace.allocatedBytes();
+            Recalculation.Result result;
+            Rollups newRollups = new Rollups(ZoneId.systemDefault());
+            try {
+                result = Recalculation.run(snapshot, target, newFactorSet, ForkJoinPool.commonPool());
+                newRollups.addAll(snapshot, 0, snapshot.size());
+            } catch (ArithmeticException e) {
+                Log.e("CalculationError", "Стойностите са твърде големи за точно смятане", e);
+                mainHandler.post(() -> {
+                    setHistoryControlsEnabled(true);
+                    tableNavigationHint.setText("Дръпнете за навигация в таблицата");
+                    Toast.makeText(this, "Преизчисляването е отказано: стойностите са твърде големи за точно смятане",
+                            Toast.LENGTH_LONG).show();
+                });
+                return;
+            } finally {
+                PerfTrace.end(PerfTrace.RECALCULATE, start, allocated);
+            }
+            try {
+                if (historyLog != null && newFactorSet != Recalculation.KEEP_FACTOR_SET) {
+                    historyLog.setFactorSet(newFactorSet);
+                }
+            } catch (IOException e) {
+                Log.e("FileError", "Грешка при запис на историята", e);
+            }
 
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (updateRunnable != null) {
-                    editText.removeCallbacks(updateRunnable);
+            mainHandler.post(() -> {
+                calculationHistory.swap(snapshot);
+                useCatalogue(target, result.totals);
+                rollups = newRollups;
+                recordIndex.rebuild();
+                // Added records would be redone with the factor sets they had before
+                journal.clear();
+                if (calculationAdapter.isFiltered()) {
+                    // New emissions may move rows in or out of the filter
+                    applyFilter();
+                } else {
+                    // Only the bound rows are rebound; the rest pick up the new values when scrolled to
+                    calculationAdapter.notifyItemRangeChanged(0, calculationHistory.size(),
+                            CalculationAdapter.PAYLOAD_RESULTS);
                 }
+                updateTotals();
+                setHistoryControlsEnabled(true);
+                tableNavigationHint.setText("Дръпнете за навигация в таблицата");
+                Toast.makeText(this, "Преизчислени записи: " + result.changedRows,
+                        Toast.LENGTH_SHORT).show();
+            });
+        });
+    }
 
-                updateRunnable = () -> {
-                    String newQuantityStr = s.toString().trim();
-                    double newQuantity = 0.0;
-
-                    if (!newQuantityStr.isEmpty()) {
-                        try {
-                            newQuantity = Double.parseDouble(newQuantityStr);
-                            if (newQuantity < 0) return;
-                        } catch (NumberFormatException e) {
-                            return;
-                        }
-                    }
+    /**
+     * Returns the id of the site entered in the form, saving the tags when it is a new one.
+     */
+    private int internSite() {
+        int known = siteTags.size();
+        int site = siteTags.intern(siteInput.getText() == null ? "" : siteInput.getText().toString());
+        if (siteTags.size() > known) {
+            SiteTags snapshot = siteTags.copy();
+            File sitesPath = new File(getFilesDir(), SITES_FILE_NAME);
+            ioScheduler.execute(() -> {
+                try {
+                    snapshot.save(sitesPath);
+                } catch (IOException e) {
+                    Log.e("FileError", "Грешка при запис на обектите", e);
+                }
+            });
+        }
+        return site;
+    }
 
-                    CalculationRecord record = calculationHistory.get(position);
+    /**
+     * Shows the hot-path metrics with the option to save them to the app's external files
+     * directory, e.g. to attach to a bug report. The same report is printed by
+     * {@code adb shell dumpsys activity com.example.eap_emissionscalculator}.
+     */
+    private void showMetrics() {
+        TextView report = new TextView(this);
+        report.setTypeface(Typeface.MONOSPACE);
+        report.setTextSize(TypedValue.COMPLEX_UNIT_SP, 11);
+        report.setTextIsSelectable(true);
+        report.setPadding(48, 24, 48, 0);
+        report.setText(PerfTrace.METRICS.report());
+        HorizontalScrollView scroll = new HorizontalScrollView(this);
+        scroll.addView(report);
 
-                    // Only update if the value has actually changed
-                    if (record.quantity != newQuantity) {
-                        record.quantity = newQuantity;
-                        record.energy = newQuantity * record.source.energyFactor;
-                        record.emissions = newQuantity * record.source.emissionFactor;
+        new AlertDialog.Builder(this)
+                .setTitle("Производителност")
+                .setView(scroll)
+                .setPositiveButton("Запиши", (dialog, which) -> saveMetrics())
+                .setNeutralButton("Нулирай", (dialog, which) -> PerfTrace.METRICS.reset())
+                .setNegativeButton("Затвори", null)
+                .show();
+    }
+
+    private void saveMetrics() {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String report = PerfTrace.METRICS.report();
+
+        // Resolved on the I/O thread, since getExternalFilesDir can create the directory
+        File[] outputFile = new File[1];
+        submitJob(METRICS_JOB, handle -> {
+            outputFile[0] = new File(getExternalFilesDir(null), "metrics_" + timeStamp + ".txt");
+            try (FileOutputStream out = new FileOutputStream(outputFile[0])) {
+                out.write(report.getBytes(StandardCharsets.UTF_8));
+            }
+            return true;
+        }, (completed, error) -> {
+            if (error != null) {
+                Log.e("FileError", "Грешка при запис на метриките", error);
+            } else if (completed && !isDestroyed()) {
+                Toast.makeText(this, "Метриките са запазени в: " + outputFile[0].getPath(),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+    }
 
-                        record.energyTextView.setText(String.format(Locale.getDefault(), "%.2f", record.energy));
-                        record.emissionsTextView.setText(String.format(Locale.getDefault(), "%.2f", record.emissions));
+    /**
+     * Must be called on the I/O thread.
+     */
+    private ExportArchive openArchive() throws IOException {
+        if (exportArchive == null) {
+            exportArchive = ExportArchive.open(
+                    new File(getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), ARCHIVE_DIR_NAME));
+        }
+        return exportArchive;
+    }
 
-                        recalculateTotals();
+    /**
+     * Lists the archived exports, newest first, from the archive index. A CSV export can be
+     * imported back into the history; any export can be deleted.
+     */
+    private void showArchive() {
+        ioScheduler.execute(() -> {
+            List<ExportArchive.Entry> entries;
+            try {
+                entries = openArchive().entries();
+            } catch (IOException e) {
+                Log.e("FileError", "Грешка при четене на архива", e);
+                return;
+            }
+            mainHandler.post(() -> {
+                if (isDestroyed()) return;
+                if (entries.isEmpty()) {
+                    Toast.makeText(this, "Архивът е празен", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm", Locale.getDefault());
+                String[] items = new String[entries.size()];
+                StringBuilder item = new StringBuilder();
+                for (int i = 0; i < items.length; i++) {
+                    ExportArchive.Entry entry = entries.get(entries.size() - 1 - i);
+                    item.setLength(0);
+                    item.append(dateFormat.format(new Date(entry.createdAt)))
+                            .append(entry.isCsv() ? " · CSV" : " · XLSX");
+                    if (entry.rows >= 0) {
+                        item.append(" · ").append(entry.rows).append(" реда · ");
+                        formatter.format(entry.totalEmissions, item).append(" kg CO₂");
                     }
-                };
+                    item.append(" · ").append((entry.bytes + 1023) / 1024).append(" KB");
+                    items[i] = item.toString();
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("Архив на експортите")
+                        .setItems(items, (dialog, which) ->
+                                showArchiveEntry(entries.get(entries.size() - 1 - which), items[which]))
+                        .setNegativeButton("Затвори", null)
+                        .show();
+            });
+        });
+    }
+
+    private void showArchiveEntry(ExportArchive.Entry entry, String description) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(entry.fileName)
+                .setMessage(description)
+                .setNegativeButton("Изтрий", (dialog, which) -> ioScheduler.execute(() -> {
+                    try {
+                        openArchive().delete(entry);
+                    } catch (IOException e) {
+                        Log.e("FileError", "Грешка при изтриване от архива", e);
+                    }
+                }))
+                .setNeutralButton("Затвори", null);
+        if (entry.isCsv()) {
+            builder.setNeutralButton("Преглед", (dialog, which) ->
+                    openExport(entry.fileName, () -> mapArchived(entry)));
+        }
+        if (entry.isCsv() && historyControlsEnabled) {
+            builder.setPositiveButton("Импортирай", (dialog, which) ->
+                    importCsv(() -> openArchive().open(entry)));
+        }
+        builder.show();
+    }
 
-                editText.postDelayed(updateRunnable, 300);
+    private interface ExportMapper {
+        MappedCsvExport map() throws IOException;
+    }
+
+    private void openExport(Uri uri) {
+        if (uri == null) return;
+        openExport(uri.getLastPathSegment(), () -> {
+            try (ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, "r")) {
+                if (descriptor == null) throw new FileNotFoundException(uri.toString());
+                try (FileInputStream in = new FileInputStream(descriptor.getFileDescriptor())) {
+                    return MappedCsvExport.map(in.getChannel());
+                }
             }
         });
     }
 
-    private void recalculateTotals() {
-        totalEnergy = 0.0;
-        totalEmissions = 0.0;
+    /**
+     * Maps an archived CSV export. A compressed one is unpacked to a cache file first, which is
+     * deleted as soon as it is mapped; the mapping keeps its contents until it is released.
+     */
+    private MappedCsvExport mapArchived(ExportArchive.Entry entry) throws IOException {
+        ExportArchive archive = openArchive();
+        if (!entry.fileName.endsWith(ExportArchive.CSV_SUFFIX)) {
+            return MappedCsvExport.open(archive.file(entry));
+        }
+        File unpacked = File.createTempFile("export-view", ".csv", getCacheDir());
+        try {
+            try (InputStream in = archive.open(entry);
+                 FileOutputStream out = new FileOutputStream(unpacked)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            return MappedCsvExport.open(unpacked);
+        } finally {
+            unpacked.delete();
+        }
+    }
+
+    /**
+     * Maps and indexes an export on the I/O thread and shows it in a read-only table. The totals
+     * come from the export's closing line and rows are decoded as they scroll into view, so a
+     * large export opens without being loaded.
+     */
+    private void openExport(String title, ExportMapper mapper) {
+        ioScheduler.execute(() -> {
+            MappedCsvExport export;
+            try {
+                export = mapper.map();
+            } catch (IOException e) {
+                Log.e("FileError", "Грешка при отваряне на експорт", e);
+                mainHandler.post(() -> Toast.makeText(this,
+                        "Грешка при отваряне: " + e.getMessage(), Toast.LENGTH_LONG).show());
+                return;
+            }
+            mainHandler.post(() -> {
+                if (isDestroyed()) return;
+                StringBuilder message = new StringBuilder().append(export.size()).append(" реда");
+                if (export.hasTotals()) {
+                    message.append("\nОБЩО: ");
+                    formatter.format(export.totalEnergy(), message).append(" kWh, ");
+                    formatter.format(export.totalEmissions(), message).append(" kg CO₂");
+                }
+                RecyclerView rows = new RecyclerView(this);
+                rows.setLayoutManager(new LinearLayoutManager(this));
+                rows.setHasFixedSize(true);
+                rows.setItemAnimator(null);
+                rows.setAdapter(new ExportViewAdapter(export, formatter));
+                new AlertDialog.Builder(this)
+                        .setTitle(title)
+                        .setMessage(message)
+                        .setView(rows)
+                        .setPositiveButton("Затвори", null)
+                        .show();
+            });
+        });
+    }
+
+    private void showSummary() {
+        String[] groupings = {"По източник", "По обект", "По месец", "По обект и тримесечие",
+                "Сценарии за смяна на гориво"};
+        new AlertDialog.Builder(this)
+                .setTitle("Обобщение")
+                .setItems(groupings, (dialog, which) -> {
+                    if (which == 4) {
+                        showFuelSwitchScenarios();
+                        return;
+                    }
+                    new AlertDialog.Builder(this)
+                            .setTitle(groupings[which])
+                            .setMessage(summaryText(which))
+                            .setPositiveButton("OK", null)
+                            .show();
+                })
+                .show();
+    }
 
-        for (CalculationRecord record : calculationHistory) {
-            totalEnergy += record.energy;
-            totalEmissions += record.emissions;
+    /**
+     * Ranks every switch of one fuel to another at equivalent energy, at each site and at all
+     * sites together, and lists the ones that save the most CO₂. Replacement fuels are
+     * calculated with the current factor set.
+     */
+    private void showFuelSwitchScenarios() {
+        RecordStore snapshot = snapshotHistory();
+        SiteTags sites = siteTags.copy();
+        FactorCatalogue current = catalogue;
+        int set = factorSet;
+
+        ForkJoinPool.commonPool().execute(() -> {
+            ScenarioEngine.Baseline baseline = ScenarioEngine.baseline(snapshot,
+                    current.sourceCount(), sites.size(), ForkJoinPool.commonPool());
+            List<ScenarioEngine.Scenario> scenarios = fuelSwitches(baseline, current, set, sites);
+            List<ScenarioEngine.Outcome> ranked = new ScenarioEngine(current, set)
+                    .rank(baseline, scenarios, ForkJoinPool.commonPool());
+
+            mainHandler.post(() -> {
+                if (isDestroyed()) return;
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < Math.min(ranked.size(), SCENARIOS_SHOWN); i++) {
+                    ScenarioEngine.Outcome outcome = ranked.get(i);
+                    if (!(outcome.saved > 0)) break;
+                    text.append(outcome.scenario.name).append('\n').append("  −");
+                    formatter.format(outcome.saved, text).append(" kg CO₂ (");
+                    formatter.format(outcome.saved / baseline.totalEmissions() * 100, text)
+                            .append("%)\n");
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("Най-голямо намаление на CO₂")
+                        .setMessage(text.length() == 0 ? "Няма сценарии с намаление" : text)
+                        .setPositiveButton("OK", null)
+                        .show();
+            });
+        });
+    }
+
+    private static List<ScenarioEngine.Scenario> fuelSwitches(ScenarioEngine.Baseline baseline,
+                                                              FactorCatalogue current, int set,
+                                                              SiteTags sites) {
+        List<EnergySource> sources = current.engine(set).sources();
+        FactorCatalogue.FactorSet factors = current.factorSet(set);
+        List<ScenarioEngine.Scenario> scenarios = new ArrayList<>();
+        for (int site = ScenarioEngine.ALL_SITES; site < baseline.siteCount; site++) {
+            String label = site == ScenarioEngine.ALL_SITES ? "Всички обекти" : siteLabel(sites, site);
+            for (int from = 0; from < baseline.sourceCount; from++) {
+                double energy = 0;
+                for (int s = 0; s < baseline.siteCount; s++) {
+                    if (site == ScenarioEngine.ALL_SITES || s == site) energy += baseline.energy(s, from);
+                }
+                if (!(energy > 0)) continue;
+                for (int to = 0; to < baseline.sourceCount; to++) {
+                    if (to == from || !(factors.energyFactor(to) > 0)) continue;
+                    scenarios.add(new ScenarioEngine.Scenario(
+                            label + ": " + sources.get(from).name + " → " + sources.get(to).name,
+                            Collections.singletonList(new ScenarioEngine.Substitution(from, to, 1, site))));
+                }
+            }
         }
+        return scenarios;
+    }
 
-        // Ensure we always show two decimal places
-        totalEnergy = Math.round(totalEnergy * 100) / 100.0;
-        totalEmissions = Math.round(totalEmissions * 100) / 100.0;
+    private String summaryText(int grouping) {
+        StringBuilder text = new StringBuilder();
+        if (grouping == 3) {
+            appendSiteQuarters(text, rollups.bySiteMonth());
+        } else {
+            Rollup rollup = grouping == 0 ? rollups.bySource()
+                    : grouping == 1 ? rollups.bySite() : rollups.byMonth();
+            for (int i = 0; i < rollup.size(); i++) {
+                if (rollup.count(i) == 0) continue;
+                int key = (int) rollup.key(i);
+                String label = grouping == 0 ? energySources.get(key).name
+                        : grouping == 1 ? siteLabel(key)
+                        : String.format(Locale.getDefault(), "%02d.%d",
+                                Rollups.monthOfYear(key), Rollups.year(key));
+                appendSummaryLine(text, label, rollup.energy(i), rollup.emissions(i));
+            }
+        }
+        return text.length() == 0 ? "Няма данни" : text.toString();
+    }
 
-        updateTotals();
+    /**
+     * Site-month groups are sorted by site and then by month, so the months of one quarter
+     * are next to each other and can be merged in a single pass.
+     */
+    private void appendSiteQuarters(StringBuilder text, Rollup bySiteMonth) {
+        int i = 0;
+        while (i < bySiteMonth.size()) {
+            long key = bySiteMonth.key(i);
+            int site = Rollups.site(key);
+            int month = Rollups.month(key);
+            int year = Rollups.year(month);
+            int quarter = Rollups.quarter(month);
+            double energy = 0;
+            double emissions = 0;
+            int count = 0;
+            for (; i < bySiteMonth.size(); i++) {
+                long next = bySiteMonth.key(i);
+                int nextMonth = Rollups.month(next);
+                if (Rollups.site(next) != site || Rollups.year(nextMonth) != year
+                        || Rollups.quarter(nextMonth) != quarter) break;
+                energy += bySiteMonth.energy(i);
+                emissions += bySiteMonth.emissions(i);
+                count += bySiteMonth.count(i);
+            }
+            if (count > 0) {
+                appendSummaryLine(text, siteLabel(site) + ", Q" + quarter + " " + year, energy, emissions);
+            }
+        }
+    }
+
+    private String siteLabel(int site) {
+        return siteLabel(siteTags, site);
+    }
+
+    private static String siteLabel(SiteTags tags, int site) {
+        return site == SiteTags.NONE ? "Без обект" : tags.name(site);
+    }
+
+    private void appendSummaryLine(StringBuilder text, String label, double energy, double emissions) {
+        text.append(label).append('\n').append("  ");
+        formatter.format(energy, text).append(" kWh, ");
+        formatter.format(emissions, text).append(" kg CO₂\n");
     }
+
     private void updateTotals() {
+        // Totals are kept unrounded; rounding to two decimals happens only here, for display
         runOnUiThread(() -> {
-            totalEnergyTextView.setText(String.format(Locale.getDefault(), "%.2f", totalEnergy));
-            totalEmissionsTextView.setText(String.format(Locale.getDefault(), "%.2f", totalEmissions));
+            long start = PerfTrace.begin(PerfTrace.UPDATE_TOTALS);
+            long allocated = PerfTrace.allocatedBytes();
+            setTotal(totalEnergyTextView, totalEnergyChars, totals.energy());
+            setTotal(totalEmissionsTextView, totalEmissionsChars, totals.emissions());
+            updateFilterSummary();
+            PerfTrace.end(PerfTrace.UPDATE_TOTALS, start, allocated);
         });
     }
 
+    private void setTotal(TextView view, char[] chars, double value) {
+        int length = formatter.format(value, chars);
+        if (length < 0) {
+            view.setText(formatter.format(value));
+        } else {
+            view.setText(chars, 0, length);
+        }
+    }
+
     private void handleExport() {
         if (calculationHistory.isEmpty()) {
             Toast.makeText(this, "Няма данни за експорт", Toast.LENGTH_SHORT).show();
             return;
         }
+        if (ioScheduler.isActive(EXPORT_JOB)) {
+            Toast.makeText(this, "Експортът вече се изпълнява", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Формат на файла")
+                .setItems(new String[]{"CSV", "Excel (XLSX)"}, (dialog, which) -> {
+                    exportAsXlsx = which == 1;
+                    chooseExportLocation();
+                })
+                .setNegativeButton("Отказ", null)
+                .show();
+    }
 
+    private void chooseExportLocation() {
         new AlertDialog.Builder(this)
                 .setTitle("Избор на място за запис")
-                .setMessage("Къде искате да запишете CSV файла?")
+                .setMessage(exportAsXlsx ? "Къде искате да запишете XLSX файла?"
+                        : "Къде искате да запишете CSV файла?")
                 .setPositiveButton("Външно хранилище", (dialog, which) -> {
                     if (checkOrRequestStoragePermission()) {
                         saveToExternalStorage();
@@ -515,88 +1307,400 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void saveToExternalStorage() {
-        try {
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String fileName = "CO2_Emissions_" + timeStamp + ".csv";
+        String fileName = exportBaseName() + (exportAsXlsx ? ".xlsx" : ".csv");
+        File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        exportHistory(() -> new File(downloadsDir, "Emissions"), fileName,
+                "Файлът е запазен в: Downloads/Emissions/" + fileName,
+                "Грешка при запис във външно хранилище");
+    }
 
-            File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-            File emissionsDir = new File(downloadsDir, "Emissions");
-            if (!emissionsDir.exists()) {
-                emissionsDir.mkdirs();
+    /**
+     * Adds the export to the compressed archive in the app's storage, see {@link #showArchive()}.
+     */
+    private void saveToInternalStorage() {
+        exportHistory(null, exportBaseName(),
+                "Файлът е запазен в архива (задръжте Експорт за преглед)",
+                "Грешка при запис във вътрешно хранилище");
+    }
+
+    private String exportBaseName() {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        return "CO2_Emissions_" + timeStamp;
+    }
+
+    private interface DirectoryResolver {
+        File resolve();
+    }
+
+    /**
+     * Streams a snapshot of the history to {@code fileName} in the resolved directory on the I/O
+     * thread while a cancellable progress dialog is shown. The directory is resolved and created
+     * there as well, since either can touch the disk. Without a directory the export goes to the
+     * archive under {@code fileName} plus the archive's suffix.
+     */
+    private void exportHistory(@Nullable DirectoryResolver directory, String fileName,
+                               String successMessage, String errorLogMessage) {
+        if (ioScheduler.isActive(EXPORT_JOB)) {
+            // Only this thread submits exports, so the request would join the running one
+            Toast.makeText(this, "Експортът вече се изпълнява", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        boolean xlsx = exportAsXlsx;
+        boolean exact = catalogue.isExact();
+        RecordStore snapshot = snapshotHistory();
+        double totalEnergy = totals.energy();
+        double totalEmissions = totals.emissions();
+
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(snapshot.size());
+        progressBar.setPadding(48, 24, 48, 0);
+
+        IoScheduler.Handle[] export = new IoScheduler.Handle[1];
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle(xlsx ? "Експорт на XLSX" : "Експорт на CSV")
+                .setView(progressBar)
+                .setCancelable(false)
+                .setNegativeButton("Отказ", (dialog, which) -> export[0].cancel())
+                .create();
+
+        export[0] = submitJob(EXPORT_JOB, handle -> {
+            long start = PerfTrace.begin(PerfTrace.EXPORT);
+            long allocated = PerfTrace.allocatedBytes();
+            try {
+                csvExporter.setExact(exact);
+                xlsxExporter.setExact(exact);
+                CsvExporter.ProgressListener listener = handle::progress;
+                boolean completed;
+                if (directory == null) {
+                    ExportArchive archive = openArchive();
+                    long now = System.currentTimeMillis();
+                    completed = (xlsx
+                            ? archive.addXlsx(fileName, now, xlsxExporter, energySources, snapshot,
+                                    totalEnergy, totalEmissions, listener, handle::isCancelled)
+                            : archive.addCsv(fileName, now, csvExporter, energySources, snapshot,
+                                    totalEnergy, totalEmissions, listener, handle::isCancelled)) != null;
+                    archive.retain(ARCHIVE_MAX_BYTES, ARCHIVE_MAX_AGE_MS, now);
+                } else {
+                    File outputDir = directory.resolve();
+                    if (!outputDir.exists()) {
+                        outputDir.mkdirs();
+                    }
+                    File outputFile = new File(outputDir, fileName);
+                    completed = xlsx
+                            ? xlsxExporter.export(outputFile, energySources, snapshot,
+                                    totalEnergy, totalEmissions, listener, handle::isCancelled)
+                            : csvExporter.export(outputFile, energySources, snapshot,
+                                    totalEnergy, totalEmissions, listener, handle::isCancelled);
+                }
+                if (completed) {
+                    PerfTrace.ROWS_EXPORTED.add(snapshot.size());
+                }
+                return completed;
+            } finally {
+                PerfTrace.end(PerfTrace.EXPORT, start, allocated);
+            }
+        }, new IoScheduler.Callback() {
+            @Override
+            public void onProgress(int done, int total) {
+                progressBar.setProgress(done);
             }
 
-            File outputFile = new File(emissionsDir, fileName);
-            writeCsvContent(outputFile);
+            @Override
+            public void onFinished(boolean completed, Exception error) {
+                if (error != null) {
+                    Log.e("FileError", errorLogMessage, error);
+                }
+                if (isDestroyed()) return;
+                progressDialog.dismiss();
+                if (error != null) {
+                    Toast.makeText(MainActivity.this, "Грешка при запис: " + error.getMessage(),
+                            Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(MainActivity.this,
+                            completed ? successMessage : "Експортът е прекратен",
+                            Toast.LENGTH_LONG).show();
+                }
+            }
+        });
+        // Callbacks arrive on this thread, so none can run before the dialog is shown
+        if (export[0] != null) {
+            progressDialog.show();
+        }
+    }
 
-            Toast.makeText(this,
-                    "Файлът е запазен в: Downloads/Emissions/" + fileName,
+    /**
+     * Queues a job on the I/O thread, telling the user when the queue is too full to take it.
+     *
+     * @return the job, or null if it was refused
+     */
+    @Nullable
+    private IoScheduler.Handle submitJob(String key, IoScheduler.Job job, IoScheduler.Callback callback) {
+        try {
+            return ioScheduler.submit(key, job, callback);
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(this, "Записът е отложен, опитайте отново след малко",
                     Toast.LENGTH_LONG).show();
-        } catch (Exception e) {
-            Toast.makeText(this, "Грешка при запис: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            Log.e("FileError", "Грешка при запис във външно хранилище", e);
+            return null;
         }
     }
 
-    private void saveToInternalStorage() {
-        try {
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String fileName = "CO2_Emissions_" + timeStamp + ".csv";
+    private RecordStore snapshotHistory() {
+        editCoalescer.flush();
+        return calculationHistory.copy();
+    }
 
-            File outputDir = new File(getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), "Emissions");
-            if (!outputDir.exists()) {
-                outputDir.mkdirs();
-            }
+    /**
+     * Moves the history, its totals and its log file aside instead of deleting them, so that the
+     * reset can be undone until it drops out of the journal.
+     */
+    private void resetCalculator() {
+        int removed = calculationHistory.size();
+        editCoalescer.clear();
+        ResetSnapshot snapshot = new ResetSnapshot(calculationHistory.removeAll(), totals, rollups,
+                new File(getFilesDir(), RESET_FILE_PREFIX + (++resetCount)));
+        totals = new RunningTotals(catalogue.sourceCount(), catalogue.isExact());
+        rollups = new Rollups(ZoneId.systemDefault());
+        recordIndex.rebuild();
+        exchangeHistoryFile(snapshot.logFile);
+        journal.recordReset(snapshot);
+        updateUndoButtons();
+        notifyRowsRemoved(0, removed);
+        totalEnergyTextView.setText("0.00");
+        totalEmissionsTextView.setText("0.00");
+        quantityInput.setText("");
+        quantityInputLayout.setError(null);
+        calculateButton.setEnabled(true);
+        Snackbar.make(resetButton, "Калкулаторът е нулиран", Snackbar.LENGTH_LONG)
+                .setAction("Отмени", v -> undo())
+                .show();
+    }
 
-            File outputFile = new File(outputDir, fileName);
-            writeCsvContent(outputFile);
+    private void undo() {
+        // Pending table edits become the latest journal entry first
+        editCoalescer.flush();
+        int entry = journal.undo();
+        if (entry < 0) return;
+
+        switch (journal.kind(entry)) {
+            case EditJournal.ADD:
+                removeLastRecord();
+                break;
+            case EditJournal.EDIT:
+                setJournaledQuantity(journal.recordId(entry), journal.oldQuantity(entry));
+                break;
+            case EditJournal.RESET:
+                exchangeReset((ResetSnapshot) journal.snapshot(entry));
+                break;
+        }
+        updateUndoButtons();
+        updateTotals();
+    }
 
-            Toast.makeText(this,
-                    "Файлът е запазен в локалното хранилище на приложението",
-                    Toast.LENGTH_LONG).show();
-        } catch (Exception e) {
-            Toast.makeText(this, "Грешка при запис: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            Log.e("FileError", "Грешка при запис във вътрешно хранилище", e);
+    private void redo() {
+        editCoalescer.flush();
+        int entry = journal.redo();
+        if (entry < 0) return;
+
+        switch (journal.kind(entry)) {
+            case EditJournal.ADD:
+                addRecord(journal.sourceIndex(entry), journal.factorSet(entry), journal.site(entry),
+                        journal.createdAt(entry), journal.newQuantity(entry));
+                scrollTableToEnd();
+                break;
+            case EditJournal.EDIT:
+                setJournaledQuantity(journal.recordId(entry), journal.newQuantity(entry));
+                break;
+            case EditJournal.RESET:
+                exchangeReset((ResetSnapshot) journal.snapshot(entry));
+                break;
         }
+        updateUndoButtons();
+        updateTotals();
     }
 
-    private void writeCsvContent(File outputFile) throws IOException {
-        StringBuilder csvContent = new StringBuilder();
-        csvContent.append("Източник,Количество,Ед.,Енергия (kWh),CO₂ (kg)\n");
+    private void setJournaledQuantity(int recordId, double quantity) {
+        int position = calculationHistory.rowOf(recordId);
+        if (position < 0) return;
+        setRecordQuantity(position, quantity);
+        // The quantity cell is rebound too, unlike for edits typed into it
+        notifyRowChanged(position, null);
+        writeHistory(log -> log.updateQuantity(position, quantity));
+    }
 
-        for (CalculationRecord record : calculationHistory) {
-            csvContent.append(escapeCsv(record.source.name)).append(",")
-                    .append(record.quantity).append(",")
-                    .append(record.source.unit).append(",")
-                    .append(record.energy).append(",")
-                    .append(record.emissions).append("\n");
+    /**
+     * Undoes or redoes a reset. Everything added since the reset has been undone already, so the
+     * current history is the empty one the reset left behind.
+     */
+    private void exchangeReset(ResetSnapshot snapshot) {
+        int removed = calculationHistory.size();
+        calculationHistory.swap(snapshot.records);
+        RunningTotals currentTotals = totals;
+        totals = snapshot.totals;
+        snapshot.totals = currentTotals;
+        Rollups currentRollups = rollups;
+        rollups = snapshot.rollups;
+        snapshot.rollups = currentRollups;
+        exchangeHistoryFile(snapshot.logFile);
+        recordIndex.rebuild();
+
+        if (calculationAdapter.isFiltered()) {
+            applyFilter();
+        } else {
+            calculationAdapter.notifyItemRangeRemoved(0, removed);
+            calculationAdapter.notifyItemRangeInserted(0, calculationHistory.size());
         }
+    }
 
-        csvContent.append("ОБЩО,,,").append(totalEnergy).append(",").append(totalEmissions);
+    private void notifyRowsInserted(int row, int count) {
+        if (calculationAdapter.isFiltered()) {
+            applyFilter();
+        } else {
+            calculationAdapter.notifyItemRangeInserted(row, count);
+        }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-            fos.write(csvContent.toString().getBytes(StandardCharsets.UTF_8));
+    private void notifyRowsRemoved(int row, int count) {
+        if (calculationAdapter.isFiltered()) {
+            applyFilter();
+        } else {
+            calculationAdapter.notifyItemRangeRemoved(row, count);
         }
     }
 
-    private String escapeCsv(String content) {
-        if (content == null) return "";
-        if (content.contains(",") || content.contains("\n")) {
-            return "\"" + content.replace("\"", "\"\"") + "\"";
+    /**
+     * Rebinds {@code row} if it is shown. Edited rows stay in a filtered table until the filter
+     * is applied again, so a value being typed does not make its row disappear.
+     */
+    private void notifyRowChanged(int row, Object payload) {
+        int position = calculationAdapter.positionOf(row);
+        if (position >= 0) {
+            calculationAdapter.notifyItemChanged(position, payload);
         }
-        return content;
     }
 
-    private void resetCalculator() {
-        calculationHistory.clear();
-        setupTable();
-        totalEnergy = 0.0;
-        totalEmissions = 0.0;
-        totalEnergyTextView.setText("0.00");
-        totalEmissionsTextView.setText("0.00");
-        quantityInput.setText("");
-        quantityInputLayout.setError(null);
-        calculateButton.setEnabled(true);
-        Toast.makeText(this, "Калкулаторът е нулиран", Toast.LENGTH_SHORT).show();
+    private void showFilter() {
+        View view = getLayoutInflater().inflate(R.layout.dialog_filter, null);
+        Spinner sourceSpinner = view.findViewById(R.id.filterSourceSpinner);
+        TextInputEditText minQuantityInput = view.findViewById(R.id.filterMinQuantityInput);
+        TextInputEditText maxQuantityInput = view.findViewById(R.id.filterMaxQuantityInput);
+        TextInputEditText minEmissionsInput = view.findViewById(R.id.filterMinEmissionsInput);
+
+        List<String> labels = new ArrayList<>();
+        labels.add("Всички");
+        labels.addAll(sourceLabels(energySources));
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, R.layout.spinner_item, labels);
+        adapter.setDropDownViewResource(R.layout.spinner_dropdown_item);
+        sourceSpinner.setAdapter(adapter);
+        if (filter != null) {
+            sourceSpinner.setSelection(filter.source + 1);
+            setBound(minQuantityInput, filter.minQuantity);
+            setBound(maxQuantityInput, filter.maxQuantity);
+            setBound(minEmissionsInput, filter.minEmissions);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle("Филтър")
+                .setView(view)
+                .setPositiveButton("Приложи", (dialog, which) -> {
+                    try {
+                        setFilter(new RecordIndex.Filter(sourceSpinner.getSelectedItemPosition() - 1,
+                                parseBound(minQuantityInput, Double.NEGATIVE_INFINITY),
+                                parseBound(maxQuantityInput, Double.POSITIVE_INFINITY),
+                                parseBound(minEmissionsInput, Double.NEGATIVE_INFINITY)));
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Моля въведете валидни числа", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNeutralButton("Изчисти", (dialog, which) -> setFilter(null))
+                .setNegativeButton("Отказ", null)
+                .show();
+    }
+
+    private static double parseBound(TextInputEditText input, double unbounded) {
+        String text = input.getText() == null ? "" : input.getText().toString().trim();
+        return text.isEmpty() ? unbounded : Double.parseDouble(text);
+    }
+
+    private static void setBound(TextInputEditText input, double bound) {
+        if (!Double.isInfinite(bound)) {
+            input.setText(String.valueOf(bound));
+        }
+    }
+
+    private void setFilter(RecordIndex.Filter newFilter) {
+        editCoalescer.flush();
+        filter = newFilter == null || newFilter.matchesAll() ? null : newFilter;
+        if (filter == null) {
+            calculationAdapter.setSelection(null);
+            updateFilterSummary();
+        } else {
+            applyFilter();
+        }
+    }
+
+    /**
+     * Selects the rows matching the current filter from the index and shows only those.
+     */
+    private void applyFilter() {
+        long start = PerfTrace.begin(PerfTrace.FILTER);
+        long allocated = PerfTrace.allocatedBytes();
+        recordIndex.select(filter, selection);
+        PerfTrace.end(PerfTrace.FILTER, start, allocated);
+        calculationAdapter.setSelection(selection);
+        updateFilterSummary();
+    }
+
+    private void updateFilterSummary() {
+        if (!calculationAdapter.isFiltered()) {
+            filterSummaryTextView.setVisibility(View.GONE);
+            return;
+        }
+        selection.recomputeTotals(calculationHistory);
+        StringBuilder text = new StringBuilder("Показани ")
+                .append(selection.size()).append(" от ").append(calculationHistory.size())
+                .append(" записа: ");
+        formatter.format(selection.totals().energy(), text).append(" kWh, ");
+        formatter.format(selection.totals().emissions(), text).append(" kg CO₂");
+        filterSummaryTextView.setText(text);
+        filterSummaryTextView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Swaps the history log file with {@code other} on the I/O thread; when {@code other}
+     * does not exist the current log moves there and an empty one takes its place.
+     */
+    private void exchangeHistoryFile(File other) {
+        File path = new File(getFilesDir(), HISTORY_FILE_NAME);
+        ioScheduler.execute(() -> {
+            if (historyLog == null) return;
+            try {
+                historyLog.close();
+                File temp = new File(path.getPath() + ".tmp");
+                if (!path.renameTo(temp)
+                        || (other.exists() && !other.renameTo(path))
+                        || !temp.renameTo(other)) {
+                    throw new IOException("Could not exchange " + path + " and " + other);
+                }
+            } catch (IOException e) {
+                Log.e("FileError", "Грешка при запис на историята", e);
+            }
+            try {
+                historyLog = HistoryLog.open(path);
+            } catch (IOException e) {
+                historyLog = null;
+                Log.e("FileError", "Грешка при зареждане на историята", e);
+            }
+        });
+    }
+
+    private void releaseResetSnapshot(Object snapshot) {
+        File logFile = ((ResetSnapshot) snapshot).logFile;
+        ioScheduler.execute(logFile::delete);
+    }
+
+    private void updateUndoButtons() {
+        undoButton.setEnabled(historyControlsEnabled && journal.canUndo());
+        redoButton.setEnabled(historyControlsEnabled && journal.canRedo());
     }
 
     @Override
@@ -615,9 +1719,35 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        editCoalescer.flush();
+        writeHistory(HistoryLog::flush);
+    }
+
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer,
+                     @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("Metrics:");
+        for (String line : PerfTrace.METRICS.report().split("\n")) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.println(line);
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        scrollHandler.removeCallbacks(scrollRunnable);
+        editCoalescer.clear();
+        // Rotation no longer recreates the activity; any other recreation reloads the history,
+        // which starts a new journal and deletes the moved-aside reset logs.
+        journal.clear();
+        // Exports of this instance stop; history writes still finish
+        ioScheduler.cancelJobs();
+        writeHistory(HistoryLog::close);
     }
 }
\ No newline at end of file
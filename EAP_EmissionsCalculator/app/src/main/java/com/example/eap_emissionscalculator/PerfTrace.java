@@ -0,0 +1,87 @@
+package com.example.eap_emissionscalculator;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.example.eap_emissionscalculator.engine.Metrics;
+
+/**
+ * The app's hot-path metrics. Each operation is wrapped in a {@link Trace} section of the same
+ * name, so it also shows up in system traces, and its latency goes into the process-wide
+ * {@link #METRICS}, which survive activity recreation.
+ *
+ * <pre>
+ * long start = PerfTrace.begin(PerfTrace.CALCULATE);
+ * long allocated = PerfTrace.allocatedBytes();
+ * ...
+ * PerfTrace.end(PerfTrace.CALCULATE, start, allocated);
+ * </pre>
+ *
+ * Allocations are only counted while {@link #setAllocationCounting allocation counting} is on,
+ * which slows down the runtime and is meant for debuggable builds.
+ */
+final class PerfTrace {
+
+    static final Metrics METRICS = new Metrics();
+
+    static final Metrics.Operation CALCULATE = METRICS.operation("calculate");
+    static final Metrics.Operation APPLY_EDITS = METRICS.operation("applyEdits");
+    static final Metrics.Operation UPDATE_TOTALS = METRICS.operation("updateTotals");
+    static final Metrics.Operation BIND_ROW = METRICS.operation("bindRow");
+    static final Metrics.Operation APPEND_PAGE = METRICS.operation("appendPage");
+    static final Metrics.Operation IMPORT = METRICS.operation("import");
+    static final Metrics.Operation EXPORT = METRICS.operation("export");
+    static final Metrics.Operation RECALCULATE = METRICS.operation("recalculate");
+    static final Metrics.Operation FILTER = METRICS.operation("filter");
+
+    static final Metrics.Counter ROWS_BOUND = METRICS.counter("rowsBound");
+    static final Metrics.Counter ROWS_EDITED = METRICS.counter("rowsEdited");
+    static final Metrics.Counter ROWS_IMPORTED = METRICS.counter("rowsImported");
+    static final Metrics.Counter ROWS_EXPORTED = METRICS.counter("rowsExported");
+
+    private static volatile boolean countingAllocations;
+
+    private PerfTrace() {
+    }
+
+    /**
+     * Opens the trace section of {@code operation} and returns its start time.
+     */
+    static long begin(Metrics.Operation operation) {
+        Trace.beginSection(operation.name());
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the calling thread, or -1 while allocations are not
+     * counted.
+     */
+    @SuppressWarnings("deprecation")
+    static long allocatedBytes() {
+        return countingAllocations ? Debug.getThreadAllocSize() : -1;
+    }
+
+    /**
+     * Closes the trace section opened by {@link #begin} on the same thread and records the
+     * operation.
+     */
+    static void end(Metrics.Operation operation, long start, long allocatedAtStart) {
+        operation.record(SystemClock.elapsedRealtimeNanos() - start);
+        if (allocatedAtStart >= 0 && countingAllocations) {
+            operation.recordAllocation(allocatedBytes() - allocatedAtStart);
+        }
+        Trace.endSection();
+    }
+
+    @SuppressWarnings("deprecation")
+    static synchronized void setAllocationCounting(boolean enabled) {
+        if (enabled == countingAllocations) return;
+        if (enabled) {
+            Debug.startAllocCounting();
+        } else {
+            Debug.stopAllocCounting();
+        }
+        countingAllocations = enabled;
+    }
+}
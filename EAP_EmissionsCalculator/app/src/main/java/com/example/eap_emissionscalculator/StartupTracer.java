@@ -0,0 +1,78 @@
+package com.example.eap_emissionscalculator;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Measures startup of the activity: time to first frame, when the content view is first drawn,
+ * and time to interactive, when the history has loaded and the controls are enabled. The latter
+ * is also reported to the system with {@link Activity#reportFullyDrawn()}, so it shows up in
+ * logcat as "Fully drawn" and is picked up by startup benchmarks. Both are logged under the
+ * {@value #TAG} tag.
+ *
+ * <p>The first activity of a process is timed from process start, so the figures cover a cold
+ * start; later ones, e.g. after a configuration change, from their own creation.
+ */
+class StartupTracer {
+
+    private static final String TAG = "Startup";
+
+    private static boolean coldStartTimed;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long start;
+    private long firstFrame = -1;
+    private boolean interactive;
+
+    StartupTracer() {
+        start = coldStartTimed ? SystemClock.uptimeMillis() : Process.getStartUptimeMillis();
+        coldStartTimed = true;
+    }
+
+    /**
+     * Runs {@code afterFirstDraw} on the main thread right after the first frame of {@code root}
+     * has been drawn.
+     */
+    void onFirstFrame(View root, Runnable afterFirstDraw) {
+        ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) return;
+                drawn = true;
+                // Listeners cannot be removed while the tree is dispatching onDraw
+                handler.post(() -> {
+                    root.getViewTreeObserver().removeOnDrawListener(this);
+                    firstFrame = SystemClock.uptimeMillis() - start;
+                    Log.i(TAG, "First frame: " + firstFrame + " ms");
+                    Trace.beginSection("Startup.afterFirstDraw");
+                    try {
+                        afterFirstDraw.run();
+                    } finally {
+                        Trace.endSection();
+                    }
+                });
+            }
+        };
+        root.getViewTreeObserver().addOnDrawListener(listener);
+    }
+
+    /**
+     * Records time to interactive the first time it is called.
+     */
+    void onInteractive(Activity activity) {
+        if (interactive) return;
+        interactive = true;
+        long elapsed = SystemClock.uptimeMillis() - start;
+        Log.i(TAG, "Interactive: " + elapsed + " ms (first frame: " + firstFrame + " ms)");
+        activity.reportFullyDrawn();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.eap_emissionscalculator.baselineprofile;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Generates the baseline and startup profiles of the app from a cold start followed by the
+ * {@link Journeys#calculateAndEdit calculate and edit journey}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        rule.collect(
+                Journeys.PACKAGE_NAME,
+                /* maxIterations */ 15,
+                /* stableIterations */ 3,
+                /* outputFilePrefix */ null,
+                /* includeInStartupProfile */ true,
+                /* strictStability */ false,
+                /* filterPredicate */ className -> true,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    Journeys.calculateAndEdit(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}
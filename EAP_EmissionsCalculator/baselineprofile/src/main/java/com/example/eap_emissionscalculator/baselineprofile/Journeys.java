@@ -0,0 +1,62 @@
+package com.example.eap_emissionscalculator.baselineprofile;
+
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * User journeys through MainActivity shared by the profile generator and the benchmarks.
+ */
+final class Journeys {
+
+    static final String PACKAGE_NAME = "com.example.eap_emissionscalculator";
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private Journeys() {
+    }
+
+    /**
+     * Waits until the history has loaded and the calculate button is enabled.
+     */
+    static void waitForHistory(UiDevice device) {
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "calculateButton").enabled(true)), TIMEOUT_MS);
+    }
+
+    /**
+     * Adds a few records, opens and closes the summary and edit mode and scrolls the screen,
+     * which covers calculation, table binding, formatting and the rollups.
+     */
+    static void calculateAndEdit(UiDevice device) {
+        waitForHistory(device);
+        for (int i = 1; i <= 5; i++) {
+            device.findObject(By.res(PACKAGE_NAME, "quantityInput")).setText(String.valueOf(i * 100));
+            device.findObject(By.res(PACKAGE_NAME, "calculateButton")).click();
+            device.waitForIdle();
+        }
+
+        UiObject2 summary = device.findObject(By.res(PACKAGE_NAME, "summaryButton"));
+        if (summary != null) {
+            summary.click();
+            device.waitForIdle();
+            device.pressBack();
+        }
+
+        UiObject2 scrollView = device.findObject(By.res(PACKAGE_NAME, "scrollView"));
+        scrollView.fling(Direction.DOWN);
+        device.waitForIdle();
+
+        UiObject2 editTable = device.findObject(By.res(PACKAGE_NAME, "editTableButton"));
+        if (editTable != null) {
+            editTable.click();
+            device.waitForIdle();
+            device.findObject(By.res(PACKAGE_NAME, "editTableButton")).click();
+            device.waitForIdle();
+        }
+
+        device.findObject(By.res(PACKAGE_NAME, "scrollView")).fling(Direction.UP);
+        device.waitForIdle();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.EmissionsEngine;
+import com.example.eap_emissionscalculator.engine.EnergySources;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record emissions calculation, as done for every new entry, against the batch path, in
+ * doubles and in exact fixed-point arithmetic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CalculationBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private EmissionsEngine engine;
+    private EmissionsEngine exactEngine;
+    private RecordBatch batch;
+    private int[] sources;
+    private double[] quantities;
+
+    @Setup
+    public void setUp() {
+        engine = new EmissionsEngine(EnergySources.defaults());
+        exactEngine = new EmissionsEngine(EnergySources.defaults(), true);
+        batch = new RecordBatch(ROWS);
+        sources = new int[ROWS];
+        quantities = new double[ROWS];
+        Random random = new Random(1);
+        for (int i = 0; i < ROWS; i++) {
+            sources[i] = random.nextInt(engine.sourceCount());
+            quantities[i] = random.nextDouble() * 1000;
+            batch.add(sources[i], quantities[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void perRecord(Blackhole blackhole) {
+        for (int i = 0; i < ROWS; i++) {
+            blackhole.consume(engine.energy(sources[i], quantities[i]));
+            blackhole.consume(engine.emissions(sources[i], quantities[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double batch() {
+        engine.calculate(batch);
+        return batch.totalEmissions();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double exactBatch() {
+        exactEngine.calculate(batch);
+        return batch.totalEmissions();
+    }
+}
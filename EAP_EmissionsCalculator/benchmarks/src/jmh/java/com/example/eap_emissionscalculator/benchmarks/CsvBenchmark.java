@@ -0,0 +1,108 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.CsvExporter;
+import com.example.eap_emissionscalculator.engine.CsvFormat;
+import com.example.eap_emissionscalculator.engine.EmissionsEngine;
+import com.example.eap_emissionscalculator.engine.EnergySource;
+import com.example.eap_emissionscalculator.engine.EnergySources;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+import com.example.eap_emissionscalculator.engine.XlsxExporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV serialization: escaping source names, the old build-a-String writeCsvContent() pattern
+ * and the streaming exporter, each writing the same rows to a temporary file, plus the streaming
+ * XLSX exporter for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvBenchmark {
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    private List<EnergySource> sources;
+    private RecordBatch batch;
+    private CsvExporter exporter;
+    private XlsxExporter xlsxExporter;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        sources = EnergySources.defaults();
+        EmissionsEngine engine = new EmissionsEngine(sources);
+        batch = new RecordBatch(records);
+        Random random = new Random(9);
+        for (int i = 0; i < records; i++) {
+            batch.add(random.nextInt(sources.size()), random.nextDouble() * 1000);
+        }
+        engine.calculate(batch);
+        exporter = new CsvExporter();
+        xlsxExporter = new XlsxExporter();
+        file = File.createTempFile("emissions", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void escape(Blackhole blackhole) {
+        for (EnergySource source : sources) {
+            blackhole.consume(CsvFormat.escape(source.name));
+        }
+    }
+
+    @Benchmark
+    public void stringBuilder() throws IOException {
+        StringBuilder csvContent = new StringBuilder();
+        csvContent.append(CsvFormat.HEADER);
+        for (int i = 0; i < batch.size(); i++) {
+            EnergySource source = sources.get(batch.sourceIndex(i));
+            csvContent.append(CsvFormat.escape(source.name)).append(",")
+                    .append(batch.quantity(i)).append(",")
+                    .append(source.unit).append(",")
+                    .append(batch.energy(i)).append(",")
+                    .append(batch.emissions(i)).append("\n");
+        }
+        csvContent.append(CsvFormat.TOTALS_PREFIX).append(batch.totalEnergy())
+                .append(",").append(batch.totalEmissions());
+
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(csvContent.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public boolean streaming() throws IOException {
+        return exporter.export(file, sources, batch, batch.totalEnergy(), batch.totalEmissions(),
+                null, null);
+    }
+
+    @Benchmark
+    public boolean xlsx() throws IOException {
+        return xlsxExporter.export(file, sources, batch, batch.totalEnergy(), batch.totalEmissions(),
+                null, null);
+    }
+}
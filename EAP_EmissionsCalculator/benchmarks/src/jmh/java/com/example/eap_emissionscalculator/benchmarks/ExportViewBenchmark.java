@@ -0,0 +1,93 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.CsvExporter;
+import com.example.eap_emissionscalculator.engine.EmissionsEngine;
+import com.example.eap_emissionscalculator.engine.EnergySource;
+import com.example.eap_emissionscalculator.engine.EnergySources;
+import com.example.eap_emissionscalculator.engine.MappedCsvExport;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a CSV export to show its totals and first screen of rows: memory-mapped with a row
+ * index against reading every line into objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExportViewBenchmark {
+
+    private static final int SCREEN_ROWS = 30;
+
+    @Param({"1000", "200000"})
+    public int records;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<EnergySource> sources = EnergySources.defaults();
+        RecordBatch batch = new RecordBatch(records);
+        Random random = new Random(9);
+        for (int i = 0; i < records; i++) {
+            batch.add(random.nextInt(sources.size()), random.nextDouble() * 1000);
+        }
+        new EmissionsEngine(sources).calculate(batch);
+        file = File.createTempFile("emissions", ".csv");
+        new CsvExporter().export(file, sources, batch, batch.totalEnergy(), batch.totalEmissions(),
+                null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void mapped(Blackhole blackhole) throws IOException {
+        MappedCsvExport export = MappedCsvExport.open(file);
+        blackhole.consume(export.totalEmissions());
+        MappedCsvExport.Row row = new MappedCsvExport.Row();
+        for (int i = 0; i < Math.min(SCREEN_ROWS, export.size()); i++) {
+            blackhole.consume(export.read(i, row).emissions);
+        }
+    }
+
+    @Benchmark
+    public void loadAll(Blackhole blackhole) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rows.add(line.split(","));
+            }
+        }
+        String[] totals = rows.remove(rows.size() - 1);
+        blackhole.consume(Double.parseDouble(totals[4]));
+        for (int i = 0; i < Math.min(SCREEN_ROWS, rows.size()); i++) {
+            blackhole.consume(Double.parseDouble(rows.get(i)[4]));
+        }
+    }
+}
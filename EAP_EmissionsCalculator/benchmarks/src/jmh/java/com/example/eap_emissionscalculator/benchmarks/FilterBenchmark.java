@@ -0,0 +1,89 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.RecordIndex;
+import com.example.eap_emissionscalculator.engine.RecordStore;
+import com.example.eap_emissionscalculator.engine.RunningTotals;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtered subtotals of the history: a scan of every record against a query of
+ * {@link RecordIndex}, for a selective filter (one source, narrow quantity range) and a broad one.
+ * Also the cost of keeping the index up to date on an edit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    private static final int SOURCES = 13;
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    @Param({"selective", "broad"})
+    public String filter;
+
+    private RecordStore store;
+    private RecordIndex index;
+    private RecordIndex.Selection selection;
+    private RecordIndex.Filter query;
+    private RunningTotals scanTotals;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(5);
+        store = new RecordStore(records);
+        for (int i = 0; i < records; i++) {
+            double quantity = random.nextDouble() * 1000;
+            store.add(random.nextInt(SOURCES), 0, 0, 0, quantity, quantity * 2, quantity / 4);
+        }
+        index = new RecordIndex(store, SOURCES);
+        selection = new RecordIndex.Selection(SOURCES);
+        scanTotals = new RunningTotals(SOURCES);
+        query = filter.equals("selective")
+                ? new RecordIndex.Filter(3, 100, 110, Double.NEGATIVE_INFINITY)
+                : new RecordIndex.Filter(RecordIndex.ANY_SOURCE, 100, Double.POSITIVE_INFINITY, 50);
+    }
+
+    @Benchmark
+    public double scan() {
+        scanTotals.clear();
+        for (int row = 0; row < store.size(); row++) {
+            if (query.source != RecordIndex.ANY_SOURCE && store.sourceIndex(row) != query.source) continue;
+            double quantity = store.quantity(row);
+            if (quantity < query.minQuantity || quantity > query.maxQuantity) continue;
+            if (store.emissions(row) < query.minEmissions) continue;
+            scanTotals.add(store.sourceIndex(row), store.energy(row), store.emissions(row));
+        }
+        return scanTotals.emissions();
+    }
+
+    @Benchmark
+    public double indexed() {
+        index.select(query, selection);
+        return selection.totals().emissions();
+    }
+
+    @Benchmark
+    public int edit() {
+        int row = random.nextInt(records);
+        double oldQuantity = store.quantity(row);
+        double oldEmissions = store.emissions(row);
+        double quantity = random.nextDouble() * 1000;
+        store.setQuantity(row, quantity, quantity * 2, quantity / 4);
+        index.changed(row, oldQuantity, oldEmissions);
+        return index.size();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.FixedPointFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two-decimal formatting applied to every table cell and to the totals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormatBenchmark {
+
+    @Param({"en-US", "bg-BG"})
+    public String localeTag;
+
+    private Locale locale;
+    private FixedPointFormatter formatter;
+    private final char[] chars = new char[FixedPointFormatter.BUFFER_SIZE];
+    private double[] values;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        locale = Locale.forLanguageTag(localeTag);
+        formatter = new FixedPointFormatter(locale);
+        values = new double[1024];
+        Random random = new Random(2);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 100_000;
+        }
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        next = (next + 1) & (values.length - 1);
+        return String.format(locale, "%.2f", values[next]);
+    }
+
+    @Benchmark
+    public char[] fixedPoint() {
+        next = (next + 1) & (values.length - 1);
+        formatter.format(values[next], chars);
+        return chars;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.FactorCatalogue;
+import com.example.eap_emissionscalculator.engine.Recalculation;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+import com.example.eap_emissionscalculator.engine.RecordStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recalculating the whole history after a factor change, on one thread and on the common pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecalculationBenchmark {
+
+    @Param({"10000", "500000"})
+    public int records;
+
+    private FactorCatalogue catalogue;
+    private RecordStore history;
+    private ForkJoinPool singleThread;
+
+    @Setup
+    public void setUp() {
+        catalogue = FactorCatalogue.bundled();
+        RecordBatch batch = new RecordBatch(records);
+        Random random = new Random(4);
+        for (int i = 0; i < records; i++) {
+            batch.add(random.nextInt(catalogue.sourceCount()), 0, random.nextDouble() * 1000);
+        }
+        catalogue.calculate(batch);
+        history = new RecordStore(records);
+        history.addAll(batch);
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        singleThread.shutdown();
+    }
+
+    @Benchmark
+    public Recalculation.Result singleThread() {
+        return Recalculation.run(history.copy(), catalogue, 0, singleThread);
+    }
+
+    @Benchmark
+    public Recalculation.Result commonPool() {
+        return Recalculation.run(history.copy(), catalogue, 0, ForkJoinPool.commonPool());
+    }
+}
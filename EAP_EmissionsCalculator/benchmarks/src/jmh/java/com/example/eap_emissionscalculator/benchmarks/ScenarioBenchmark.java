@@ -0,0 +1,82 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.FactorCatalogue;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+import com.example.eap_emissionscalculator.engine.RecordStore;
+import com.example.eap_emissionscalculator.engine.ScenarioEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fuel-switch scenarios: building the per-site baseline from the history, and ranking every
+ * single-fuel switch at every site against it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScenarioBenchmark {
+
+    private static final int SITES = 20;
+
+    @Param({"100000"})
+    public int records;
+
+    private FactorCatalogue catalogue;
+    private RecordStore store;
+    private ScenarioEngine engine;
+    private ScenarioEngine.Baseline baseline;
+    private List<ScenarioEngine.Scenario> scenarios;
+
+    @Setup
+    public void setUp() {
+        catalogue = FactorCatalogue.bundled();
+        int set = catalogue.defaultFactorSet();
+        RecordBatch batch = new RecordBatch(records);
+        Random random = new Random(8);
+        for (int i = 0; i < records; i++) {
+            batch.add(random.nextInt(catalogue.sourceCount()), set, random.nextInt(SITES), 0,
+                    random.nextDouble() * 1000);
+        }
+        catalogue.calculate(batch);
+        store = new RecordStore(records);
+        store.addAll(batch);
+
+        engine = new ScenarioEngine(catalogue, set);
+        baseline = ScenarioEngine.baseline(store, catalogue.sourceCount(), SITES, ForkJoinPool.commonPool());
+        scenarios = new ArrayList<>();
+        for (int site = 0; site < SITES; site++) {
+            for (int from = 0; from < catalogue.sourceCount(); from++) {
+                for (int to = 0; to < catalogue.sourceCount(); to++) {
+                    if (from == to) continue;
+                    scenarios.add(new ScenarioEngine.Scenario(site + ":" + from + "->" + to,
+                            Collections.singletonList(new ScenarioEngine.Substitution(from, to, 1, site))));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public double baseline() {
+        return ScenarioEngine.baseline(store, catalogue.sourceCount(), SITES, ForkJoinPool.commonPool())
+                .totalEmissions();
+    }
+
+    @Benchmark
+    public double rank() {
+        return engine.rank(baseline, scenarios, ForkJoinPool.commonPool()).get(0).saved;
+    }
+}
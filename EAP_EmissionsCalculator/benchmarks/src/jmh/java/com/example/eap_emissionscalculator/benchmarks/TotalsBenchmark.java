@@ -0,0 +1,82 @@
+package com.example.eap_emissionscalculator.benchmarks;
+
+import com.example.eap_emissionscalculator.engine.RunningTotals;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one quantity edit: the old recalculateTotals() rescan of every record against a
+ * delta update of {@link RunningTotals}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TotalsBenchmark {
+
+    private static final class Record {
+        int source;
+        double energy;
+        double emissions;
+    }
+
+    @Param({"10", "1000", "100000"})
+    public int records;
+
+    private final List<Record> history = new ArrayList<>();
+    private RunningTotals totals;
+    private Random random;
+    private double totalEnergy;
+    private double totalEmissions;
+
+    @Setup
+    public void setUp() {
+        random = new Random(5);
+        totals = new RunningTotals(13);
+        history.clear();
+        for (int i = 0; i < records; i++) {
+            Record record = new Record();
+            record.source = random.nextInt(13);
+            record.energy = random.nextDouble() * 1000;
+            record.emissions = record.energy / 4;
+            history.add(record);
+            totals.add(record.source, record.energy, record.emissions);
+        }
+    }
+
+    @Benchmark
+    public double rescan() {
+        Record record = history.get(random.nextInt(records));
+        record.energy = random.nextDouble() * 1000;
+
+        totalEnergy = 0.0;
+        totalEmissions = 0.0;
+        for (Record r : history) {
+            totalEnergy += r.energy;
+            totalEmissions += r.emissions;
+        }
+        totalEnergy = Math.round(totalEnergy * 100) / 100.0;
+        totalEmissions = Math.round(totalEmissions * 100) / 100.0;
+        return totalEnergy + totalEmissions;
+    }
+
+    @Benchmark
+    public double delta() {
+        Record record = history.get(random.nextInt(records));
+        double newEnergy = random.nextDouble() * 1000;
+        totals.replace(record.source, record.energy, record.emissions, newEnergy, record.emissions);
+        record.energy = newEnergy;
+        return totals.energy() + totals.emissions();
+    }
+}
@@ -0,0 +1,23 @@
+// Run with ./gradlew :cli:run --args="--threads 4 quantities.csv", or ./gradlew :cli:installDist
+// for a start script in build/install/cli/bin.
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.example.eap_emissionscalculator.cli.BatchRunner")
+}
+
+dependencies {
+    implementation(project(":engine"))
+    testImplementation(libs.junit)
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
@@ -0,0 +1,170 @@
+package com.example.eap_emissionscalculator.cli;
+
+import com.example.eap_emissionscalculator.engine.FactorCatalogue;
+import com.example.eap_emissionscalculator.engine.FixedPoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Command-line entry point that calculates quantity files without the app: each input is read
+ * with {@link com.example.eap_emissionscalculator.engine.CsvImporter}, calculated with the
+ * factors of a {@link FactorCatalogue} and written next to it as {@code <name>-emissions.csv}
+ * in the layout of the app's CSV export, totals line included. {@code -} reads standard input
+ * and writes standard output.
+ */
+public final class BatchRunner {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE =
+            "Употреба: batch [--factors ФАЙЛ] [--factor-set ID] [--exact] [--threads N]"
+                    + " [--out-dir ПАПКА] ВХОД...\n"
+                    + "  ВХОД       CSV с редове източник,количество; - за стандартния вход\n"
+                    + "  --factors  каталог с емисионни фактори (по подразбиране вграденият)\n"
+                    + "  --exact    точно изчисление до стотни\n"
+                    + "  --threads  брой нишки за изчисление (по подразбиране броят ядра)\n";
+
+    private BatchRunner() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    static int run(String[] args, InputStream stdin, PrintStream stdout, PrintStream stderr) {
+        File factors = null;
+        String factorSetId = null;
+        boolean exact = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outDir = null;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--factors":
+                        factors = new File(value(args, ++i, arg));
+                        break;
+                    case "--factor-set":
+                        factorSetId = value(args, ++i, arg);
+                        break;
+                    case "--exact":
+                        exact = true;
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i, arg));
+                        if (threads < 1) throw new IllegalArgumentException("--threads трябва да е поне 1");
+                        break;
+                    case "--out-dir":
+                        outDir = new File(value(args, ++i, arg));
+                        break;
+                    case "-h":
+                    case "--help":
+                        stdout.print(USAGE);
+                        return EXIT_OK;
+                    default:
+                        if (arg.startsWith("--")) throw new IllegalArgumentException("Непозната опция " + arg);
+                        inputs.add(arg);
+                }
+            }
+            if (inputs.isEmpty()) throw new IllegalArgumentException("Няма входни файлове");
+        } catch (IllegalArgumentException e) {
+            stderr.println(e.getMessage());
+            stderr.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        FactorCatalogue catalogue;
+        try {
+            catalogue = factors != null ? load(factors) : FactorCatalogue.bundled();
+        } catch (IOException e) {
+            stderr.println("Грешка при зареждане на фактори: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        catalogue = catalogue.withExactArithmetic(exact);
+        int factorSet = factorSetId != null
+                ? catalogue.factorSetIndex(factorSetId) : catalogue.defaultFactorSet();
+        if (factorSet < 0) {
+            stderr.println("Няма набор от фактори " + factorSetId);
+            return EXIT_USAGE;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ChunkedExport export = new ChunkedExport(catalogue, factorSet, executor, threads);
+            int status = EXIT_OK;
+            for (String input : inputs) {
+                // Standard output carries the CSV itself, so the summary goes to standard error
+                PrintStream report = input.equals("-") ? stderr : stdout;
+                try {
+                    ChunkedExport.Result result = input.equals("-")
+                            ? export.run(stdin, stdout)
+                            : runFile(export, new File(input), outDir, report);
+                    report.println(input + ": редове " + result.imported
+                            + ", отхвърлени " + result.rejected
+                            + ", енергия " + format(result.totals.energy(), exact) + " kWh"
+                            + ", CO₂ " + format(result.totals.emissions(), exact) + " kg");
+                } catch (IOException | ArithmeticException e) {
+                    stderr.println(input + ": грешка: " + e.getMessage());
+                    status = EXIT_FAILED;
+                }
+            }
+            return status;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ChunkedExport.Result runFile(ChunkedExport export, File input, File outDir,
+                                                PrintStream report) throws IOException {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        File dir = outDir != null ? outDir : input.getAbsoluteFile().getParentFile();
+        File output = new File(dir, name + "-emissions.csv");
+
+        boolean completed = false;
+        try (InputStream in = new FileInputStream(input);
+             OutputStream out = new FileOutputStream(output)) {
+            ChunkedExport.Result result = export.run(in, out);
+            completed = true;
+            report.println(input + " -> " + output);
+            return result;
+        } finally {
+            if (!completed) {
+                output.delete();
+            }
+        }
+    }
+
+    private static FactorCatalogue load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return FactorCatalogue.parse(in);
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException(option + " изисква стойност");
+        return args[index];
+    }
+
+    private static String format(double value, boolean exact) {
+        if (exact) {
+            return FixedPoint.append(FixedPoint.hundredths(value), new StringBuilder()).toString();
+        }
+        return String.valueOf(value);
+    }
+}
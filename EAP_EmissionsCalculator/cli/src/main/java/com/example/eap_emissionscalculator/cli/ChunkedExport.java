@@ -0,0 +1,156 @@
+package com.example.eap_emissionscalculator.cli;
+
+import com.example.eap_emissionscalculator.engine.CsvExporter;
+import com.example.eap_emissionscalculator.engine.CsvImporter;
+import com.example.eap_emissionscalculator.engine.EnergySource;
+import com.example.eap_emissionscalculator.engine.FactorCatalogue;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+import com.example.eap_emissionscalculator.engine.RunningTotals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates a quantity file and writes it in the same CSV layout as the app's export. The
+ * input is parsed on the calling thread in chunks of {@link #CHUNK_SIZE} rows; each chunk is
+ * calculated, summed and encoded to CSV bytes on {@code executor}, and the encoded chunks are
+ * written out in input order. At most two chunks per worker are in flight, so memory stays
+ * bounded for inputs of any size.
+ *
+ * <p>The output does not depend on the number of workers: chunk boundaries are fixed, and chunk
+ * totals are merged in input order.
+ */
+final class ChunkedExport {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    static final class Result {
+        final int imported;
+        final int rejected;
+        final RunningTotals totals;
+
+        Result(int imported, int rejected, RunningTotals totals) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.totals = totals;
+        }
+    }
+
+    private static final class Chunk {
+        final ByteArrayOutputStream bytes;
+        final RunningTotals totals;
+
+        Chunk(ByteArrayOutputStream bytes, RunningTotals totals) {
+            this.bytes = bytes;
+            this.totals = totals;
+        }
+    }
+
+    private final FactorCatalogue catalogue;
+    private final int factorSet;
+    private final List<EnergySource> sources;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int chunkSize;
+
+    // Exporters hold a direct buffer, so each worker keeps its own
+    private final ThreadLocal<CsvExporter> exporters;
+
+    ChunkedExport(FactorCatalogue catalogue, int factorSet, ExecutorService executor, int workers) {
+        this(catalogue, factorSet, executor, workers, CHUNK_SIZE);
+    }
+
+    ChunkedExport(FactorCatalogue catalogue, int factorSet, ExecutorService executor, int workers,
+                  int chunkSize) {
+        this.catalogue = catalogue;
+        this.factorSet = factorSet;
+        this.sources = catalogue.engine(factorSet).sources();
+        this.executor = executor;
+        this.maxInFlight = Math.max(workers, 1) * 2;
+        this.chunkSize = chunkSize;
+        exporters = ThreadLocal.withInitial(() -> {
+            CsvExporter exporter = new CsvExporter();
+            exporter.setExact(catalogue.isExact());
+            return exporter;
+        });
+    }
+
+    /**
+     * Reads {@code in} to the end and writes the header, every accepted row and the totals line
+     * to {@code out}.
+     *
+     * @throws ArithmeticException if an exact calculation overflows
+     */
+    Result run(InputStream in, OutputStream out) throws IOException {
+        CsvImporter importer = new CsvImporter(sources, factorSet, chunkSize);
+        RunningTotals totals = new RunningTotals(catalogue.sourceCount(), catalogue.isExact());
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+
+        CsvExporter exporter = exporters.get();
+        exporter.begin(Channels.newChannel(out), sources);
+        exporter.writeHeader();
+        exporter.end();
+
+        try {
+            CsvImporter.Result read = importer.read(in, batch -> {
+                pending.add(executor.submit(() -> encode(batch)));
+                if (pending.size() >= maxInFlight) {
+                    drain(pending.poll(), out, totals);
+                }
+            }, null);
+            while (!pending.isEmpty()) {
+                drain(pending.poll(), out, totals);
+            }
+
+            exporter.begin(Channels.newChannel(out), sources);
+            exporter.writeTotals(totals.energy(), totals.emissions());
+            exporter.end();
+            out.flush();
+            return new Result(read.imported, read.rejected, totals);
+        } finally {
+            for (Future<Chunk> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Chunk encode(RecordBatch batch) throws IOException {
+        catalogue.calculate(batch);
+        RunningTotals chunkTotals = new RunningTotals(catalogue.sourceCount(), catalogue.isExact());
+        chunkTotals.addAll(batch, 0, batch.size());
+
+        // Rows average around 50 bytes
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 64);
+        CsvExporter exporter = exporters.get();
+        exporter.begin(Channels.newChannel(bytes), sources);
+        exporter.writeRows(batch, 0, batch.size());
+        exporter.end();
+        return new Chunk(bytes, chunkTotals);
+    }
+
+    private static void drain(Future<Chunk> future, OutputStream out, RunningTotals totals)
+            throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+        chunk.bytes.writeTo(out);
+        totals.addAll(chunk.totals);
+    }
+}
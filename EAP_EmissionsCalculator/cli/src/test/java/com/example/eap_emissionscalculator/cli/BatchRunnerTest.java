@@ -0,0 +1,66 @@
+package com.example.eap_emissionscalculator.cli;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    @Test
+    public void run_writesResultNextToInput() throws Exception {
+        File input = folder.newFile("january.csv");
+        Files.write(input.toPath(), "Нафта,100\nПрироден газ,10\n".getBytes(StandardCharsets.UTF_8));
+
+        int status = run("--threads", "2", input.getPath());
+
+        assertEquals(BatchRunner.EXIT_OK, status);
+        File output = new File(folder.getRoot(), "january-emissions.csv");
+        String[] lines = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[1].startsWith("Нафта,100.0,л,"));
+        assertTrue(lines[3].startsWith("ОБЩО,,,"));
+    }
+
+    @Test
+    public void run_readsStandardInputToStandardOutput() {
+        int status = run(new ByteArrayInputStream("Нафта,1\n".getBytes(StandardCharsets.UTF_8)),
+                "--exact", "-");
+
+        assertEquals(BatchRunner.EXIT_OK, status);
+        String csv = new String(stdout.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("Източник,"));
+        assertTrue(csv.contains("\nОБЩО,,,"));
+    }
+
+    @Test
+    public void run_reportsMissingInputAndUnknownFactorSet() throws Exception {
+        assertEquals(BatchRunner.EXIT_USAGE, run());
+        assertEquals(BatchRunner.EXIT_USAGE, run("--threads", "0", "a.csv"));
+        assertEquals(BatchRunner.EXIT_USAGE, run("--factor-set", "missing", "a.csv"));
+        assertEquals(BatchRunner.EXIT_FAILED, run(new File(folder.getRoot(), "missing.csv").getPath()));
+    }
+
+    private int run(String... args) {
+        return run(new ByteArrayInputStream(new byte[0]), args);
+    }
+
+    private int run(ByteArrayInputStream stdin, String... args) {
+        return BatchRunner.run(args, stdin, new PrintStream(stdout, true),
+                new PrintStream(stderr, true));
+    }
+}
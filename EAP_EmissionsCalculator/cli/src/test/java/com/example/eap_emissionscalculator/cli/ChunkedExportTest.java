@@ -0,0 +1,103 @@
+package com.example.eap_emissionscalculator.cli;
+
+import com.example.eap_emissionscalculator.engine.CsvExporter;
+import com.example.eap_emissionscalculator.engine.CsvFormat;
+import com.example.eap_emissionscalculator.engine.CsvImporter;
+import com.example.eap_emissionscalculator.engine.EmissionsEngine;
+import com.example.eap_emissionscalculator.engine.FactorCatalogue;
+import com.example.eap_emissionscalculator.engine.RecordBatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ChunkedExportTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void run_matchesSingleExportWhateverTheWorkerCount() throws Exception {
+        FactorCatalogue catalogue = FactorCatalogue.bundled();
+        int factorSet = catalogue.defaultFactorSet();
+        byte[] input = input(catalogue, 3000);
+
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        ChunkedExport.Result result = new ChunkedExport(catalogue, factorSet, executor, 1, 100)
+                .run(new ByteArrayInputStream(input), serial);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        new ChunkedExport(catalogue, factorSet, executor, 4, 100)
+                .run(new ByteArrayInputStream(input), parallel);
+
+        assertEquals(3000, result.imported);
+        assertEquals(1, result.rejected);
+        assertArrayEquals(serial.toByteArray(), parallel.toByteArray());
+
+        // Rows are exactly what the app's export writes; the totals differ at most in rounding
+        RecordBatch[] read = new RecordBatch[1];
+        new CsvImporter(catalogue.engine(factorSet).sources(), factorSet, 1 << 16)
+                .read(new ByteArrayInputStream(input), batch -> read[0] = batch, null);
+        RecordBatch batch = read[0];
+        catalogue.calculate(batch);
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        new CsvExporter().write(Channels.newChannel(single), catalogue.engine(factorSet).sources(),
+                batch, batch.totalEnergy(), batch.totalEmissions(), null, null);
+
+        String expected = single.toString("UTF-8");
+        String actual = parallel.toString("UTF-8");
+        int expectedTotals = expected.lastIndexOf(CsvFormat.TOTALS_PREFIX);
+        int actualTotals = actual.lastIndexOf(CsvFormat.TOTALS_PREFIX);
+        assertEquals(expected.substring(0, expectedTotals), actual.substring(0, actualTotals));
+        String[] totals = actual.substring(actualTotals).split(",");
+        assertEquals(batch.totalEnergy(), Double.parseDouble(totals[3]), 1e-6);
+        assertEquals(batch.totalEmissions(), Double.parseDouble(totals[4]), 1e-6);
+    }
+
+    @Test
+    public void exactRun_totalsEqualSumOfRows() throws Exception {
+        FactorCatalogue catalogue = FactorCatalogue.bundled().withExactArithmetic(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ChunkedExport(catalogue, catalogue.defaultFactorSet(), executor, 4, 64)
+                .run(new ByteArrayInputStream(input(catalogue, 1000)), out);
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        BigDecimal energy = BigDecimal.ZERO;
+        BigDecimal emissions = BigDecimal.ZERO;
+        for (int i = 1; i < lines.length - 1; i++) {
+            String[] fields = lines[i].split(",");
+            energy = energy.add(new BigDecimal(fields[fields.length - 2]));
+            emissions = emissions.add(new BigDecimal(fields[fields.length - 1]));
+        }
+        String[] totals = lines[lines.length - 1].split(",");
+        assertEquals(energy, new BigDecimal(totals[3]));
+        assertEquals(emissions, new BigDecimal(totals[4]));
+    }
+
+    private static byte[] input(FactorCatalogue catalogue, int rows) {
+        EmissionsEngine engine = catalogue.engine(catalogue.defaultFactorSet());
+        StringBuilder csv = new StringBuilder("source,quantity\n");
+        Random random = new Random(11);
+        for (int i = 0; i < rows; i++) {
+            if (i == rows / 2) {
+                csv.append("Неизвестен,5\n");
+            }
+            csv.append(CsvFormat.escape(engine.source(random.nextInt(engine.sourceCount())).name))
+                    .append(',').append(random.nextInt(1_000_000) / 1000.0).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streams records to a CSV file in the {@link CsvFormat} layout. Rows are encoded straight
+ * into a reusable direct buffer that is drained to the output channel whenever it fills up,
+ * so memory use does not depend on the number of rows. An exporter is not thread-safe, but
+ * may be reused for consecutive exports on the same thread.
+ *
+ * <p>An {@link #setExact exact} exporter writes energy and emissions as whole hundredths with two
+ * decimals, for records calculated in {@link FixedPoint}, and writes the sums of exactly those
+ * values as the totals line instead of the totals it is passed.
+ */
+public final class CsvExporter {
+
+    public interface ProgressListener {
+        void onProgress(int rowsWritten, int totalRows);
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] HEADER = CsvFormat.HEADER.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOTALS_PREFIX = CsvFormat.TOTALS_PREFIX.getBytes(StandardCharsets.UTF_8);
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    private final ByteBuffer buffer;
+    private final StringBuilder number = new StringBuilder(32);
+    private boolean exact;
+    private WritableByteChannel channel;
+    private byte[][] names;
+    private byte[][] units;
+    private long exactEnergy;
+    private long exactEmissions;
+
+    public CsvExporter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvExporter(int bufferSize) {
+        buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 256));
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * Writes the export to {@code file}, replacing any existing content.
+     *
+     * @return {@code false} if the export was cancelled; the partial file is then deleted
+     */
+    public boolean export(File file, List<EnergySource> sources, RecordSource records,
+                          double totalEnergy, double totalEmissions,
+                          ProgressListener listener, BooleanSupplier cancelled) throws IOException {
+        boolean completed = false;
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            completed = write(fos.getChannel(), sources, records, totalEnergy, totalEmissions,
+                    listener, cancelled);
+        } finally {
+            if (!completed) {
+                file.delete();
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Writes the export to {@code channel} at its current position.
+     *
+     * @return {@code false} if {@code cancelled} reported true before all rows were written
+     */
+    public boolean write(WritableByteChannel channel, List<EnergySource> sources, RecordSource records,
+                         double totalEnergy, double totalEmissions,
+                         ProgressListener listener, BooleanSupplier cancelled) throws IOException {
+        begin(channel, sources);
+        try {
+            writeHeader();
+            int count = records.size();
+            for (int from = 0; from < count; from += PROGRESS_INTERVAL) {
+                if (cancelled != null && cancelled.getAsBoolean()) {
+                    return false;
+                }
+                if (listener != null) {
+                    listener.onProgress(from, count);
+                }
+                writeRows(records, from, Math.min(from + PROGRESS_INTERVAL, count));
+            }
+
+            if (exact) {
+                writeTotals(FixedPoint.toDouble(exactEnergy), FixedPoint.toDouble(exactEmissions));
+            } else {
+                writeTotals(totalEnergy, totalEmissions);
+            }
+            flush();
+
+            if (listener != null) {
+                listener.onProgress(count, count);
+            }
+            return true;
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Starts writing to {@code channel} piece by piece, for output that is produced in parts,
+     * such as chunks encoded on several threads and concatenated. Must be followed by
+     * {@link #end()}.
+     */
+    public void begin(WritableByteChannel channel, List<EnergySource> sources) {
+        this.channel = channel;
+        buffer.clear();
+        exactEnergy = 0;
+        exactEmissions = 0;
+        names = new byte[sources.size()][];
+        units = new byte[sources.size()][];
+        for (int i = 0; i < names.length; i++) {
+            EnergySource source = sources.get(i);
+            names[i] = CsvFormat.escape(source.name).getBytes(StandardCharsets.UTF_8);
+            units[i] = source.unit.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public void writeHeader() throws IOException {
+        put(HEADER);
+    }
+
+    /**
+     * Writes rows {@code from} (inclusive) to {@code to} (exclusive) of {@code records}.
+     */
+    public void writeRows(RecordSource records, int from, int to) throws IOException {
+        for (int row = from; row < to; row++) {
+            int source = records.sourceIndex(row);
+            put(names[source]);
+            put((byte) ',');
+            putNumber(records.quantity(row));
+            put((byte) ',');
+            put(units[source]);
+            put((byte) ',');
+            if (exact) {
+                long energy = FixedPoint.hundredths(records.energy(row));
+                long emissions = FixedPoint.hundredths(records.emissions(row));
+                putHundredths(energy);
+                put((byte) ',');
+                putHundredths(emissions);
+                exactEnergy = Math.addExact(exactEnergy, energy);
+                exactEmissions = Math.addExact(exactEmissions, emissions);
+            } else {
+                putNumber(records.energy(row));
+                put((byte) ',');
+                putNumber(records.emissions(row));
+            }
+            put((byte) '\n');
+        }
+    }
+
+    /**
+     * Writes the totals line; an exact exporter writes the values as whole hundredths.
+     */
+    public void writeTotals(double totalEnergy, double totalEmissions) throws IOException {
+        put(TOTALS_PREFIX);
+        if (exact) {
+            putHundredths(FixedPoint.hundredths(totalEnergy));
+            put((byte) ',');
+            putHundredths(FixedPoint.hundredths(totalEmissions));
+        } else {
+            putNumber(totalEnergy);
+            put((byte) ',');
+            putNumber(totalEmissions);
+        }
+    }
+
+    /**
+     * Writes out everything buffered since {@link #begin} and releases the channel.
+     */
+    public void end() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void put(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    // Same text as String.valueOf(double); the digits are ASCII, so each char is one byte.
+    private void putNumber(double value) throws IOException {
+        number.setLength(0);
+        number.append(value);
+        putNumberText();
+    }
+
+    private void putHundredths(long value) throws IOException {
+        number.setLength(0);
+        FixedPoint.append(value, number);
+        putNumberText();
+    }
+
+    private void putNumberText() throws IOException {
+        int length = number.length();
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) number.charAt(i));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
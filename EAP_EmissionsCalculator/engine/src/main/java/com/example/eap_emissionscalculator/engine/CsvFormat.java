@@ -0,0 +1,24 @@
+package com.example.eap_emissionscalculator.engine;
+
+/**
+ * The layout of the CSV export: a header line, one line per record and a closing totals line
+ * without a trailing line break.
+ */
+public final class CsvFormat {
+
+    public static final String[] COLUMNS = {"Източник", "Количество", "Ед.", "Енергия (kWh)", "CO₂ (kg)"};
+    public static final String HEADER = String.join(",", COLUMNS) + "\n";
+    public static final String TOTALS_LABEL = "ОБЩО";
+    public static final String TOTALS_PREFIX = TOTALS_LABEL + ",,,";
+
+    private CsvFormat() {
+    }
+
+    public static String escape(String content) {
+        if (content == null) return "";
+        if (content.contains(",") || content.contains("\n")) {
+            return "\"" + content.replace("\"", "\"\"") + "\"";
+        }
+        return content;
+    }
+}
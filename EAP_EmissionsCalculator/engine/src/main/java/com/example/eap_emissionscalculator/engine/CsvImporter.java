@@ -0,0 +1,339 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reads consumption data from CSV, either in the {@link CsvFormat} export layout or as plain
+ * {@code source,quantity} lines. The input is parsed byte by byte from a fixed read buffer:
+ * source names are matched against the UTF-8 bytes of the known names and quantities are
+ * parsed from the field bytes, so typical rows allocate nothing. Accepted rows are handed
+ * out in batches, keeping memory bounded by the batch size rather than by the file size.
+ *
+ * <p>The header line, blank lines and the {@code ОБЩО} totals line are skipped. Rows with an
+ * unknown source, a missing or malformed quantity, or a quantity that is not positive are
+ * rejected, as in manual entry.
+ */
+public final class CsvImporter {
+
+    public interface BatchConsumer {
+        void accept(RecordBatch batch) throws IOException;
+    }
+
+    public static final class Result {
+        public final int imported;
+        public final int rejected;
+        public final boolean cancelled;
+
+        Result(int imported, int rejected, boolean cancelled) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.cancelled = cancelled;
+        }
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] TOTALS_LABEL = CsvFormat.TOTALS_LABEL.getBytes(StandardCharsets.UTF_8);
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte[][] names;
+    private final int[] table;
+    private final int factorSet;
+    private final int site;
+    private final long createdAt;
+    private final int batchSize;
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private byte[] sourceField = new byte[128];
+    private byte[] quantityField = new byte[32];
+    private int sourceLength;
+    private int quantityLength;
+    private boolean quantityQuoted;
+
+    public CsvImporter(List<EnergySource> sources) {
+        this(sources, 0, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param factorSet the {@link FactorCatalogue} factor set imported rows are pinned to
+     */
+    public CsvImporter(List<EnergySource> sources, int factorSet, int batchSize) {
+        this(sources, factorSet, SiteTags.NONE, 0, batchSize);
+    }
+
+    /**
+     * @param factorSet the {@link FactorCatalogue} factor set imported rows are pinned to
+     * @param site the {@link SiteTags} id imported rows are tagged with
+     * @param createdAt the time imported rows are recorded at
+     */
+    public CsvImporter(List<EnergySource> sources, int factorSet, int site, long createdAt,
+                       int batchSize) {
+        this.factorSet = factorSet;
+        this.site = site;
+        this.createdAt = createdAt;
+        this.batchSize = Math.max(batchSize, 1);
+        names = new byte[sources.size()][];
+        table = new int[Integer.highestOneBit(Math.max(sources.size(), 1) * 4) * 2];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = sources.get(i).name.getBytes(StandardCharsets.UTF_8);
+            int slot = hash(names[i], names[i].length) & (table.length - 1);
+            while (table[slot] != -1) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = i;
+        }
+    }
+
+    /**
+     * Parses {@code in} to the end, passing each full batch of accepted rows to
+     * {@code consumer}. Every batch is a new instance that the consumer may keep.
+     */
+    public Result read(InputStream in, BatchConsumer consumer, BooleanSupplier cancelled) throws IOException {
+        RecordBatch batch = new RecordBatch(batchSize);
+        int imported = 0;
+        int rejected = 0;
+        int line = 0;
+
+        int field = 0;
+        boolean quoted = false;
+        boolean afterQuote = false;
+        boolean fieldQuoted = false;
+        sourceLength = 0;
+        quantityLength = 0;
+        quantityQuoted = false;
+
+        int read;
+        boolean lastLineOpen = false;
+        while ((read = in.read(readBuffer)) != -1) {
+            if (cancelled != null && cancelled.getAsBoolean()) {
+                return new Result(imported, rejected, true);
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = readBuffer[i];
+                lastLineOpen = true;
+                if (quoted) {
+                    if (b == '"') {
+                        quoted = false;
+                        afterQuote = true;
+                    } else {
+                        appendToField(field, b);
+                    }
+                    continue;
+                }
+                if (b == '"') {
+                    if (afterQuote) {
+                        // A doubled quote inside a quoted field
+                        appendToField(field, b);
+                        afterQuote = false;
+                    }
+                    quoted = true;
+                    fieldQuoted = true;
+                } else if (b == ',') {
+                    if (field == 1) quantityQuoted = fieldQuoted;
+                    field++;
+                    fieldQuoted = false;
+                    afterQuote = false;
+                } else if (b == '\n') {
+                    if (field == 1) quantityQuoted = fieldQuoted;
+                    int status = acceptLine(field, line++, batch);
+                    if (status > 0) {
+                        imported++;
+                        if (batch.size() == batchSize) {
+                            consumer.accept(batch);
+                            batch = new RecordBatch(batchSize);
+                        }
+                    } else if (status < 0) {
+                        rejected++;
+                    }
+                    field = 0;
+                    fieldQuoted = false;
+                    afterQuote = false;
+                    sourceLength = 0;
+                    quantityLength = 0;
+                    quantityQuoted = false;
+                    lastLineOpen = false;
+                } else if (b != '\r') {
+                    afterQuote = false;
+                    appendToField(field, b);
+                }
+            }
+        }
+
+        if (lastLineOpen) {
+            if (field == 1) quantityQuoted = fieldQuoted;
+            int status = acceptLine(field, line, batch);
+            if (status > 0) {
+                imported++;
+            } else if (status < 0) {
+                rejected++;
+            }
+        }
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+        }
+        return new Result(imported, rejected, false);
+    }
+
+    /**
+     * @return 1 if the line was added, 0 if it was skipped and -1 if it was rejected
+     */
+    private int acceptLine(int lastField, int line, RecordBatch batch) {
+        int start = trimStart(sourceField, sourceLength);
+        if (line == 0 && startsWithBom(sourceField, start, sourceLength)) {
+            start = trimStart(sourceField, start + 3, sourceLength);
+        }
+        int end = trimEnd(sourceField, start, sourceLength);
+        if (lastField == 0 && start == end) return 0;
+        if (equals(sourceField, start, end, TOTALS_LABEL)) return 0;
+
+        int source = lookup(sourceField, start, end);
+        double quantity = lastField >= 1 ? parseQuantity() : Double.NaN;
+        if (Double.isNaN(quantity)) {
+            // The first line of either layout is a header
+            return line == 0 ? 0 : -1;
+        }
+        if (source < 0 || quantity <= 0 || Double.isInfinite(quantity)) return -1;
+
+        batch.add(source, factorSet, site, createdAt, quantity);
+        return 1;
+    }
+
+    private void appendToField(int field, byte b) {
+        if (field == 0) {
+            if (sourceLength == sourceField.length) {
+                sourceField = Arrays.copyOf(sourceField, sourceLength * 2);
+            }
+            sourceField[sourceLength++] = b;
+        } else if (field == 1) {
+            if (quantityLength == quantityField.length) {
+                quantityField = Arrays.copyOf(quantityField, quantityLength * 2);
+            }
+            quantityField[quantityLength++] = b;
+        }
+    }
+
+    private int lookup(byte[] bytes, int start, int end) {
+        int mask = table.length - 1;
+        int slot = hash(bytes, start, end) & mask;
+        while (table[slot] != -1) {
+            int index = table[slot];
+            if (equals(bytes, start, end, names[index])) return index;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the quantity field without allocating when it has at most 15 significant digits
+     * and a small exponent, where {@code mantissa / 10^scale} is exactly what
+     * {@link Double#parseDouble} returns. Anything else falls back to {@code parseDouble}.
+     *
+     * @return the quantity, or NaN if the field is not a number
+     */
+    private double parseQuantity() {
+        byte[] bytes = quantityField;
+        int i = trimStart(bytes, quantityLength);
+        int end = trimEnd(bytes, i, quantityLength);
+        if (i == end) return Double.NaN;
+
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    if (seenPoint) scale++;
+                    continue;
+                }
+                if (digits == 18) return slowParse(end);
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (seenPoint) scale++;
+            } else if ((b == '.' || (b == ',' && quantityQuoted)) && !seenPoint) {
+                seenPoint = true;
+            } else if (b == 'e' || b == 'E') {
+                return seenDigit ? slowParse(end) : Double.NaN;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!seenDigit) return Double.NaN;
+
+        if (digits > 15 || scale >= POWERS_OF_TEN.length) return slowParse(end);
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private double slowParse(int end) {
+        int start = trimStart(quantityField, end);
+        String text = new String(quantityField, start, end - start, StandardCharsets.US_ASCII);
+        if (quantityQuoted) {
+            text = text.replace(',', '.');
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean startsWithBom(byte[] bytes, int start, int end) {
+        return end - start >= 3 && bytes[start] == (byte) 0xEF
+                && bytes[start + 1] == (byte) 0xBB && bytes[start + 2] == (byte) 0xBF;
+    }
+
+    private static int trimStart(byte[] bytes, int end) {
+        return trimStart(bytes, 0, end);
+    }
+
+    private static int trimStart(byte[] bytes, int start, int end) {
+        int i = start;
+        while (i < end && (bytes[i] == ' ' || bytes[i] == '\t')) i++;
+        return i;
+    }
+
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '\t')) end--;
+        return end;
+    }
+
+    private static boolean equals(byte[] bytes, int start, int end, byte[] other) {
+        if (end - start != other.length) return false;
+        for (int i = 0; i < other.length; i++) {
+            if (bytes[start + i] != other[i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        return hash(bytes, 0, length);
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int h = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
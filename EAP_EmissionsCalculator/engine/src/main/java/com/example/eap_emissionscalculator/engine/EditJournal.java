@@ -0,0 +1,205 @@
+package com.example.eap_emissionscalculator.engine;
+
+/**
+ * The undo/redo history of changes to a {@link RecordStore}: added records, quantity edits
+ * (zeroing included) and resets. Entries are primitive deltas in a ring buffer of fixed
+ * capacity, so the oldest entries are forgotten once it is full, and stepping back or forward
+ * costs O(1) per entry whatever the size of the history.
+ *
+ * <p>A reset is recorded with an opaque snapshot object, typically the moved-out records from
+ * {@link RecordStore#removeAll()}, rather than with a copy of the records. Snapshots that can no
+ * longer be reached by undo or redo are handed to the {@link Releaser}.
+ *
+ * <p>{@link #undo()} and {@link #redo()} return the entry to revert or reapply, which stays valid
+ * until the next change to the journal. Instances are not thread-safe.
+ */
+public final class EditJournal {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final byte ADD = 1;
+    public static final byte EDIT = 2;
+    public static final byte RESET = 3;
+
+    public interface Releaser {
+        void release(Object snapshot);
+    }
+
+    private final int capacity;
+    private final Releaser releaser;
+    private final byte[] kind;
+    private final int[] recordId;
+    private final short[] source;
+    private final short[] factorSet;
+    private final int[] site;
+    private final long[] createdAt;
+    private final double[] oldQuantity;
+    private final double[] newQuantity;
+    private final Object[] snapshot;
+
+    // Entries are numbered from the oldest one at head; the first applied of them are undoable
+    // and the rest up to size can be redone.
+    private int head;
+    private int applied;
+    private int size;
+
+    public EditJournal(Releaser releaser) {
+        this(DEFAULT_CAPACITY, releaser);
+    }
+
+    public EditJournal(int capacity, Releaser releaser) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.releaser = releaser;
+        kind = new byte[capacity];
+        recordId = new int[capacity];
+        source = new short[capacity];
+        factorSet = new short[capacity];
+        site = new int[capacity];
+        createdAt = new long[capacity];
+        oldQuantity = new double[capacity];
+        newQuantity = new double[capacity];
+        snapshot = new Object[capacity];
+    }
+
+    public void recordAdd(int id, int sourceIndex, int set, int siteId, long time, double quantity) {
+        int entry = push(ADD);
+        recordId[entry] = id;
+        source[entry] = (short) sourceIndex;
+        factorSet[entry] = (short) set;
+        site[entry] = siteId;
+        createdAt[entry] = time;
+        newQuantity[entry] = quantity;
+    }
+
+    public void recordEdit(int id, double previousQuantity, double quantity) {
+        int entry = push(EDIT);
+        recordId[entry] = id;
+        oldQuantity[entry] = previousQuantity;
+        newQuantity[entry] = quantity;
+    }
+
+    public void recordReset(Object resetSnapshot) {
+        int entry = push(RESET);
+        snapshot[entry] = resetSnapshot;
+    }
+
+    public boolean canUndo() {
+        return applied > 0;
+    }
+
+    public boolean canRedo() {
+        return applied < size;
+    }
+
+    /**
+     * Steps back over the latest applied entry.
+     *
+     * @return the entry the caller must revert, or -1 if there is nothing to undo
+     */
+    public int undo() {
+        if (applied == 0) return -1;
+        applied--;
+        return index(applied);
+    }
+
+    /**
+     * Steps forward over the entry undone last.
+     *
+     * @return the entry the caller must apply again, or -1 if there is nothing to redo
+     */
+    public int redo() {
+        if (applied == size) return -1;
+        return index(applied++);
+    }
+
+    /**
+     * Forgets every entry, e.g. after a change that is not journaled.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            release(index(i));
+        }
+        head = 0;
+        applied = 0;
+        size = 0;
+    }
+
+    public int undoCount() {
+        return applied;
+    }
+
+    public int redoCount() {
+        return size - applied;
+    }
+
+    public byte kind(int entry) {
+        return kind[entry];
+    }
+
+    public int recordId(int entry) {
+        return recordId[entry];
+    }
+
+    public int sourceIndex(int entry) {
+        return source[entry];
+    }
+
+    public int factorSet(int entry) {
+        return factorSet[entry];
+    }
+
+    public int site(int entry) {
+        return site[entry];
+    }
+
+    public long createdAt(int entry) {
+        return createdAt[entry];
+    }
+
+    public double oldQuantity(int entry) {
+        return oldQuantity[entry];
+    }
+
+    public double newQuantity(int entry) {
+        return newQuantity[entry];
+    }
+
+    public Object snapshot(int entry) {
+        return snapshot[entry];
+    }
+
+    private int push(byte entryKind) {
+        // A new change makes the undone entries unreachable
+        for (int i = applied; i < size; i++) {
+            release(index(i));
+        }
+        size = applied;
+        if (size == capacity) {
+            release(head);
+            head = (head + 1) % capacity;
+            size--;
+            applied--;
+        }
+        int entry = index(size);
+        kind[entry] = entryKind;
+        size++;
+        applied++;
+        return entry;
+    }
+
+    private void release(int entry) {
+        Object released = snapshot[entry];
+        if (released == null) return;
+        snapshot[entry] = null;
+        if (releaser != null) {
+            releaser.release(released);
+        }
+    }
+
+    private int index(int entry) {
+        return (head + entry) % capacity;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.List;
+
+/**
+ * Converts consumed quantities into energy and CO₂ emissions using a fixed factor table.
+ * Factors are copied into primitive arrays on construction, so batch calculation touches
+ * only primitive data and allocates nothing per row.
+ *
+ * <p>An exact engine calculates in {@link FixedPoint} instead: every result is rounded to
+ * hundredths and batch totals are the exact sums of those.
+ */
+public final class EmissionsEngine {
+
+    private final List<EnergySource> sources;
+    private final double[] energyFactors;
+    private final double[] emissionFactors;
+    private final boolean exact;
+    private final long[] exactEnergyFactors;
+    private final long[] exactEmissionFactors;
+
+    public EmissionsEngine(List<EnergySource> sources) {
+        this(sources, false);
+    }
+
+    public EmissionsEngine(List<EnergySource> sources, boolean exact) {
+        this.sources = sources;
+        this.exact = exact;
+        int count = sources.size();
+        energyFactors = new double[count];
+        emissionFactors = new double[count];
+        exactEnergyFactors = new long[count];
+        exactEmissionFactors = new long[count];
+        for (int i = 0; i < count; i++) {
+            EnergySource source = sources.get(i);
+            energyFactors[i] = source.energyFactor;
+            emissionFactors[i] = source.emissionFactor;
+            exactEnergyFactors[i] = FixedPoint.factor(source.energyFactor);
+            exactEmissionFactors[i] = FixedPoint.factor(source.emissionFactor);
+        }
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public List<EnergySource> sources() {
+        return sources;
+    }
+
+    public int sourceCount() {
+        return energyFactors.length;
+    }
+
+    public EnergySource source(int index) {
+        return sources.get(index);
+    }
+
+    public double energy(int source, double quantity) {
+        if (exact) {
+            return FixedPoint.toDouble(FixedPoint.multiply(FixedPoint.quantity(quantity),
+                    exactEnergyFactors[source]));
+        }
+        return quantity * energyFactors[source];
+    }
+
+    public double emissions(int source, double quantity) {
+        if (exact) {
+            return FixedPoint.toDouble(FixedPoint.multiply(FixedPoint.quantity(quantity),
+                    exactEmissionFactors[source]));
+        }
+        return quantity * emissionFactors[source];
+    }
+
+    /**
+     * Fills in energy and emissions for every row of the batch and updates its totals.
+     *
+     * @throws IllegalArgumentException if a row refers to an unknown source
+     * @throws ArithmeticException if an exact engine overflows
+     */
+    public void calculate(RecordBatch batch) {
+        if (exact) {
+            calculateExact(batch);
+            return;
+        }
+        int[] sourceIndex = batch.sourceIndexArray();
+        double[] quantity = batch.quantityArray();
+        double[] energy = batch.energyArray();
+        double[] emissions = batch.emissionsArray();
+        int count = batch.size();
+        int sourceCount = energyFactors.length;
+
+        double totalEnergy = 0;
+        double totalEmissions = 0;
+        for (int i = 0; i < count; i++) {
+            int source = sourceIndex[i];
+            if (source < 0 || source >= sourceCount) {
+                throw new IllegalArgumentException("Unknown source index " + source + " at row " + i);
+            }
+            double rowEnergy = quantity[i] * energyFactors[source];
+            double rowEmissions = quantity[i] * emissionFactors[source];
+            energy[i] = rowEnergy;
+            emissions[i] = rowEmissions;
+            totalEnergy += rowEnergy;
+            totalEmissions += rowEmissions;
+        }
+        batch.totalEnergy = totalEnergy;
+        batch.totalEmissions = totalEmissions;
+    }
+
+    private void calculateExact(RecordBatch batch) {
+        int[] sourceIndex = batch.sourceIndexArray();
+        double[] quantity = batch.quantityArray();
+        double[] energy = batch.energyArray();
+        double[] emissions = batch.emissionsArray();
+        int count = batch.size();
+        int sourceCount = exactEnergyFactors.length;
+
+        long totalEnergy = 0;
+        long totalEmissions = 0;
+        for (int i = 0; i < count; i++) {
+            int source = sourceIndex[i];
+            if (source < 0 || source >= sourceCount) {
+                throw new IllegalArgumentException("Unknown source index " + source + " at row " + i);
+            }
+            long rowQuantity = FixedPoint.quantity(quantity[i]);
+            long rowEnergy = FixedPoint.multiply(rowQuantity, exactEnergyFactors[source]);
+            long rowEmissions = FixedPoint.multiply(rowQuantity, exactEmissionFactors[source]);
+            energy[i] = FixedPoint.toDouble(rowEnergy);
+            emissions[i] = FixedPoint.toDouble(rowEmissions);
+            totalEnergy = Math.addExact(totalEnergy, rowEnergy);
+            totalEmissions = Math.addExact(totalEmissions, rowEmissions);
+        }
+        batch.totalEnergy = FixedPoint.toDouble(totalEnergy);
+        batch.totalEmissions = FixedPoint.toDouble(totalEmissions);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.eap_emissionscalculator.engine;
+
+/**
+ * An energy source together with the factors used to convert a consumed quantity
+ * into energy (kWh) and CO₂ emissions (kg).
+ */
+public final class EnergySource {
+    public final String id;
+    public final String name;
+    public final String unit;
+    public final double energyFactor;
+    public final double emissionFactor;
+
+    public EnergySource(String name, String unit, double energyFactor, double emissionFactor) {
+        this(name, name, unit, energyFactor, emissionFactor);
+    }
+
+    public EnergySource(String id, String name, String unit, double energyFactor, double emissionFactor) {
+        this.id = id;
+        this.name = name;
+        this.unit = unit;
+        this.energyFactor = energyFactor;
+        this.emissionFactor = emissionFactor;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.List;
+
+/**
+ * The factor table used by the calculator: the default factor set of the bundled
+ * {@link FactorCatalogue}.
+ */
+public final class EnergySources {
+
+    private EnergySources() {
+    }
+
+    public static List<EnergySource> defaults() {
+        FactorCatalogue catalogue = FactorCatalogue.bundled();
+        return catalogue.engine(catalogue.defaultFactorSet()).sources();
+    }
+}
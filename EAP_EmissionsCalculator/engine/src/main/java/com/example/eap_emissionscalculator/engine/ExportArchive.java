@@ -0,0 +1,334 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A directory of past exports with an index, so that they can be listed without opening them.
+ * CSV exports are gzip-compressed as they are written; XLSX exports are zip files already and
+ * are stored as they are. {@link #retain} deletes the oldest exports once they exceed an age or
+ * a total size, but only those the archive wrote itself. Instances are not thread-safe.
+ *
+ * <p>The index is a UTF-8 text file with a format line followed by one tab-separated line per
+ * export: creation time, row count, total energy, total emissions, file size and file name. It
+ * is rewritten whole after every change. Files found in the directory without an index line,
+ * such as exports from before the archive existed, are listed with unknown row count and totals
+ * and are never deleted by retention.
+ */
+public final class ExportArchive {
+
+    public static final String INDEX_FILE = "index.txt";
+    public static final String CSV_SUFFIX = ".csv.gz";
+    public static final String XLSX_SUFFIX = ".xlsx";
+
+    private static final String FORMAT = "1";
+    private static final String LEGACY_CSV_SUFFIX = ".csv";
+
+    public static final class Entry {
+        public final String fileName;
+        public final long createdAt;
+        /** -1 if unknown */
+        public final int rows;
+        /** NaN if unknown */
+        public final double totalEnergy;
+        /** NaN if unknown */
+        public final double totalEmissions;
+        public final long bytes;
+
+        Entry(String fileName, long createdAt, int rows, double totalEnergy, double totalEmissions,
+              long bytes) {
+            this.fileName = fileName;
+            this.createdAt = createdAt;
+            this.rows = rows;
+            this.totalEnergy = totalEnergy;
+            this.totalEmissions = totalEmissions;
+            this.bytes = bytes;
+        }
+
+        public boolean isCsv() {
+            return fileName.endsWith(CSV_SUFFIX) || fileName.endsWith(LEGACY_CSV_SUFFIX);
+        }
+
+        /**
+         * Whether the archive wrote this export, as opposed to finding it in the directory.
+         */
+        public boolean isWrittenByArchive() {
+            return rows >= 0 && (fileName.endsWith(CSV_SUFFIX) || fileName.endsWith(XLSX_SUFFIX));
+        }
+    }
+
+    private final File directory;
+    // Oldest first
+    private final List<Entry> entries = new ArrayList<>();
+
+    private ExportArchive(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the index in {@code directory}, creating the directory if needed, and reconciles it
+     * with the files actually there.
+     */
+    public static ExportArchive open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        ExportArchive archive = new ExportArchive(directory);
+        boolean changed = archive.readIndex();
+
+        Set<String> indexed = new HashSet<>();
+        for (Entry entry : archive.entries) {
+            indexed.add(entry.fileName);
+        }
+        File[] files = directory.listFiles((dir, name) -> isArchived(name));
+        List<Entry> found = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (!indexed.contains(file.getName())) {
+                    found.add(new Entry(file.getName(), file.lastModified(), -1, Double.NaN,
+                            Double.NaN, file.length()));
+                }
+            }
+        }
+        if (!found.isEmpty()) {
+            archive.entries.addAll(found);
+            archive.entries.sort((a, b) -> Long.compare(a.createdAt, b.createdAt));
+            changed = true;
+        }
+        changed |= archive.entries.removeIf(entry -> !archive.file(entry).exists());
+        if (changed) {
+            archive.writeIndex();
+        }
+        return archive;
+    }
+
+    /**
+     * Returns the exports, oldest first.
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public File file(Entry entry) {
+        return new File(directory, entry.fileName);
+    }
+
+    /**
+     * Opens an export for reading, decompressing it if it is a compressed CSV.
+     */
+    public InputStream open(Entry entry) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file(entry)));
+        if (!entry.fileName.endsWith(CSV_SUFFIX)) return in;
+        try {
+            return new GzipCompressorInputStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a compressed CSV export named {@code baseName}{@link #CSV_SUFFIX} and adds it to the
+     * index.
+     *
+     * @return the new entry, or null if the export was cancelled
+     */
+    public Entry addCsv(String baseName, long createdAt, CsvExporter exporter,
+                        List<EnergySource> sources, RecordSource records,
+                        double totalEnergy, double totalEmissions,
+                        CsvExporter.ProgressListener listener, BooleanSupplier cancelled)
+            throws IOException {
+        File file = new File(directory, baseName + CSV_SUFFIX);
+        boolean completed = false;
+        try (GzipCompressorOutputStream out = new GzipCompressorOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            completed = exporter.write(Channels.newChannel(out), sources, records,
+                    totalEnergy, totalEmissions, listener, cancelled);
+        } finally {
+            if (!completed) {
+                file.delete();
+            }
+        }
+        if (!completed) return null;
+        return add(file, createdAt, records.size(), totalEnergy, totalEmissions);
+    }
+
+    /**
+     * Writes an XLSX export named {@code baseName}{@link #XLSX_SUFFIX} and adds it to the index.
+     *
+     * @return the new entry, or null if the export was cancelled
+     */
+    public Entry addXlsx(String baseName, long createdAt, XlsxExporter exporter,
+                         List<EnergySource> sources, RecordSource records,
+                         double totalEnergy, double totalEmissions,
+                         CsvExporter.ProgressListener listener, BooleanSupplier cancelled)
+            throws IOException {
+        File file = new File(directory, baseName + XLSX_SUFFIX);
+        if (!exporter.export(file, sources, records, totalEnergy, totalEmissions, listener, cancelled)) {
+            return null;
+        }
+        return add(file, createdAt, records.size(), totalEnergy, totalEmissions);
+    }
+
+    /**
+     * Deletes an export and its index line.
+     */
+    public void delete(Entry entry) throws IOException {
+        File file = file(entry);
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Could not delete " + file);
+        }
+        entries.removeIf(existing -> existing.fileName.equals(entry.fileName));
+        writeIndex();
+    }
+
+    /**
+     * Deletes exports created before {@code now - maxAgeMillis}, then the oldest ones until the
+     * rest take at most {@code maxBytes}. Only exports the archive wrote count towards the size
+     * and are deleted; of those, the newest is always kept.
+     *
+     * @return the number of exports deleted
+     */
+    public int retain(long maxBytes, long maxAgeMillis, long now) {
+        long total = 0;
+        int newest = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.isWrittenByArchive()) {
+                total += entry.bytes;
+                newest = i;
+            }
+        }
+        int removed = 0;
+        for (int i = 0; i < newest; ) {
+            Entry entry = entries.get(i);
+            if (!entry.isWrittenByArchive()) {
+                i++;
+                continue;
+            }
+            boolean expired = now - entry.createdAt > maxAgeMillis;
+            if (!expired && total <= maxBytes) break;
+
+            File file = file(entry);
+            if (!file.delete() && file.exists()) {
+                // Left listed, and retried next time
+                i++;
+                continue;
+            }
+            entries.remove(i);
+            newest--;
+            total -= entry.bytes;
+            removed++;
+        }
+        if (removed > 0) {
+            try {
+                writeIndex();
+            } catch (IOException e) {
+                // The deleted files are dropped from the index when it is next opened
+            }
+        }
+        return removed;
+    }
+
+    public long totalBytes() {
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.bytes;
+        }
+        return total;
+    }
+
+    private Entry add(File file, long createdAt, int rows, double totalEnergy,
+                      double totalEmissions) throws IOException {
+        Entry entry = new Entry(file.getName(), createdAt, rows, totalEnergy, totalEmissions,
+                file.length());
+        entries.removeIf(existing -> existing.fileName.equals(entry.fileName));
+        entries.add(entry);
+        writeIndex();
+        return entry;
+    }
+
+    /**
+     * @return whether lines had to be skipped, so the index should be rewritten
+     */
+    private boolean readIndex() throws IOException {
+        File index = new File(directory, INDEX_FILE);
+        if (!index.exists()) return false;
+
+        boolean skipped = false;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(index), StandardCharsets.UTF_8))) {
+            if (!FORMAT.equals(reader.readLine())) return true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 6);
+                try {
+                    if (fields.length != 6 || !isArchived(fields[5])) throw new NumberFormatException();
+                    entries.add(new Entry(fields[5], Long.parseLong(fields[0]),
+                            Integer.parseInt(fields[1]), Double.parseDouble(fields[2]),
+                            Double.parseDouble(fields[3]), Long.parseLong(fields[4])));
+                } catch (NumberFormatException e) {
+                    skipped = true;
+                }
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Writes the whole index, replacing the file only once the new one is complete.
+     */
+    private void writeIndex() throws IOException {
+        File index = new File(directory, INDEX_FILE);
+        File temp = new File(index.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(FORMAT);
+            writer.write('\n');
+            for (Entry entry : entries) {
+                writer.write(Long.toString(entry.createdAt));
+                writer.write('\t');
+                writer.write(Integer.toString(entry.rows));
+                writer.write('\t');
+                writer.write(Double.toString(entry.totalEnergy));
+                writer.write('\t');
+                writer.write(Double.toString(entry.totalEmissions));
+                writer.write('\t');
+                writer.write(Long.toString(entry.bytes));
+                writer.write('\t');
+                writer.write(entry.fileName);
+                writer.write('\n');
+            }
+        }
+        if (!temp.renameTo(index)) {
+            temp.delete();
+            throw new IOException("Could not replace " + index);
+        }
+    }
+
+    private static boolean isArchived(String name) {
+        return (name.endsWith(CSV_SUFFIX) || name.endsWith(XLSX_SUFFIX)
+                || name.endsWith(LEGACY_CSV_SUFFIX)) && name.indexOf('\n') < 0;
+    }
+}
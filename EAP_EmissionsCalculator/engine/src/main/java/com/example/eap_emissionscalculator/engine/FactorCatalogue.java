@@ -0,0 +1,384 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Energy sources and emission factor sets loaded from a versioned JSON file (see the bundled
+ * {@code emission_factors.json}). Sources and factor sets are both addressed by stable string
+ * IDs and by position; entries are only ever appended to the file, so the positions stored
+ * with persisted records keep pointing at the same source and factor set in later versions.
+ * A record stays pinned to the factor set it was calculated with, and new factor sets can be
+ * shipped as a file without rebuilding the app.
+ *
+ * <p>{@link #withExactArithmetic} gives a view of the same catalogue whose engines and batch
+ * calculation work in {@link FixedPoint}.
+ */
+public final class FactorCatalogue {
+
+    public static final String BUNDLED_RESOURCE = "emission_factors.json";
+
+    private static final int FORMAT = 1;
+
+    public static final class FactorSet {
+        public final String id;
+        public final String region;
+        public final int year;
+        final double[] energyFactors;
+        final double[] emissionFactors;
+        final long[] exactEnergyFactors;
+        final long[] exactEmissionFactors;
+
+        FactorSet(String id, String region, int year, double[] energyFactors, double[] emissionFactors) {
+            this.id = id;
+            this.region = region;
+            this.year = year;
+            this.energyFactors = energyFactors;
+            this.emissionFactors = emissionFactors;
+            exactEnergyFactors = new long[energyFactors.length];
+            exactEmissionFactors = new long[emissionFactors.length];
+            for (int i = 0; i < energyFactors.length; i++) {
+                exactEnergyFactors[i] = FixedPoint.factor(energyFactors[i]);
+                exactEmissionFactors[i] = FixedPoint.factor(emissionFactors[i]);
+            }
+        }
+
+        public double energyFactor(int source) {
+            return energyFactors[source];
+        }
+
+        public double emissionFactor(int source) {
+            return emissionFactors[source];
+        }
+    }
+
+    private static final class BundledHolder {
+        static final FactorCatalogue INSTANCE = loadBundled();
+
+        private static FactorCatalogue loadBundled() {
+            try (InputStream in = FactorCatalogue.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing " + BUNDLED_RESOURCE);
+                }
+                return parse(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load " + BUNDLED_RESOURCE, e);
+            }
+        }
+    }
+
+    private final int version;
+    private final String[] sourceIds;
+    private final String[] names;
+    private final String[] units;
+    private final Map<String, Integer> sourcesById;
+    private final List<FactorSet> factorSets;
+    private final Map<String, Integer> factorSetsById;
+    private final int defaultFactorSet;
+    private final boolean exact;
+    private final EmissionsEngine[] engines;
+
+    private FactorCatalogue(int version, String[] sourceIds, String[] names, String[] units,
+                            List<FactorSet> factorSets, int defaultFactorSet, boolean exact) {
+        this.version = version;
+        this.sourceIds = sourceIds;
+        this.names = names;
+        this.units = units;
+        this.factorSets = factorSets;
+        this.defaultFactorSet = defaultFactorSet;
+        this.exact = exact;
+        sourcesById = new HashMap<>();
+        for (int i = 0; i < sourceIds.length; i++) {
+            sourcesById.put(sourceIds[i], i);
+        }
+        factorSetsById = new HashMap<>();
+        for (int i = 0; i < factorSets.size(); i++) {
+            factorSetsById.put(factorSets.get(i).id, i);
+        }
+        engines = new EmissionsEngine[factorSets.size()];
+    }
+
+    /**
+     * The catalogue bundled with the engine, parsed on first use and cached afterwards.
+     */
+    public static FactorCatalogue bundled() {
+        return BundledHolder.INSTANCE;
+    }
+
+    public static FactorCatalogue parse(InputStream in) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Object root = JsonParser.parse(reader);
+        if (!(root instanceof Map)) throw new IOException("Catalogue must be a JSON object");
+        Map<?, ?> catalogue = (Map<?, ?>) root;
+
+        int format = intValue(catalogue, "format", 0);
+        if (format != FORMAT) throw new IOException("Unsupported catalogue format " + format);
+        int version = intValue(catalogue, "version", 0);
+
+        List<?> sources = list(catalogue, "sources");
+        String[] sourceIds = new String[sources.size()];
+        String[] names = new String[sources.size()];
+        String[] units = new String[sources.size()];
+        Map<String, Integer> sourcesById = new HashMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            Map<?, ?> source = object(sources.get(i), "sources[" + i + "]");
+            sourceIds[i] = string(source, "id");
+            names[i] = string(source, "name");
+            units[i] = string(source, "unit");
+            if (sourcesById.put(sourceIds[i], i) != null) {
+                throw new IOException("Duplicate source id " + sourceIds[i]);
+            }
+        }
+
+        List<?> sets = list(catalogue, "factorSets");
+        List<FactorSet> factorSets = new ArrayList<>(sets.size());
+        for (int i = 0; i < sets.size(); i++) {
+            Map<?, ?> set = object(sets.get(i), "factorSets[" + i + "]");
+            String id = string(set, "id");
+            Object region = set.get("region");
+            Map<?, ?> factors = object(set.get("factors"), id + ".factors");
+            double[] energyFactors = new double[sourceIds.length];
+            double[] emissionFactors = new double[sourceIds.length];
+            for (int s = 0; s < sourceIds.length; s++) {
+                Object pair = factors.get(sourceIds[s]);
+                if (!(pair instanceof List) || ((List<?>) pair).size() != 2) {
+                    throw new IOException("Factor set " + id + " has no factors for " + sourceIds[s]);
+                }
+                energyFactors[s] = number(((List<?>) pair).get(0), id);
+                emissionFactors[s] = number(((List<?>) pair).get(1), id);
+            }
+            try {
+                factorSets.add(new FactorSet(id, region instanceof String ? (String) region : null,
+                        intValue(set, "year", 0), energyFactors, emissionFactors));
+            } catch (ArithmeticException e) {
+                // Exact factors are converted up front, so a factor they cannot hold is rejected here
+                throw new IOException("Factor set " + id + " has a factor out of range", e);
+            }
+        }
+        if (factorSets.isEmpty()) throw new IOException("Catalogue has no factor sets");
+
+        int defaultFactorSet = factorSets.size() - 1;
+        Object defaultId = catalogue.get("default");
+        if (defaultId != null) {
+            defaultFactorSet = -1;
+            for (int i = 0; i < factorSets.size(); i++) {
+                if (factorSets.get(i).id.equals(defaultId)) defaultFactorSet = i;
+            }
+            if (defaultFactorSet < 0) throw new IOException("Unknown default factor set " + defaultId);
+        }
+
+        return new FactorCatalogue(version, sourceIds, names, units,
+                Collections.unmodifiableList(factorSets), defaultFactorSet, false);
+    }
+
+    /**
+     * Returns this catalogue calculating in {@link FixedPoint} when {@code exact} is true, or in
+     * doubles otherwise.
+     */
+    public FactorCatalogue withExactArithmetic(boolean exact) {
+        if (exact == this.exact) return this;
+        return new FactorCatalogue(version, sourceIds, names, units, factorSets, defaultFactorSet,
+                exact);
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns whether this catalogue can stand in for {@code base}. Persisted records refer to
+     * sources and factor sets by position, so every source of {@code base} must come first here,
+     * in the same order and with the same id and unit, and likewise every factor set by id.
+     * Entries may only be appended.
+     */
+    public boolean extendsCatalogue(FactorCatalogue base) {
+        if (sourceIds.length < base.sourceIds.length || factorSets.size() < base.factorSets.size()) {
+            return false;
+        }
+        for (int i = 0; i < base.sourceIds.length; i++) {
+            if (!sourceIds[i].equals(base.sourceIds[i]) || !units[i].equals(base.units[i])) return false;
+        }
+        for (int i = 0; i < base.factorSets.size(); i++) {
+            if (!factorSets.get(i).id.equals(base.factorSets.get(i).id)) return false;
+        }
+        return true;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int sourceCount() {
+        return sourceIds.length;
+    }
+
+    public String sourceId(int source) {
+        return sourceIds[source];
+    }
+
+    /**
+     * @return the position of the source with the given stable ID, or -1 if there is none
+     */
+    public int sourceIndex(String id) {
+        Integer index = sourcesById.get(id);
+        return index != null ? index : -1;
+    }
+
+    public int factorSetCount() {
+        return factorSets.size();
+    }
+
+    public FactorSet factorSet(int index) {
+        return factorSets.get(index);
+    }
+
+    /**
+     * @return the position of the factor set with the given stable ID, or -1 if there is none
+     */
+    public int factorSetIndex(String id) {
+        Integer index = factorSetsById.get(id);
+        return index != null ? index : -1;
+    }
+
+    public int defaultFactorSet() {
+        return defaultFactorSet;
+    }
+
+    /**
+     * The engine for one factor set, built on first use and cached.
+     */
+    public synchronized EmissionsEngine engine(int factorSet) {
+        EmissionsEngine engine = engines[factorSet];
+        if (engine == null) {
+            FactorSet set = factorSets.get(factorSet);
+            List<EnergySource> sources = new ArrayList<>(sourceIds.length);
+            for (int i = 0; i < sourceIds.length; i++) {
+                sources.add(new EnergySource(sourceIds[i], names[i], units[i],
+                        set.energyFactors[i], set.emissionFactors[i]));
+            }
+            engine = new EmissionsEngine(Collections.unmodifiableList(sources), exact);
+            engines[factorSet] = engine;
+        }
+        return engine;
+    }
+
+    /**
+     * Calculates a batch whose rows may be pinned to different factor sets.
+     */
+    public void calculate(RecordBatch batch) {
+        if (exact) {
+            calculateExact(batch, false);
+            return;
+        }
+        int[] sourceIndex = batch.sourceIndexArray();
+        int[] factorSet = batch.factorSetArray();
+        double[] quantity = batch.quantityArray();
+        double[] energy = batch.energyArray();
+        double[] emissions = batch.emissionsArray();
+
+        double totalEnergy = 0;
+        double totalEmissions = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            FactorSet set = factorSets.get(factorSet[i]);
+            energy[i] = quantity[i] * set.energyFactors[sourceIndex[i]];
+            emissions[i] = quantity[i] * set.emissionFactors[sourceIndex[i]];
+            totalEnergy += energy[i];
+            totalEmissions += emissions[i];
+        }
+        batch.totalEnergy = totalEnergy;
+        batch.totalEmissions = totalEmissions;
+    }
+
+    /**
+     * Like {@link #calculate}, but rows that overflow exact arithmetic are kept with zero energy
+     * and emissions instead of failing the batch. For rows that are already persisted, which
+     * must stay at their positions.
+     *
+     * @return the number of rows that overflowed
+     */
+    public int calculateKeepingOverflow(RecordBatch batch) {
+        if (!exact) {
+            calculate(batch);
+            return 0;
+        }
+        return calculateExact(batch, true);
+    }
+
+    private int calculateExact(RecordBatch batch, boolean keepOverflow) {
+        int[] sourceIndex = batch.sourceIndexArray();
+        int[] factorSet = batch.factorSetArray();
+        double[] quantity = batch.quantityArray();
+        double[] energy = batch.energyArray();
+        double[] emissions = batch.emissionsArray();
+
+        long totalEnergy = 0;
+        long totalEmissions = 0;
+        int overflowed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            FactorSet set = factorSets.get(factorSet[i]);
+            long rowEnergy;
+            long rowEmissions;
+            long newTotalEnergy;
+            long newTotalEmissions;
+            try {
+                long rowQuantity = FixedPoint.quantity(quantity[i]);
+                rowEnergy = FixedPoint.multiply(rowQuantity, set.exactEnergyFactors[sourceIndex[i]]);
+                rowEmissions = FixedPoint.multiply(rowQuantity, set.exactEmissionFactors[sourceIndex[i]]);
+                newTotalEnergy = Math.addExact(totalEnergy, rowEnergy);
+                newTotalEmissions = Math.addExact(totalEmissions, rowEmissions);
+            } catch (ArithmeticException e) {
+                if (!keepOverflow) throw e;
+                rowEnergy = 0;
+                rowEmissions = 0;
+                newTotalEnergy = totalEnergy;
+                newTotalEmissions = totalEmissions;
+                overflowed++;
+            }
+            energy[i] = FixedPoint.toDouble(rowEnergy);
+            emissions[i] = FixedPoint.toDouble(rowEmissions);
+            totalEnergy = newTotalEnergy;
+            totalEmissions = newTotalEmissions;
+        }
+        batch.totalEnergy = FixedPoint.toDouble(totalEnergy);
+        batch.totalEmissions = FixedPoint.toDouble(totalEmissions);
+        return overflowed;
+    }
+
+    private static Map<?, ?> object(Object value, String name) throws IOException {
+        if (!(value instanceof Map)) throw new IOException(name + " must be an object");
+        return (Map<?, ?>) value;
+    }
+
+    private static List<?> list(Map<?, ?> object, String key) throws IOException {
+        Object value = object.get(key);
+        if (!(value instanceof List)) throw new IOException(key + " must be an array");
+        return (List<?>) value;
+    }
+
+    private static String string(Map<?, ?> object, String key) throws IOException {
+        Object value = object.get(key);
+        if (!(value instanceof String)) throw new IOException(key + " must be a string");
+        return (String) value;
+    }
+
+    private static double number(Object value, String name) throws IOException {
+        if (!(value instanceof Double)) throw new IOException("Factors of " + name + " must be numbers");
+        return (Double) value;
+    }
+
+    private static int intValue(Map<?, ?> object, String key, int fallback) throws IOException {
+        Object value = object.get(key);
+        if (value == null) return fallback;
+        if (!(value instanceof Double)) throw new IOException(key + " must be a number");
+        return ((Double) value).intValue();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.eap_emissionscalculator.engine;
+
+/**
+ * Scaled {@code long} arithmetic for the exact calculation mode. Quantities are held in
+ * thousandths and factors in ten-thousandths; their product is rounded half away from zero to
+ * hundredths once per row, and totals are plain sums of those hundredths, so a total always
+ * equals the sum of the rows as they are displayed and exported.
+ *
+ * <p>Every operation checks for overflow and throws {@link ArithmeticException} rather than
+ * wrapping. Nothing is allocated, unlike with {@link java.math.BigDecimal}.
+ */
+public final class FixedPoint {
+
+    public static final long QUANTITY_SCALE = 1_000;
+    public static final long FACTOR_SCALE = 10_000;
+    public static final long RESULT_SCALE = 100;
+
+    private static final long PRODUCT_DIVISOR = QUANTITY_SCALE * FACTOR_SCALE / RESULT_SCALE;
+
+    // Scaled values are kept well inside the long range, where doubles still hold whole numbers
+    private static final double LIMIT = 0x1p62;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Returns {@code value} times {@code scale}, rounded half away from zero as its decimal text
+     * would be: 2.0005 is stored just below that, but still rounds up to 2001 thousandths.
+     *
+     * @throws ArithmeticException if the value is not finite or does not fit
+     */
+    public static long scale(double value, long scale) {
+        double scaled = value * scale;
+        if (!(Math.abs(scaled) < LIMIT)) {
+            throw new ArithmeticException("Cannot scale " + value + " by " + scale);
+        }
+        // A few ulps cover the error of the binary value and of the multiplication
+        double magnitude = Math.abs(scaled);
+        long rounded = (long) (magnitude + 0.5 + magnitude * 0x1p-50);
+        return scaled < 0 ? -rounded : rounded;
+    }
+
+    public static long quantity(double value) {
+        return scale(value, QUANTITY_SCALE);
+    }
+
+    public static long factor(double value) {
+        return scale(value, FACTOR_SCALE);
+    }
+
+    /**
+     * Returns a value in hundredths, such as a row result stored as a double, as a whole number
+     * of hundredths; exact for every value produced by {@link #toDouble}.
+     */
+    public static long hundredths(double value) {
+        return scale(value, RESULT_SCALE);
+    }
+
+    /**
+     * Returns quantity times factor in hundredths, rounded half away from zero.
+     */
+    public static long multiply(long quantity, long factor) {
+        long product = Math.multiplyExact(quantity, factor);
+        long result = product / PRODUCT_DIVISOR;
+        long remainder = product - result * PRODUCT_DIVISOR;
+        if (Math.abs(remainder) * 2 >= PRODUCT_DIVISOR) {
+            result += Long.signum(product);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the double closest to {@code hundredths} / 100, which formats and prints as the
+     * exact decimal value.
+     */
+    public static double toDouble(long hundredths) {
+        return hundredths / (double) RESULT_SCALE;
+    }
+
+    /**
+     * Writes {@code hundredths} as a plain decimal with two fraction digits, such as "-12.05".
+     */
+    public static StringBuilder append(long hundredths, StringBuilder out) {
+        long integer = hundredths / RESULT_SCALE;
+        int cents = (int) Math.abs(hundredths % RESULT_SCALE);
+        if (hundredths < 0 && integer == 0) {
+            out.append('-');
+        }
+        out.append(integer).append('.');
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
+}
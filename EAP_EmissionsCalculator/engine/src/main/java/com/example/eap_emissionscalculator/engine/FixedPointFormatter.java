@@ -0,0 +1,117 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats values with two decimals exactly like {@code String.format(locale, "%.2f", value)},
+ * writing into caller-owned buffers instead of building a {@link java.util.Formatter} per call.
+ *
+ * <p>Non-negative values below {@link #FAST_PATH_LIMIT} are rounded from the scaled binary value.
+ * Values whose third decimal sits too close to a half for that to be reliable, as well as
+ * negatives, NaN and infinities, go through {@code String.format} so the output never differs.
+ * Instances hold no mutable state and can be shared between threads.
+ */
+public final class FixedPointFormatter {
+
+    /** Enough room for every value the fast path produces. */
+    public static final int BUFFER_SIZE = 16;
+
+    static final double FAST_PATH_LIMIT = 1e9;
+
+    // Distance from a rounding tie, in hundredths, below which the scaled value is not trusted
+    private static final double TIE_MARGIN = 1e-4;
+
+    private final Locale locale;
+    private final char zeroDigit;
+    private final char decimalSeparator;
+
+    public FixedPointFormatter(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.locale = locale;
+        this.zeroDigit = symbols.getZeroDigit();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+    }
+
+    /**
+     * Writes {@code value} to the start of {@code dest}.
+     *
+     * @return the number of chars written, or -1 when {@code dest} is too small
+     */
+    public int format(double value, char[] dest) {
+        long hundredths = hundredths(value);
+        if (hundredths < 0) {
+            String text = String.format(locale, "%.2f", value);
+            if (text.length() > dest.length) return -1;
+            text.getChars(0, text.length(), dest, 0);
+            return text.length();
+        }
+
+        long integer = hundredths / 100;
+        int cents = (int) (hundredths % 100);
+        int length = digitCount(integer) + 3;
+        if (length > dest.length) return -1;
+
+        int pos = length;
+        dest[--pos] = (char) (zeroDigit + cents % 10);
+        dest[--pos] = (char) (zeroDigit + cents / 10);
+        dest[--pos] = decimalSeparator;
+        do {
+            dest[--pos] = (char) (zeroDigit + integer % 10);
+            integer /= 10;
+        } while (integer != 0);
+        return length;
+    }
+
+    /**
+     * Appends {@code value} to {@code out}.
+     */
+    public StringBuilder format(double value, StringBuilder out) {
+        long hundredths = hundredths(value);
+        if (hundredths < 0) {
+            return out.append(String.format(locale, "%.2f", value));
+        }
+
+        long integer = hundredths / 100;
+        int cents = (int) (hundredths % 100);
+        int start = out.length();
+        int pos = start + digitCount(integer) + 3;
+        out.setLength(pos);
+        out.setCharAt(--pos, (char) (zeroDigit + cents % 10));
+        out.setCharAt(--pos, (char) (zeroDigit + cents / 10));
+        out.setCharAt(--pos, decimalSeparator);
+        do {
+            out.setCharAt(--pos, (char) (zeroDigit + integer % 10));
+            integer /= 10;
+        } while (integer != 0);
+        return out;
+    }
+
+    public String format(double value) {
+        return format(value, new StringBuilder(BUFFER_SIZE)).toString();
+    }
+
+    /**
+     * Returns {@code value} rounded half-up to hundredths, or -1 when it has to be formatted by
+     * {@code String.format}.
+     */
+    private static long hundredths(double value) {
+        // The sign bit check also routes -0.0 to the slow path, which prints it as "-0.00"
+        if (Double.doubleToRawLongBits(value) < 0 || !(value < FAST_PATH_LIMIT)) return -1;
+
+        double scaled = value * 100;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) return -1;
+        return (long) floor + (fraction > 0.5 ? 1 : 0);
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact binary file holding the calculation history as fixed-size slots, one per record.
+ * New records are appended at the end and quantity edits patch a single field in place, so no
+ * change ever rewrites the file. Fixed-size slots also let the history be reloaded page by page
+ * with positional reads instead of parsing the whole file up front.
+ *
+ * <p>Layout: a 16 byte header (magic, version, slot size, reserved) followed by 24 byte slots of
+ * {@code short source, short factorSet, int site, long createdAt, double quantity},
+ * big-endian. Source and factor set are positions in the {@link FactorCatalogue}, site is a
+ * {@link SiteTags} id; slots written before sites existed hold {@link SiteTags#NONE} there.
+ * Instances are not thread-safe.
+ */
+public final class HistoryLog implements Closeable {
+
+    private static final int MAGIC = 0x454D4831; // "EMH1"
+    private static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 24;
+    private static final int FACTOR_SET_OFFSET = 2;
+    private static final int QUANTITY_OFFSET = 16;
+    private static final int REWRITE_PAGE_ROWS = 4096;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+    private ByteBuffer page;
+    private int size;
+
+    private HistoryLog(RandomAccessFile file) {
+        this.file = file;
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * Opens the log at {@code path}, creating it if it does not exist yet.
+     *
+     * @throws IOException if the file exists but is not a history log of a supported version
+     */
+    public static HistoryLog open(File path) throws IOException {
+        HistoryLog log = new HistoryLog(new RandomAccessFile(path, "rw"));
+        try {
+            log.init();
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    private void init() throws IOException {
+        long length = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (length == 0) {
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) SLOT_SIZE).putLong(0).flip();
+            writeFully(header, 0);
+            size = 0;
+            return;
+        }
+
+        readFully(header, 0);
+        header.flip();
+        if (length < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a history log");
+        }
+        short version = header.getShort();
+        short slotSize = header.getShort();
+        if (version != VERSION || slotSize != SLOT_SIZE) {
+            throw new IOException("Unsupported history log version " + version);
+        }
+
+        // A torn final slot from an interrupted append is dropped.
+        size = (int) ((length - HEADER_SIZE) / SLOT_SIZE);
+        long expected = HEADER_SIZE + (long) size * SLOT_SIZE;
+        if (expected != length) {
+            channel.truncate(expected);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void append(int source, int factorSet, int site, long createdAt, double quantity)
+            throws IOException {
+        slot.clear();
+        slot.putShort((short) source).putShort((short) factorSet).putInt(site)
+                .putLong(createdAt).putDouble(quantity).flip();
+        writeFully(slot, offset(size));
+        size++;
+    }
+
+    /**
+     * Appends every row of {@code records} with a single write, all stamped with {@code createdAt}.
+     */
+    public void appendAll(RecordBatch records, long createdAt) throws IOException {
+        int count = records.size();
+        if (count == 0) return;
+
+        int bytes = count * SLOT_SIZE;
+        if (page == null || page.capacity() < bytes) {
+            page = ByteBuffer.allocate(bytes);
+        }
+        page.clear();
+        for (int i = 0; i < count; i++) {
+            page.putShort((short) records.sourceIndex(i)).putShort((short) records.factorSet(i))
+                    .putInt(records.site(i))
+                    .putLong(createdAt).putDouble(records.quantity(i));
+        }
+        page.flip();
+        writeFully(page, offset(size));
+        size += count;
+    }
+
+    public void updateQuantity(int row, double quantity) throws IOException {
+        checkRow(row);
+        slot.clear();
+        slot.putDouble(quantity).flip();
+        writeFully(slot, offset(row) + QUANTITY_OFFSET);
+    }
+
+    /**
+     * Pins every record to {@code factorSet}, rewriting the slots page by page.
+     */
+    public void setFactorSet(int factorSet) throws IOException {
+        for (int from = 0; from < size; from += REWRITE_PAGE_ROWS) {
+            int count = Math.min(REWRITE_PAGE_ROWS, size - from);
+            int bytes = count * SLOT_SIZE;
+            if (page == null || page.capacity() < bytes) {
+                page = ByteBuffer.allocate(bytes);
+            }
+            page.clear().limit(bytes);
+            readFully(page, offset(from));
+            for (int i = 0; i < count; i++) {
+                page.putShort(i * SLOT_SIZE + FACTOR_SET_OFFSET, (short) factorSet);
+            }
+            page.flip();
+            writeFully(page, offset(from));
+        }
+    }
+
+    public void clear() throws IOException {
+        truncate(0);
+    }
+
+    /**
+     * Drops the slots from row {@code newSize} on.
+     */
+    public void truncate(int newSize) throws IOException {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Size " + newSize + " of " + size);
+        }
+        channel.truncate(offset(newSize));
+        size = newSize;
+    }
+
+    /**
+     * Reads up to {@code maxRows} records starting at {@code fromRow} and appends them to
+     * {@code into} with one positional read. Results are left for the engine to calculate.
+     *
+     * @return the number of rows read
+     */
+    public int read(int fromRow, int maxRows, RecordBatch into) throws IOException {
+        int count = Math.max(0, Math.min(maxRows, size - fromRow));
+        if (count == 0) return 0;
+
+        int bytes = count * SLOT_SIZE;
+        if (page == null || page.capacity() < bytes) {
+            page = ByteBuffer.allocate(bytes);
+        }
+        page.clear().limit(bytes);
+        readFully(page, offset(fromRow));
+        page.flip();
+
+        into.ensureCapacity(into.size() + count);
+        for (int i = 0; i < count; i++) {
+            int source = page.getShort();
+            int factorSet = page.getShort();
+            int site = page.getInt();
+            long createdAt = page.getLong();
+            into.add(source, factorSet, site, createdAt, page.getDouble());
+        }
+        return count;
+    }
+
+    public void flush() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private static long offset(int row) {
+        return HEADER_SIZE + (long) row * SLOT_SIZE;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of history log");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs all file I/O one task at a time on a single background thread, in submission order.
+ *
+ * <p>Writes that must not be lost, such as appends to the history log, go through
+ * {@link #execute} and are always accepted. Jobs that are requested by the user, such as
+ * exports, go through {@link #submit} with a key. They are coalesced and bounded:
+ * <ul>
+ *     <li>While a job with the same key is queued or running, a new request for that key joins
+ *     it instead of running again.</li>
+ *     <li>Once {@code capacity} tasks are waiting, new jobs are refused rather than queued
+ *     behind a backlog.</li>
+ *     <li>Jobs can be cancelled, individually or all at once.</li>
+ * </ul>
+ * Progress and completion are delivered on the callback executor, typically the main thread.
+ * Progress updates are coalesced, so at most one is waiting there at any time.
+ *
+ * <p>A task that throws never stops the thread: a failed job reports the exception to its
+ * callback, and a failed write is passed to the failure handler before the next task runs.
+ */
+public final class IoScheduler {
+
+    public interface Job {
+        /**
+         * @return {@code false} if the job stopped early because {@link Handle#isCancelled()}
+         * returned true
+         */
+        boolean run(Handle handle) throws IOException;
+    }
+
+    public interface Callback {
+        default void onProgress(int done, int total) {
+        }
+
+        /**
+         * @param error the I/O or runtime failure, or null if the job completed or was cancelled
+         */
+        void onFinished(boolean completed, Exception error);
+    }
+
+    public final class Handle {
+        private final String key;
+        private final Job job;
+        private final Callback callback;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        // done and total packed into one value; -1 when no update is waiting to be delivered
+        private final AtomicLong progress = new AtomicLong(-1);
+
+        private Handle(String key, Job job, Callback callback) {
+            this.key = key;
+            this.job = job;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        /**
+         * Reports progress from the job; only the latest update reaches the callback.
+         */
+        public void progress(int done, int total) {
+            if (progress.getAndSet(((long) done << 32) | (total & 0xFFFFFFFFL)) == -1) {
+                callbacks.execute(() -> {
+                    long value = progress.getAndSet(-1);
+                    if (value != -1 && !cancelled.get()) {
+                        callback.onProgress((int) (value >>> 32), (int) value);
+                    }
+                });
+            }
+        }
+
+        private void run() {
+            boolean completed = false;
+            Exception error = null;
+            try {
+                completed = !cancelled.get() && job.run(this);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                synchronized (IoScheduler.this) {
+                    jobs.remove(key, this);
+                }
+            }
+            boolean finalCompleted = completed;
+            Exception finalError = error;
+            callbacks.execute(() -> callback.onFinished(finalCompleted, finalError));
+        }
+    }
+
+    private final int capacity;
+    private final Executor callbacks;
+    private final Consumer<RuntimeException> failures;
+    private final ExecutorService worker;
+    private final Map<String, Handle> jobs = new HashMap<>();
+    private int waiting;
+
+    /**
+     * @param failures called on the I/O thread with the exception of a write that failed
+     */
+    public IoScheduler(int capacity, Executor callbacks, Consumer<RuntimeException> failures) {
+        this.capacity = capacity;
+        this.callbacks = callbacks;
+        this.failures = failures;
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a write that must not be dropped; it is accepted even when the queue is full.
+     */
+    public synchronized void execute(Runnable write) {
+        waiting++;
+        worker.execute(() -> {
+            started();
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                failures.accept(e);
+            }
+        });
+    }
+
+    /**
+     * Queues {@code job} under {@code key}, or returns the job already queued or running under
+     * that key, in which case {@code callback} is not called.
+     *
+     * @throws RejectedExecutionException if {@code capacity} tasks are already waiting
+     */
+    public synchronized Handle submit(String key, Job job, Callback callback) {
+        Handle existing = jobs.get(key);
+        if (existing != null && !existing.isCancelled()) return existing;
+        if (waiting >= capacity) {
+            throw new RejectedExecutionException("I/O queue is full");
+        }
+        Handle handle = new Handle(key, job, callback);
+        jobs.put(key, handle);
+        waiting++;
+        worker.execute(() -> {
+            started();
+            handle.run();
+        });
+        return handle;
+    }
+
+    /**
+     * Returns whether a job with {@code key} is queued or running and not cancelled.
+     */
+    public synchronized boolean isActive(String key) {
+        Handle handle = jobs.get(key);
+        return handle != null && !handle.isCancelled();
+    }
+
+    /**
+     * Cancels every job; queued jobs are skipped and running ones are asked to stop. Writes
+     * queued with {@link #execute} still run.
+     */
+    public synchronized void cancelJobs() {
+        for (Handle handle : jobs.values()) {
+            handle.cancel();
+        }
+    }
+
+    public synchronized int waiting() {
+        return waiting;
+    }
+
+    private synchronized void started() {
+        waiting--;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal JSON parser for the small configuration files bundled with the engine. Objects
+ * become {@link Map}s that keep their key order, arrays become {@link List}s and numbers
+ * become {@link Double}s.
+ */
+final class JsonParser {
+
+    private final Reader reader;
+    private int peeked = -2;
+
+    private JsonParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    static Object parse(Reader reader) throws IOException {
+        JsonParser parser = new JsonParser(reader);
+        Object value = parser.readValue();
+        if (parser.peekNonWhitespace() != -1) {
+            throw parser.error("Unexpected content after the top-level value");
+        }
+        return value;
+    }
+
+    private Object readValue() throws IOException {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expectWord("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectWord("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectWord("null");
+                return null;
+            case -1:
+                throw error("Unexpected end of input");
+            default:
+                return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() throws IOException {
+        next();
+        Map<String, Object> object = new LinkedHashMap<>();
+        if (peekNonWhitespace() == '}') {
+            next();
+            return object;
+        }
+        while (true) {
+            if (peekNonWhitespace() != '"') throw error("Expected a key");
+            String key = readString();
+            if (peekNonWhitespace() != ':') throw error("Expected ':'");
+            next();
+            object.put(key, readValue());
+            int c = peekNonWhitespace();
+            next();
+            if (c == '}') return object;
+            if (c != ',') throw error("Expected ',' or '}'");
+        }
+    }
+
+    private List<Object> readArray() throws IOException {
+        next();
+        List<Object> array = new ArrayList<>();
+        if (peekNonWhitespace() == ']') {
+            next();
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            int c = peekNonWhitespace();
+            next();
+            if (c == ']') return array;
+            if (c != ',') throw error("Expected ',' or ']'");
+        }
+    }
+
+    private String readString() throws IOException {
+        next();
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = next();
+            if (c == -1) throw error("Unterminated string");
+            if (c == '"') return value.toString();
+            if (c != '\\') {
+                value.append((char) c);
+                continue;
+            }
+            int escaped = next();
+            switch (escaped) {
+                case '"': case '\\': case '/':
+                    value.append((char) escaped);
+                    break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0) throw error("Invalid unicode escape");
+                        code = code * 16 + digit;
+                    }
+                    value.append((char) code);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    private Double readNumber() throws IOException {
+        StringBuilder number = new StringBuilder();
+        int c = peek();
+        while (c != -1 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'
+                || (c >= '0' && c <= '9'))) {
+            number.append((char) next());
+            c = peek();
+        }
+        try {
+            return Double.valueOf(number.toString());
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    private void expectWord(String word) throws IOException {
+        for (int i = 0; i < word.length(); i++) {
+            if (next() != word.charAt(i)) throw error("Expected '" + word + "'");
+        }
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\uFEFF') {
+            next();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        peeked = -2;
+        return c;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Malformed JSON: " + message);
+    }
+}
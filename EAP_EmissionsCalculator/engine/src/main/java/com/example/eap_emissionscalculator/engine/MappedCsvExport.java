@@ -0,0 +1,286 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a file written by {@link CsvExporter}, for reviewing past exports without
+ * loading them. The file is memory-mapped and scanned once on open to count the rows. Only the
+ * offset of every {@link #STRIDE}th row is kept, about 60 bytes per thousand rows. A row is
+ * decoded only when it is {@link #read}, by skipping forward from the nearest kept offset.
+ * Reads in row order, as when scrolling, continue from the previous row instead.
+ *
+ * <p>The header line is skipped. The closing {@code ОБЩО} line supplies the totals, so they
+ * are available without parsing the rows. Quoted fields may contain commas and line breaks.
+ * Instances are not thread-safe.
+ */
+public final class MappedCsvExport {
+
+    static final int STRIDE = 64;
+
+    private static final byte[] HEADER_START = (CsvFormat.COLUMNS[0] + ",").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOTALS_PREFIX = CsvFormat.TOTALS_PREFIX.getBytes(StandardCharsets.UTF_8);
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    public static final class Row {
+        public String source;
+        public double quantity;
+        public String unit;
+        public double energy;
+        public double emissions;
+    }
+
+    private final ByteBuffer data;
+    private final int rowCount;
+    // Offset of rows 0, STRIDE, 2 * STRIDE, ...
+    private final int[] checkpoints;
+    private final double totalEnergy;
+    private final double totalEmissions;
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private int cursorRow = -1;
+    private int cursorNext;
+
+    private MappedCsvExport(ByteBuffer data) {
+        this.data = data;
+        int limit = data.limit();
+
+        int start = startsWithBom(data) ? 3 : 0;
+        if (startsWith(data, start, limit, HEADER_START)) {
+            start = skipLine(data, start, limit);
+        }
+
+        // One pass over the bytes: keep every STRIDE-th row start and remember the last line
+        int[] kept = new int[16];
+        int rows = 0;
+        int lastStart = -1;
+        int lineStart = start;
+        boolean quoted = false;
+        byte[] chunk = new byte[SCAN_BUFFER_SIZE];
+        ByteBuffer scan = data.duplicate();
+        scan.position(start);
+        for (int base = start; base < limit; base += chunk.length) {
+            int length = Math.min(chunk.length, limit - base);
+            scan.get(chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+                byte b = chunk[i];
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    if (base + i > lineStart) {
+                        if ((rows & (STRIDE - 1)) == 0) {
+                            if (rows / STRIDE == kept.length) kept = Arrays.copyOf(kept, kept.length * 2);
+                            kept[rows / STRIDE] = lineStart;
+                        }
+                        rows++;
+                        lastStart = lineStart;
+                    }
+                    lineStart = base + i + 1;
+                } else if (b == '\r' && base + i == lineStart) {
+                    lineStart++;
+                }
+            }
+        }
+        if (limit > lineStart) {
+            if ((rows & (STRIDE - 1)) == 0) {
+                if (rows / STRIDE == kept.length) kept = Arrays.copyOf(kept, kept.length * 2);
+                kept[rows / STRIDE] = lineStart;
+            }
+            rows++;
+            lastStart = lineStart;
+        }
+
+        double energy = Double.NaN;
+        double emissions = Double.NaN;
+        if (lastStart >= 0 && startsWith(data, lastStart, limit, TOTALS_PREFIX)) {
+            rows--;
+            readLine(lastStart);
+            energy = parseNumber(field(3));
+            emissions = parseNumber(field(4));
+        }
+        rowCount = rows;
+        checkpoints = Arrays.copyOf(kept, (rows + STRIDE - 1) / STRIDE);
+        totalEnergy = energy;
+        totalEmissions = emissions;
+    }
+
+    /**
+     * Maps and indexes {@code file}. The mapping stays valid after the file is closed.
+     */
+    public static MappedCsvExport open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return map(in.getChannel());
+        }
+    }
+
+    /**
+     * Maps and indexes the whole of {@code channel}, which the caller may close afterwards.
+     */
+    public static MappedCsvExport map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) throw new IOException("Export too large to map: " + size);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return new MappedCsvExport(buffer);
+    }
+
+    static MappedCsvExport wrap(byte[] bytes) {
+        return new MappedCsvExport(ByteBuffer.wrap(bytes));
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Returns whether the file ends with a totals line.
+     */
+    public boolean hasTotals() {
+        return !Double.isNaN(totalEnergy);
+    }
+
+    /** NaN without a totals line. */
+    public double totalEnergy() {
+        return totalEnergy;
+    }
+
+    /** NaN without a totals line. */
+    public double totalEmissions() {
+        return totalEmissions;
+    }
+
+    /**
+     * Decodes row {@code row} into {@code into}; numbers that do not parse come out as NaN.
+     */
+    public Row read(int row, Row into) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        int start;
+        if (cursorRow >= 0 && row > cursorRow && row - cursorRow <= row % STRIDE) {
+            // Closer to the previous read than to the checkpoint
+            start = cursorNext;
+            for (int r = cursorRow + 1; r < row; r++) {
+                start = skipLine(data, start, data.limit());
+            }
+        } else {
+            start = checkpoints[row / STRIDE];
+            for (int r = row - row % STRIDE; r < row; r++) {
+                start = skipLine(data, start, data.limit());
+            }
+        }
+        cursorNext = readLine(start);
+        cursorRow = row;
+
+        into.source = field(0);
+        into.quantity = parseNumber(field(1));
+        into.unit = field(2);
+        into.energy = parseNumber(field(3));
+        into.emissions = parseNumber(field(4));
+        return into;
+    }
+
+    /**
+     * Copies the line at {@code start} into {@link #line}, quotes resolved and fields separated
+     * by 0 bytes, and returns where the next non-empty line starts.
+     */
+    private int readLine(int start) {
+        int limit = data.limit();
+        int i = start;
+        lineLength = 0;
+        boolean quoted = false;
+        for (; i < limit; i++) {
+            byte b = data.get(i);
+            if (quoted) {
+                if (b == '"') {
+                    if (i + 1 < limit && data.get(i + 1) == '"') {
+                        append(b);
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    append(b);
+                }
+            } else if (b == '"') {
+                quoted = true;
+            } else if (b == ',') {
+                append((byte) 0);
+            } else if (b == '\n') {
+                break;
+            } else if (b != '\r') {
+                append(b);
+            }
+        }
+        // Blank lines are not rows
+        while (i < limit && (data.get(i) == '\n' || data.get(i) == '\r')) i++;
+        return i;
+    }
+
+    private void append(byte b) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, lineLength * 2);
+        }
+        line[lineLength++] = b;
+    }
+
+    /**
+     * Returns field {@code index} of the line read last, or an empty string if there is none.
+     */
+    private String field(int index) {
+        int start = 0;
+        for (int f = 0; f < index; f++) {
+            while (start < lineLength && line[start] != 0) start++;
+            if (start == lineLength) return "";
+            start++;
+        }
+        int end = start;
+        while (end < lineLength && line[end] != 0) end++;
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static double parseNumber(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns where the line after the one at {@code start} begins, skipping blank lines.
+     */
+    private static int skipLine(ByteBuffer data, int start, int limit) {
+        boolean quoted = false;
+        int i = start;
+        for (; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                break;
+            }
+        }
+        while (i < limit && (data.get(i) == '\n' || data.get(i) == '\r')) i++;
+        return i;
+    }
+
+    private static boolean startsWithBom(ByteBuffer data) {
+        return data.limit() >= 3 && data.get(0) == (byte) 0xEF && data.get(1) == (byte) 0xBB
+                && data.get(2) == (byte) 0xBF;
+    }
+
+    private static boolean startsWith(ByteBuffer data, int start, int limit, byte[] prefix) {
+        if (limit - start < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (data.get(start + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named operation timings and counters that are cheap enough to keep on in production and can be
+ * dumped as a plain-text report. Operations record their duration in nanoseconds into a
+ * {@link LatencyHistogram} and, when the caller can measure it, the bytes they allocated.
+ *
+ * <p>Operations and counters are registered once, typically into static fields, and may then be
+ * updated from any thread.
+ */
+public final class Metrics {
+
+    public static final class Operation {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final AtomicLong allocationSamples = new AtomicLong();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public void record(long nanos) {
+            latency.record(nanos);
+        }
+
+        public void recordAllocation(long bytes) {
+            allocatedBytes.addAndGet(bytes);
+            allocationSamples.incrementAndGet();
+        }
+
+        /**
+         * Returns the mean bytes allocated per measured run, or -1 if none was measured.
+         */
+        public long allocatedBytesPerRun() {
+            long samples = allocationSamples.get();
+            return samples == 0 ? -1 : allocatedBytes.get() / samples;
+        }
+
+        void reset() {
+            latency.reset();
+            allocatedBytes.set(0);
+            allocationSamples.set(0);
+        }
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<Counter> counters = new ArrayList<>();
+
+    public synchronized Operation operation(String name) {
+        Operation operation = new Operation(name);
+        operations.add(operation);
+        return operation;
+    }
+
+    public synchronized Counter counter(String name) {
+        Counter counter = new Counter(name);
+        counters.add(counter);
+        return counter;
+    }
+
+    public synchronized void reset() {
+        for (Operation operation : operations) {
+            operation.reset();
+        }
+        for (Counter counter : counters) {
+            counter.value.set(0);
+        }
+    }
+
+    /**
+     * Appends one line per operation with its count, latency percentiles in milliseconds and
+     * allocations per run, followed by one line per counter.
+     */
+    public synchronized void report(StringBuilder out) {
+        out.append(String.format(Locale.ROOT, "%-16s %8s %9s %9s %9s %9s %10s%n",
+                "операция", "брой", "p50 ms", "p90 ms", "p99 ms", "max ms", "B/изп."));
+        for (Operation operation : operations) {
+            LatencyHistogram latency = operation.latency;
+            long allocated = operation.allocatedBytesPerRun();
+            out.append(String.format(Locale.ROOT, "%-16s %8d %9.3f %9.3f %9.3f %9.3f %10s%n",
+                    operation.name, latency.count(),
+                    millis(latency.valueAtPercentile(50)), millis(latency.valueAtPercentile(90)),
+                    millis(latency.valueAtPercentile(99)), millis(latency.max()),
+                    allocated < 0 ? "-" : Long.toString(allocated)));
+        }
+        out.append('\n');
+        for (Counter counter : counters) {
+            out.append(String.format(Locale.ROOT, "%-16s %8d%n", counter.name, counter.get()));
+        }
+    }
+
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        report(out);
+        return out.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
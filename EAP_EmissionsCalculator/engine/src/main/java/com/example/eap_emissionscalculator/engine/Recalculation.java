@@ -0,0 +1,128 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recalculates energy and emissions of a whole history after its factors change, e.g. when
+ * records are moved to a newer {@link FactorCatalogue} factor set. Rows are split into fixed
+ * chunks that are calculated in parallel on a {@link ForkJoinPool}; each chunk sums its own
+ * {@link RunningTotals} and the chunks are then merged in row order, so the totals come out the
+ * same to the last bit whatever the number of threads or the order chunks finish in. An
+ * {@link FactorCatalogue#isExact() exact} catalogue recalculates in {@link FixedPoint}.
+ */
+public final class Recalculation {
+
+    static final int CHUNK_SIZE = 4096;
+
+    /** Pass as the factor set to recalculate every record with the set it is pinned to. */
+    public static final int KEEP_FACTOR_SET = -1;
+
+    public static final class Result {
+        public final RunningTotals totals;
+        /** Rows whose factor set, energy or emissions changed. */
+        public final int changedRows;
+
+        Result(RunningTotals totals, int changedRows) {
+            this.totals = totals;
+            this.changedRows = changedRows;
+        }
+    }
+
+    private Recalculation() {
+    }
+
+    /**
+     * Recalculates every row of {@code records} in place, typically a {@link RecordStore#copy()}
+     * that is swapped in afterwards.
+     *
+     * @param factorSet the factor set to pin every record to, or {@link #KEEP_FACTOR_SET}
+     */
+    public static Result run(RecordStore records, FactorCatalogue catalogue, int factorSet,
+                             ForkJoinPool pool) {
+        int chunks = (records.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        RunningTotals[] chunkTotals = new RunningTotals[chunks];
+        int[] chunkChanges = new int[chunks];
+        if (chunks > 0) {
+            pool.invoke(new Chunks(records, catalogue, factorSet, chunkTotals, chunkChanges, 0, chunks));
+        }
+
+        RunningTotals totals = new RunningTotals(catalogue.sourceCount(), catalogue.isExact());
+        int changedRows = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            totals.addAll(chunkTotals[chunk]);
+            changedRows += chunkChanges[chunk];
+        }
+        return new Result(totals, changedRows);
+    }
+
+    private static final class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RecordStore records;
+        private final FactorCatalogue catalogue;
+        private final int factorSet;
+        private final RunningTotals[] chunkTotals;
+        private final int[] chunkChanges;
+        private final int fromChunk;
+        private final int toChunk;
+
+        Chunks(RecordStore records, FactorCatalogue catalogue, int factorSet,
+               RunningTotals[] chunkTotals, int[] chunkChanges, int fromChunk, int toChunk) {
+            this.records = records;
+            this.catalogue = catalogue;
+            this.factorSet = factorSet;
+            this.chunkTotals = chunkTotals;
+            this.chunkChanges = chunkChanges;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new Chunks(records, catalogue, factorSet, chunkTotals, chunkChanges, fromChunk, middle),
+                        new Chunks(records, catalogue, factorSet, chunkTotals, chunkChanges, middle, toChunk));
+                return;
+            }
+
+            int from = fromChunk * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, records.size());
+            short[] source = records.sourceIndexArray();
+            short[] sets = records.factorSetArray();
+            double[] quantity = records.quantityArray();
+            double[] energy = records.energyArray();
+            double[] emissions = records.emissionsArray();
+            boolean exact = catalogue.isExact();
+            RunningTotals totals = new RunningTotals(catalogue.sourceCount(), exact);
+            int changes = 0;
+
+            for (int row = from; row < to; row++) {
+                int set = factorSet == KEEP_FACTOR_SET ? sets[row] : factorSet;
+                FactorCatalogue.FactorSet factors = catalogue.factorSet(set);
+                double rowEnergy;
+                double rowEmissions;
+                if (exact) {
+                    long rowQuantity = FixedPoint.quantity(quantity[row]);
+                    rowEnergy = FixedPoint.toDouble(FixedPoint.multiply(rowQuantity,
+                            factors.exactEnergyFactors[source[row]]));
+                    rowEmissions = FixedPoint.toDouble(FixedPoint.multiply(rowQuantity,
+                            factors.exactEmissionFactors[source[row]]));
+                } else {
+                    rowEnergy = quantity[row] * factors.energyFactors[source[row]];
+                    rowEmissions = quantity[row] * factors.emissionFactors[source[row]];
+                }
+                if (sets[row] != set || energy[row] != rowEnergy || emissions[row] != rowEmissions) {
+                    changes++;
+                }
+                sets[row] = (short) set;
+                energy[row] = rowEnergy;
+                emissions[row] = rowEmissions;
+                totals.add(source[row], rowEnergy, rowEmissions);
+            }
+            chunkTotals[fromChunk] = totals;
+            chunkChanges[fromChunk] = changes;
+        }
+    }
+}
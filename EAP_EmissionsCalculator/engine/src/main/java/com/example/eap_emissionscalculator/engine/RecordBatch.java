@@ -0,0 +1,164 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * A growable batch of (source, quantity) entries stored in primitive arrays, together with
+ * the per-row results and totals filled in by {@link EmissionsEngine#calculate(RecordBatch)}.
+ * A batch can be cleared and reused so that repeated runs do not allocate.
+ */
+public final class RecordBatch implements RecordSource {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] sourceIndex;
+    private int[] factorSet;
+    private int[] site;
+    private long[] createdAt;
+    private double[] quantity;
+    private double[] energy;
+    private double[] emissions;
+    private int size;
+    double totalEnergy;
+    double totalEmissions;
+
+    public RecordBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RecordBatch(int capacity) {
+        int initial = Math.max(capacity, 1);
+        sourceIndex = new int[initial];
+        factorSet = new int[initial];
+        site = new int[initial];
+        createdAt = new long[initial];
+        quantity = new double[initial];
+        energy = new double[initial];
+        emissions = new double[initial];
+    }
+
+    public void add(int source, double value) {
+        add(source, 0, value);
+    }
+
+    /**
+     * Adds a row pinned to a {@link FactorCatalogue} factor set.
+     */
+    public void add(int source, int set, double value) {
+        add(source, set, SiteTags.NONE, 0, value);
+    }
+
+    /**
+     * Adds a row with the {@link SiteTags site} and time it was recorded at, as used for
+     * {@link Rollups}.
+     */
+    public void add(int source, int set, int siteId, long time, double value) {
+        ensureCapacity(size + 1);
+        sourceIndex[size] = source;
+        factorSet[size] = set;
+        site[size] = siteId;
+        createdAt[size] = time;
+        quantity[size] = value;
+        energy[size] = 0;
+        emissions[size] = 0;
+        size++;
+    }
+
+    /**
+     * Adds a row whose results are already known, e.g. when snapshotting calculated records.
+     */
+    public void add(int source, double value, double rowEnergy, double rowEmissions) {
+        ensureCapacity(size + 1);
+        sourceIndex[size] = source;
+        factorSet[size] = 0;
+        site[size] = SiteTags.NONE;
+        createdAt[size] = 0;
+        quantity[size] = value;
+        energy[size] = rowEnergy;
+        emissions[size] = rowEmissions;
+        size++;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= sourceIndex.length) return;
+        int newCapacity = Math.max(capacity, sourceIndex.length + (sourceIndex.length >> 1));
+        sourceIndex = Arrays.copyOf(sourceIndex, newCapacity);
+        factorSet = Arrays.copyOf(factorSet, newCapacity);
+        site = Arrays.copyOf(site, newCapacity);
+        createdAt = Arrays.copyOf(createdAt, newCapacity);
+        quantity = Arrays.copyOf(quantity, newCapacity);
+        energy = Arrays.copyOf(energy, newCapacity);
+        emissions = Arrays.copyOf(emissions, newCapacity);
+    }
+
+    public void clear() {
+        size = 0;
+        totalEnergy = 0;
+        totalEmissions = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int sourceIndex(int row) {
+        return sourceIndex[row];
+    }
+
+    public int factorSet(int row) {
+        return factorSet[row];
+    }
+
+    public int site(int row) {
+        return site[row];
+    }
+
+    public long createdAt(int row) {
+        return createdAt[row];
+    }
+
+    @Override
+    public double quantity(int row) {
+        return quantity[row];
+    }
+
+    @Override
+    public double energy(int row) {
+        return energy[row];
+    }
+
+    @Override
+    public double emissions(int row) {
+        return emissions[row];
+    }
+
+    public double totalEnergy() {
+        return totalEnergy;
+    }
+
+    public double totalEmissions() {
+        return totalEmissions;
+    }
+
+    int[] sourceIndexArray() {
+        return sourceIndex;
+    }
+
+    int[] factorSetArray() {
+        return factorSet;
+    }
+
+    double[] quantityArray() {
+        return quantity;
+    }
+
+    double[] energyArray() {
+        return energy;
+    }
+
+    double[] emissionsArray() {
+        return emissions;
+    }
+}
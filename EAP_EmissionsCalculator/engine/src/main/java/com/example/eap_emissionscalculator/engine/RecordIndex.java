@@ -0,0 +1,415 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * Indexes over a {@link RecordStore} for filtering the history: a posting list of rows per energy
+ * source and the rows sorted by quantity and by emissions. A filter starts from whichever index
+ * narrows it down most, found with a few binary searches, and checks the other conditions only
+ * on those candidates, so selective filters cost about as much as the rows they match.
+ *
+ * <p>The index has to be told about every change to the store: rows appended or truncated and
+ * quantities edited keep it up to date incrementally, anything else, such as a recalculation or
+ * a {@link RecordStore#swap swap}, needs a {@link #rebuild()}. Instances are not thread-safe.
+ */
+public final class RecordIndex {
+
+    public static final int ANY_SOURCE = -1;
+
+    // Above 1/SCAN_FRACTION of the rows a range of a sorted index is not worth following
+    private static final int SCAN_FRACTION = 4;
+
+    /**
+     * Conditions a record must all meet; bounds are inclusive and infinite bounds match any value.
+     */
+    public static final class Filter {
+        public final int source;
+        public final double minQuantity;
+        public final double maxQuantity;
+        public final double minEmissions;
+
+        public Filter(int source, double minQuantity, double maxQuantity, double minEmissions) {
+            this.source = source;
+            this.minQuantity = minQuantity;
+            this.maxQuantity = maxQuantity;
+            this.minEmissions = minEmissions;
+        }
+
+        public boolean matchesAll() {
+            return source == ANY_SOURCE && minQuantity == Double.NEGATIVE_INFINITY
+                    && maxQuantity == Double.POSITIVE_INFINITY
+                    && minEmissions == Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * The rows matching a filter in ascending order, with their subtotals. Reused between queries.
+     */
+    public static final class Selection {
+        private int[] rows = new int[64];
+        private int size;
+        private final RunningTotals totals;
+
+        public Selection(int sourceCount) {
+            this(sourceCount, false);
+        }
+
+        public Selection(int sourceCount, boolean exact) {
+            totals = new RunningTotals(sourceCount, exact);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int row(int index) {
+            return rows[index];
+        }
+
+        /**
+         * Returns the index of {@code row} in the selection, or -1 if it is not selected.
+         */
+        public int indexOf(int row) {
+            int index = Arrays.binarySearch(rows, 0, size, row);
+            return index >= 0 ? index : -1;
+        }
+
+        public RunningTotals totals() {
+            return totals;
+        }
+
+        /**
+         * Sums the selected rows of {@code records} again, e.g. after some of them were edited.
+         */
+        public void recomputeTotals(RecordSource records) {
+            totals.clear();
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                totals.add(records.sourceIndex(row), records.energy(row), records.emissions(row));
+            }
+        }
+
+        private void clear(int capacity) {
+            if (rows.length < capacity) {
+                rows = new int[Math.max(capacity, rows.length * 2)];
+            }
+            size = 0;
+        }
+    }
+
+    private final RecordStore records;
+    private int[][] postings;
+    private int[] postingSizes;
+    private int[] byQuantity = new int[0];
+    private int[] byEmissions = new int[0];
+    private int size;
+    private int[] scratch = new int[0];
+
+    public RecordIndex(RecordStore records, int sourceCount) {
+        this.records = records;
+        postings = new int[sourceCount][];
+        postingSizes = new int[sourceCount];
+        for (int source = 0; source < sourceCount; source++) {
+            postings[source] = new int[16];
+        }
+        rebuild();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indexes rows {@code from} (inclusive) to {@code to} (exclusive), which must be the rows
+     * appended to the store since the last update.
+     */
+    public void added(int from, int to) {
+        if (from != size || to > records.size()) {
+            throw new IllegalStateException("Rows " + from + ".." + to + " after " + size);
+        }
+        short[] source = records.sourceIndexArray();
+        for (int row = from; row < to; row++) {
+            appendPosting(source[row], row);
+        }
+        byQuantity = insertAll(byQuantity, records.quantityArray(), from, to);
+        byEmissions = insertAll(byEmissions, records.emissionsArray(), from, to);
+        size = to;
+    }
+
+    /**
+     * Moves {@code row} to its new place after its quantity, and with it its emissions, changed.
+     */
+    public void changed(int row, double oldQuantity, double oldEmissions) {
+        move(byQuantity, records.quantityArray(), row, oldQuantity);
+        move(byEmissions, records.emissionsArray(), row, oldEmissions);
+    }
+
+    /**
+     * Drops the rows from {@code newSize} on after the store was truncated.
+     */
+    public void truncated(int newSize) {
+        if (newSize >= size) return;
+        for (int source = 0; source < postings.length; source++) {
+            int[] posting = postings[source];
+            int end = postingSizes[source];
+            while (end > 0 && posting[end - 1] >= newSize) {
+                end--;
+            }
+            postingSizes[source] = end;
+        }
+        compact(byQuantity, newSize);
+        compact(byEmissions, newSize);
+        size = newSize;
+    }
+
+    /**
+     * Indexes the whole store from scratch.
+     */
+    public void rebuild() {
+        Arrays.fill(postingSizes, 0);
+        size = 0;
+        byQuantity = new int[0];
+        byEmissions = new int[0];
+        added(0, records.size());
+    }
+
+    /**
+     * Replaces the contents of {@code into} with the rows matching {@code filter}.
+     */
+    public void select(Filter filter, Selection into) {
+        double[] quantity = records.quantityArray();
+        double[] emissions = records.emissionsArray();
+        short[] source = records.sourceIndexArray();
+
+        int quantityFrom = lowerBound(byQuantity, quantity, filter.minQuantity);
+        int quantityTo = upperBound(byQuantity, quantity, filter.maxQuantity);
+        int emissionsFrom = lowerBound(byEmissions, emissions, filter.minEmissions);
+        int sourceCount = filter.source == ANY_SOURCE ? size : postingSizes[filter.source];
+
+        int[] candidates;
+        int from;
+        int to;
+        boolean inRowOrder = false;
+        int quantityCount = quantityTo - quantityFrom;
+        int emissionsCount = size - emissionsFrom;
+        if (sourceCount <= quantityCount && sourceCount <= emissionsCount) {
+            candidates = filter.source == ANY_SOURCE ? null : postings[filter.source];
+            from = 0;
+            to = sourceCount;
+            inRowOrder = true;
+        } else if (Math.min(quantityCount, emissionsCount) > size / SCAN_FRACTION) {
+            // Visiting a large part of the rows in sorted order and then sorting them is slower
+            // than reading the columns straight through
+            candidates = null;
+            from = 0;
+            to = size;
+            inRowOrder = true;
+        } else if (quantityCount <= emissionsCount) {
+            candidates = byQuantity;
+            from = quantityFrom;
+            to = quantityTo;
+        } else {
+            candidates = byEmissions;
+            from = emissionsFrom;
+            to = size;
+        }
+
+        into.clear(Math.max(to - from, 0));
+        int[] rows = into.rows;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int row = candidates == null ? i : candidates[i];
+            if (filter.source != ANY_SOURCE && source[row] != filter.source) continue;
+            double rowQuantity = quantity[row];
+            if (rowQuantity < filter.minQuantity || rowQuantity > filter.maxQuantity) continue;
+            if (emissions[row] < filter.minEmissions) continue;
+            rows[count++] = row;
+        }
+        if (!inRowOrder) {
+            Arrays.sort(rows, 0, count);
+        }
+        into.size = count;
+        into.recomputeTotals(records);
+    }
+
+    private void appendPosting(int source, int row) {
+        int[] posting = postings[source];
+        int end = postingSizes[source];
+        if (end == posting.length) {
+            posting = Arrays.copyOf(posting, end * 2);
+            postings[source] = posting;
+        }
+        posting[end] = row;
+        postingSizes[source] = end + 1;
+    }
+
+    /**
+     * Returns {@code sorted} extended by the rows {@code from} to {@code to}, merged in by key.
+     */
+    private int[] insertAll(int[] sorted, double[] keys, int from, int to) {
+        int count = to - from;
+        if (count == 0) return sorted;
+        int[] merged = sorted.length >= size + count ? sorted
+                : Arrays.copyOf(sorted, Math.max(size + count, sorted.length + (sorted.length >> 1)));
+
+        if (count == 1) {
+            int at = insertionPoint(merged, 0, size, keys, keys[from], from);
+            System.arraycopy(merged, at, merged, at + 1, size - at);
+            merged[at] = from;
+            return merged;
+        }
+
+        // Sort the new rows on their own, then merge from the back so nothing is overwritten
+        int[] added = ensureScratch(count);
+        for (int i = 0; i < count; i++) {
+            added[i] = from + i;
+        }
+        sortByKey(added, count, keys);
+        int i = size - 1;
+        int j = count - 1;
+        for (int k = size + count - 1; j >= 0; k--) {
+            if (i >= 0 && compare(keys, merged[i], added[j]) > 0) {
+                merged[k] = merged[i--];
+            } else {
+                merged[k] = added[j--];
+            }
+        }
+        return merged;
+    }
+
+    private void move(int[] sorted, double[] keys, int row, double oldKey) {
+        int from = indexOf(sorted, keys, oldKey, row);
+        double key = keys[row];
+        // The rows between the old and the new place shift over by one towards the old place
+        if (compare(key, row, oldKey, row) < 0) {
+            int to = insertionPoint(sorted, 0, from, keys, key, row);
+            System.arraycopy(sorted, to, sorted, to + 1, from - to);
+            sorted[to] = row;
+        } else {
+            int to = insertionPoint(sorted, from + 1, size, keys, key, row) - 1;
+            System.arraycopy(sorted, from + 1, sorted, from, to - from);
+            sorted[to] = row;
+        }
+    }
+
+    private void compact(int[] sorted, int newSize) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (sorted[i] < newSize) {
+                sorted[kept++] = sorted[i];
+            }
+        }
+    }
+
+    private int indexOf(int[] sorted, double[] keys, double key, int row) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int other = sorted[middle];
+            // The row itself already holds its new key but still sits where the old one belongs
+            int order = compare(other == row ? key : keys[other], other, key, row);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        throw new IllegalStateException("Row " + row + " is not indexed under " + key);
+    }
+
+    private static int insertionPoint(int[] sorted, int from, int to, double[] keys, double key,
+                                      int row) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(keys[sorted[middle]], sorted[middle], key, row) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first position whose key is at least {@code bound}.
+     */
+    private int lowerBound(int[] sorted, double[] keys, double bound) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[sorted[middle]] < bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first position whose key is above {@code bound}.
+     */
+    private int upperBound(int[] sorted, double[] keys, double bound) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[sorted[middle]] <= bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int[] ensureScratch(int capacity) {
+        if (scratch.length < capacity) {
+            scratch = new int[capacity];
+        }
+        return scratch;
+    }
+
+    // A stable merge sort of row numbers by key, ties keeping row order
+    private static void sortByKey(int[] rows, int count, double[] keys) {
+        int[] buffer = new int[count];
+        int[] source = rows;
+        int[] target = buffer;
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count; left += 2 * width) {
+                int middle = Math.min(left + width, count);
+                int right = Math.min(left + 2 * width, count);
+                int i = left;
+                int j = middle;
+                for (int k = left; k < right; k++) {
+                    if (i < middle && (j >= right || compare(keys, source[i], source[j]) <= 0)) {
+                        target[k] = source[i++];
+                    } else {
+                        target[k] = source[j++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != rows) {
+            System.arraycopy(source, 0, rows, 0, count);
+        }
+    }
+
+    private static int compare(double[] keys, int a, int b) {
+        return compare(keys[a], a, keys[b], b);
+    }
+
+    private static int compare(double keyA, int rowA, double keyB, int rowB) {
+        int order = Double.compare(keyA, keyB);
+        return order != 0 ? order : Integer.compare(rowA, rowB);
+    }
+}
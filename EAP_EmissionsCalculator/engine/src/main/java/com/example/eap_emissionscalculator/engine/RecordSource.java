@@ -0,0 +1,18 @@
+package com.example.eap_emissionscalculator.engine;
+
+/**
+ * Read-only, index-based access to calculated rows, used by exporters so that they can walk
+ * primitive columns without materialising per-row objects.
+ */
+public interface RecordSource {
+
+    int size();
+
+    int sourceIndex(int row);
+
+    double quantity(int row);
+
+    double energy(int row);
+
+    double emissions(int row);
+}
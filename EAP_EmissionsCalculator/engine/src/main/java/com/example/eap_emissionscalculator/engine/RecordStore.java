@@ -0,0 +1,268 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * The in-memory calculation history, one primitive array per field instead of one object per
+ * record. A record costs 40 bytes across the columns and scans over a single field read
+ * contiguous memory.
+ *
+ * <p>Each record has a stable id for as long as it is stored. Records are only appended, removed
+ * from the end or cleared all together, so ids are consecutive and map to rows by subtraction;
+ * ids are not reused after {@link #clear()}, only after {@link #truncate(int)}. Instances are
+ * not thread-safe; use {@link #copy()} to hand a snapshot to another thread.
+ */
+public final class RecordStore implements RecordSource {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private short[] sourceIndex;
+    private short[] factorSet;
+    private int[] site;
+    private long[] createdAt;
+    private double[] quantity;
+    private double[] energy;
+    private double[] emissions;
+    private int size;
+    private int firstId;
+
+    public RecordStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RecordStore(int capacity) {
+        int initial = Math.max(capacity, 1);
+        sourceIndex = new short[initial];
+        factorSet = new short[initial];
+        site = new int[initial];
+        createdAt = new long[initial];
+        quantity = new double[initial];
+        energy = new double[initial];
+        emissions = new double[initial];
+    }
+
+    /**
+     * Appends a calculated record.
+     *
+     * @return the row it was stored at
+     */
+    public int add(int source, int set, int siteId, long time, double value,
+                   double rowEnergy, double rowEmissions) {
+        ensureCapacity(size + 1);
+        sourceIndex[size] = (short) source;
+        factorSet[size] = (short) set;
+        site[size] = siteId;
+        createdAt[size] = time;
+        quantity[size] = value;
+        energy[size] = rowEnergy;
+        emissions[size] = rowEmissions;
+        return size++;
+    }
+
+    /**
+     * Appends every row of a batch that has already been calculated.
+     *
+     * @return the row the first of them was stored at
+     */
+    public int addAll(RecordBatch batch) {
+        int first = size;
+        int count = batch.size();
+        ensureCapacity(size + count);
+        int[] batchSource = batch.sourceIndexArray();
+        int[] batchSet = batch.factorSetArray();
+        for (int i = 0; i < count; i++) {
+            sourceIndex[size + i] = (short) batchSource[i];
+            factorSet[size + i] = (short) batchSet[i];
+            site[size + i] = batch.site(i);
+            createdAt[size + i] = batch.createdAt(i);
+        }
+        System.arraycopy(batch.quantityArray(), 0, quantity, size, count);
+        System.arraycopy(batch.energyArray(), 0, energy, size, count);
+        System.arraycopy(batch.emissionsArray(), 0, emissions, size, count);
+        size += count;
+        return first;
+    }
+
+    public void setQuantity(int row, double value, double rowEnergy, double rowEmissions) {
+        checkRow(row);
+        quantity[row] = value;
+        energy[row] = rowEnergy;
+        emissions[row] = rowEmissions;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= quantity.length) return;
+        int newCapacity = Math.max(capacity, quantity.length + (quantity.length >> 1));
+        sourceIndex = Arrays.copyOf(sourceIndex, newCapacity);
+        factorSet = Arrays.copyOf(factorSet, newCapacity);
+        site = Arrays.copyOf(site, newCapacity);
+        createdAt = Arrays.copyOf(createdAt, newCapacity);
+        quantity = Arrays.copyOf(quantity, newCapacity);
+        energy = Arrays.copyOf(energy, newCapacity);
+        emissions = Arrays.copyOf(emissions, newCapacity);
+    }
+
+    public void clear() {
+        firstId += size;
+        size = 0;
+    }
+
+    /**
+     * Removes the rows from {@code newSize} on. Their ids are handed out again to the next
+     * records added, e.g. when an undone record is added back.
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Size " + newSize + " of " + size);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Moves every record into a new store without copying and leaves this one empty, with ids
+     * continuing after the moved ones as with {@link #clear()}. Swapping the returned store back
+     * in with {@link #swap} restores the records.
+     */
+    public RecordStore removeAll() {
+        RecordStore removed = new RecordStore();
+        swap(removed);
+        firstId = removed.firstId + removed.size;
+        return removed;
+    }
+
+    /**
+     * Returns a snapshot with the same rows and ids, trimmed to size.
+     */
+    public RecordStore copy() {
+        RecordStore copy = new RecordStore(size);
+        System.arraycopy(sourceIndex, 0, copy.sourceIndex, 0, size);
+        System.arraycopy(factorSet, 0, copy.factorSet, 0, size);
+        System.arraycopy(site, 0, copy.site, 0, size);
+        System.arraycopy(createdAt, 0, copy.createdAt, 0, size);
+        System.arraycopy(quantity, 0, copy.quantity, 0, size);
+        System.arraycopy(energy, 0, copy.energy, 0, size);
+        System.arraycopy(emissions, 0, copy.emissions, 0, size);
+        copy.size = size;
+        copy.firstId = firstId;
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int id(int row) {
+        checkRow(row);
+        return firstId + row;
+    }
+
+    /**
+     * Returns the row of the record with {@code id}, or -1 if it is no longer stored.
+     */
+    public int rowOf(int id) {
+        long row = (long) id - firstId;
+        return row >= 0 && row < size ? (int) row : -1;
+    }
+
+    @Override
+    public int sourceIndex(int row) {
+        return sourceIndex[row];
+    }
+
+    public int factorSet(int row) {
+        return factorSet[row];
+    }
+
+    public int site(int row) {
+        return site[row];
+    }
+
+    public long createdAt(int row) {
+        return createdAt[row];
+    }
+
+    @Override
+    public double quantity(int row) {
+        return quantity[row];
+    }
+
+    @Override
+    public double energy(int row) {
+        return energy[row];
+    }
+
+    @Override
+    public double emissions(int row) {
+        return emissions[row];
+    }
+
+    /**
+     * Exchanges the contents of this store with {@code other}, ids included.
+     */
+    public void swap(RecordStore other) {
+        short[] otherSource = other.sourceIndex;
+        short[] otherSet = other.factorSet;
+        int[] otherSite = other.site;
+        long[] otherCreatedAt = other.createdAt;
+        double[] otherQuantity = other.quantity;
+        double[] otherEnergy = other.energy;
+        double[] otherEmissions = other.emissions;
+        int otherSize = other.size;
+        int otherFirstId = other.firstId;
+
+        other.sourceIndex = sourceIndex;
+        other.factorSet = factorSet;
+        other.site = site;
+        other.createdAt = createdAt;
+        other.quantity = quantity;
+        other.energy = energy;
+        other.emissions = emissions;
+        other.size = size;
+        other.firstId = firstId;
+
+        sourceIndex = otherSource;
+        factorSet = otherSet;
+        site = otherSite;
+        createdAt = otherCreatedAt;
+        quantity = otherQuantity;
+        energy = otherEnergy;
+        emissions = otherEmissions;
+        size = otherSize;
+        firstId = otherFirstId;
+    }
+
+    short[] sourceIndexArray() {
+        return sourceIndex;
+    }
+
+    short[] factorSetArray() {
+        return factorSet;
+    }
+
+    int[] siteArray() {
+        return site;
+    }
+
+    double[] quantityArray() {
+        return quantity;
+    }
+
+    double[] energyArray() {
+        return energy;
+    }
+
+    double[] emissionsArray() {
+        return emissions;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * Energy and emission subtotals per group, updated by delta like {@link RunningTotals} but for
+ * groups that appear as records come in. Groups are kept sorted by key, so lookups are a binary
+ * search and iterating by index lists them in key order. A group stays listed with a zero count
+ * once its last record is removed, until {@link #clear()}.
+ */
+public final class Rollup {
+
+    private long[] keys = new long[16];
+    private double[] sums = new double[16 * 4];
+    private int[] counts = new int[16];
+    private int size;
+
+    public void add(long key, double energy, double emissions) {
+        int group = groupOf(key);
+        accumulate(group, energy, emissions);
+        counts[group]++;
+    }
+
+    public void remove(long key, double energy, double emissions) {
+        int group = groupOf(key);
+        accumulate(group, -energy, -emissions);
+        counts[group]--;
+    }
+
+    public void replace(long key, double oldEnergy, double oldEmissions,
+                        double newEnergy, double newEmissions) {
+        int group = groupOf(key);
+        accumulate(group, -oldEnergy, -oldEmissions);
+        accumulate(group, newEnergy, newEmissions);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the group with {@code key}, or -1 if there is none.
+     */
+    public int indexOf(long key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        return index < 0 ? -1 : index;
+    }
+
+    public long key(int index) {
+        return keys[index];
+    }
+
+    public double energy(int index) {
+        return sums[index * 4] + sums[index * 4 + 1];
+    }
+
+    public double emissions(int index) {
+        return sums[index * 4 + 2] + sums[index * 4 + 3];
+    }
+
+    public int count(int index) {
+        return counts[index];
+    }
+
+    private int groupOf(long key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) return index;
+
+        index = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            sums = Arrays.copyOf(sums, size * 2 * 4);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(sums, index * 4, sums, (index + 1) * 4, (size - index) * 4);
+        System.arraycopy(counts, index, counts, index + 1, size - index);
+        keys[index] = key;
+        Arrays.fill(sums, index * 4, index * 4 + 4, 0);
+        counts[index] = 0;
+        size++;
+        return index;
+    }
+
+    private void accumulate(int group, double energy, double emissions) {
+        RunningTotals.add(sums, group * 4, energy);
+        RunningTotals.add(sums, group * 4 + 2, emissions);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Subtotals of the history grouped by energy source, by {@link SiteTags site}, by calendar month
+ * and by site and month together, all maintained as records are added, edited or removed.
+ * Quarters and other coarser periods are cheap to derive from the months since there are only
+ * a few dozen of them.
+ *
+ * <p>Month keys count months since year 0 ({@code year * 12 + month - 1}); site-month keys put the
+ * site in the upper and the month in the lower 32 bits.
+ */
+public final class Rollups {
+
+    private final ZoneId zone;
+    private final Rollup bySource = new Rollup();
+    private final Rollup bySite = new Rollup();
+    private final Rollup byMonth = new Rollup();
+    private final Rollup bySiteMonth = new Rollup();
+
+    // Records mostly arrive in time order, so the last month looked up is cached
+    private long monthStart = Long.MAX_VALUE;
+    private long monthEnd = Long.MIN_VALUE;
+    private int month;
+
+    public Rollups(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    public void add(int source, int site, long createdAt, double energy, double emissions) {
+        int monthKey = monthKey(createdAt);
+        bySource.add(source, energy, emissions);
+        bySite.add(site, energy, emissions);
+        byMonth.add(monthKey, energy, emissions);
+        bySiteMonth.add(siteMonthKey(site, monthKey), energy, emissions);
+    }
+
+    /**
+     * Adds rows {@code from} (inclusive) to {@code to} (exclusive) of {@code records}.
+     */
+    public void addAll(RecordStore records, int from, int to) {
+        for (int row = from; row < to; row++) {
+            add(records.sourceIndex(row), records.site(row), records.createdAt(row),
+                    records.energy(row), records.emissions(row));
+        }
+    }
+
+    public void remove(int source, int site, long createdAt, double energy, double emissions) {
+        int monthKey = monthKey(createdAt);
+        bySource.remove(source, energy, emissions);
+        bySite.remove(site, energy, emissions);
+        byMonth.remove(monthKey, energy, emissions);
+        bySiteMonth.remove(siteMonthKey(site, monthKey), energy, emissions);
+    }
+
+    /**
+     * Updates the rollups for an edited record. Edits only change the quantity, so the record
+     * stays in the same groups.
+     */
+    public void replace(int source, int site, long createdAt, double oldEnergy, double oldEmissions,
+                        double newEnergy, double newEmissions) {
+        int monthKey = monthKey(createdAt);
+        bySource.replace(source, oldEnergy, oldEmissions, newEnergy, newEmissions);
+        bySite.replace(site, oldEnergy, oldEmissions, newEnergy, newEmissions);
+        byMonth.replace(monthKey, oldEnergy, oldEmissions, newEnergy, newEmissions);
+        bySiteMonth.replace(siteMonthKey(site, monthKey), oldEnergy, oldEmissions,
+                newEnergy, newEmissions);
+    }
+
+    public void clear() {
+        bySource.clear();
+        bySite.clear();
+        byMonth.clear();
+        bySiteMonth.clear();
+    }
+
+    public Rollup bySource() {
+        return bySource;
+    }
+
+    public Rollup bySite() {
+        return bySite;
+    }
+
+    public Rollup byMonth() {
+        return byMonth;
+    }
+
+    public Rollup bySiteMonth() {
+        return bySiteMonth;
+    }
+
+    public int monthKey(long createdAt) {
+        if (createdAt >= monthStart && createdAt < monthEnd) return month;
+
+        ZonedDateTime start = Instant.ofEpochMilli(createdAt).atZone(zone)
+                .withDayOfMonth(1).toLocalDate().atStartOfDay(zone);
+        monthStart = start.toInstant().toEpochMilli();
+        monthEnd = start.plusMonths(1).toInstant().toEpochMilli();
+        month = start.getYear() * 12 + start.getMonthValue() - 1;
+        return month;
+    }
+
+    public static long siteMonthKey(int site, int monthKey) {
+        return ((long) site << 32) | monthKey;
+    }
+
+    public static int site(long siteMonthKey) {
+        return (int) (siteMonthKey >>> 32);
+    }
+
+    public static int month(long siteMonthKey) {
+        return (int) siteMonthKey;
+    }
+
+    public static int year(int monthKey) {
+        return monthKey / 12;
+    }
+
+    /**
+     * Returns the month of the year, 1 to 12.
+     */
+    public static int monthOfYear(int monthKey) {
+        return monthKey % 12 + 1;
+    }
+
+    /**
+     * Returns the quarter of the year, 1 to 4.
+     */
+    public static int quarter(int monthKey) {
+        return monthKey % 12 / 3 + 1;
+    }
+}
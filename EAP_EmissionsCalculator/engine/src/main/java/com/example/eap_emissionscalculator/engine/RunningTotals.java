@@ -0,0 +1,155 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * Energy and emission totals that are updated by delta instead of being re-summed over the
+ * whole history. Grand totals and per-source subtotals use Neumaier compensated summation,
+ * so adding, editing and removing rows in any order costs O(1) and does not accumulate
+ * rounding error. Values are kept unrounded; rounding is left to whoever displays them.
+ *
+ * <p>Exact totals, for records calculated in {@link FixedPoint}, instead sum whole hundredths in
+ * {@code long}s: every value added is taken as a number of hundredths, and the totals are exactly
+ * the sum of the rows as displayed. Overflow throws {@link ArithmeticException}.
+ */
+public final class RunningTotals {
+
+    private static final int TOTAL_ENERGY = 0;
+    private static final int TOTAL_EMISSIONS = 2;
+    private static final int FIRST_SOURCE = 4;
+
+    // Pairs of (sum, compensation): grand totals first, then energy/emissions per source.
+    private final double[] sums;
+    // Hundredths in the same slots as sums, when exact; compensation slots stay unused
+    private final long[] exactSums;
+    private final int[] sourceCounts;
+    private int count;
+
+    public RunningTotals(int sourceCount) {
+        this(sourceCount, false);
+    }
+
+    public RunningTotals(int sourceCount, boolean exact) {
+        sums = new double[FIRST_SOURCE + sourceCount * 4];
+        exactSums = exact ? new long[sums.length] : null;
+        sourceCounts = new int[sourceCount];
+    }
+
+    public boolean isExact() {
+        return exactSums != null;
+    }
+
+    public void add(int source, double energy, double emissions) {
+        accumulate(source, energy, emissions);
+        sourceCounts[source]++;
+        count++;
+    }
+
+    /**
+     * Adds rows {@code from} (inclusive) to {@code to} (exclusive) of {@code records}.
+     */
+    public void addAll(RecordSource records, int from, int to) {
+        for (int row = from; row < to; row++) {
+            add(records.sourceIndex(row), records.energy(row), records.emissions(row));
+        }
+    }
+
+    /**
+     * Adds the totals and subtotals of {@code other}, which must have the same source count and
+     * be exact if these totals are.
+     */
+    public void addAll(RunningTotals other) {
+        if (exactSums != null) {
+            for (int slot = 0; slot < exactSums.length; slot += 2) {
+                exactSums[slot] = Math.addExact(exactSums[slot], other.exactSums[slot]);
+            }
+        } else {
+            for (int slot = 0; slot < sums.length; slot += 2) {
+                add(sums, slot, other.sums[slot]);
+                add(sums, slot, other.sums[slot + 1]);
+            }
+        }
+        for (int source = 0; source < sourceCounts.length; source++) {
+            sourceCounts[source] += other.sourceCounts[source];
+        }
+        count += other.count;
+    }
+
+    public void remove(int source, double energy, double emissions) {
+        accumulate(source, -energy, -emissions);
+        sourceCounts[source]--;
+        count--;
+    }
+
+    public void replace(int source, double oldEnergy, double oldEmissions,
+                        double newEnergy, double newEmissions) {
+        accumulate(source, -oldEnergy, -oldEmissions);
+        accumulate(source, newEnergy, newEmissions);
+    }
+
+    public void clear() {
+        Arrays.fill(sums, 0);
+        if (exactSums != null) {
+            Arrays.fill(exactSums, 0);
+        }
+        Arrays.fill(sourceCounts, 0);
+        count = 0;
+    }
+
+    public double energy() {
+        return sum(TOTAL_ENERGY);
+    }
+
+    public double emissions() {
+        return sum(TOTAL_EMISSIONS);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public double sourceEnergy(int source) {
+        return sum(FIRST_SOURCE + source * 4);
+    }
+
+    public double sourceEmissions(int source) {
+        return sum(FIRST_SOURCE + source * 4 + 2);
+    }
+
+    public int sourceCount(int source) {
+        return sourceCounts[source];
+    }
+
+    private double sum(int slot) {
+        if (exactSums != null) return FixedPoint.toDouble(exactSums[slot]);
+        return sums[slot] + sums[slot + 1];
+    }
+
+    private void accumulate(int source, double energy, double emissions) {
+        int slot = FIRST_SOURCE + source * 4;
+        if (exactSums != null) {
+            long exactEnergy = FixedPoint.hundredths(energy);
+            long exactEmissions = FixedPoint.hundredths(emissions);
+            exactSums[TOTAL_ENERGY] = Math.addExact(exactSums[TOTAL_ENERGY], exactEnergy);
+            exactSums[TOTAL_EMISSIONS] = Math.addExact(exactSums[TOTAL_EMISSIONS], exactEmissions);
+            exactSums[slot] = Math.addExact(exactSums[slot], exactEnergy);
+            exactSums[slot + 2] = Math.addExact(exactSums[slot + 2], exactEmissions);
+            return;
+        }
+        add(sums, TOTAL_ENERGY, energy);
+        add(sums, TOTAL_EMISSIONS, emissions);
+        add(sums, slot, energy);
+        add(sums, slot + 2, emissions);
+    }
+
+    static void add(double[] sums, int slot, double value) {
+        double sum = sums[slot];
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            sums[slot + 1] += (sum - t) + value;
+        } else {
+            sums[slot + 1] += (value - t) + sum;
+        }
+        sums[slot] = t;
+    }
+}
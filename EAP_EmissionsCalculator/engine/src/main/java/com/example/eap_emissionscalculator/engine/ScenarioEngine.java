@@ -0,0 +1,276 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * What-if evaluation of fuel switches: a scenario replaces a share of one source's consumption
+ * with another source that delivers the same energy, e.g. half of the heating oil of one site
+ * with natural gas, and reports the CO₂ that would be saved.
+ *
+ * <p>The saving is linear in the energy switched, so scenarios are evaluated against a
+ * {@link Baseline} of energy and emissions per site and source rather than against the records.
+ * The baseline is built once in a parallel pass over the history. It is read-only afterwards,
+ * so any number of scenarios can be evaluated against it in parallel, each costing only as much
+ * as its substitutions. Replacement fuels are calculated with the factors of one factor set.
+ */
+public final class ScenarioEngine {
+
+    public static final int ALL_SITES = -1;
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    public static final class Substitution {
+        public final int fromSource;
+        public final int toSource;
+        /** The share of {@code fromSource} energy that is switched, from 0 to 1. */
+        public final double share;
+        /** The {@link SiteTags} id the switch applies to, or {@link #ALL_SITES}. */
+        public final int site;
+
+        public Substitution(int fromSource, int toSource, double share, int site) {
+            if (!(share >= 0 && share <= 1)) {
+                throw new IllegalArgumentException("Share must be between 0 and 1: " + share);
+            }
+            this.fromSource = fromSource;
+            this.toSource = toSource;
+            this.share = share;
+            this.site = site;
+        }
+    }
+
+    public static final class Scenario {
+        public final String name;
+        public final List<Substitution> substitutions;
+
+        public Scenario(String name, List<Substitution> substitutions) {
+            this.name = name;
+            this.substitutions = Collections.unmodifiableList(new ArrayList<>(substitutions));
+        }
+    }
+
+    public static final class Outcome {
+        public final Scenario scenario;
+        /** Emissions of the whole history with the scenario applied. */
+        public final double emissions;
+        /** Baseline emissions minus {@link #emissions}; negative if the switch adds CO₂. */
+        public final double saved;
+        public final double energySwitched;
+
+        Outcome(Scenario scenario, double emissions, double saved, double energySwitched) {
+            this.scenario = scenario;
+            this.emissions = emissions;
+            this.saved = saved;
+            this.energySwitched = energySwitched;
+        }
+    }
+
+    /**
+     * Energy and emissions of a history per site and source.
+     */
+    public static final class Baseline {
+        public final int siteCount;
+        public final int sourceCount;
+        // Indexed by site * sourceCount + source
+        private final double[] energy;
+        private final double[] emissions;
+        private final double totalEmissions;
+
+        Baseline(int siteCount, int sourceCount, double[] energy, double[] emissions) {
+            this.siteCount = siteCount;
+            this.sourceCount = sourceCount;
+            this.energy = energy;
+            this.emissions = emissions;
+            double total = 0;
+            for (double value : emissions) {
+                total += value;
+            }
+            totalEmissions = total;
+        }
+
+        public double energy(int site, int source) {
+            return energy[site * sourceCount + source];
+        }
+
+        public double emissions(int site, int source) {
+            return emissions[site * sourceCount + source];
+        }
+
+        public double totalEmissions() {
+            return totalEmissions;
+        }
+    }
+
+    private final FactorCatalogue.FactorSet factors;
+    private final int sourceCount;
+
+    /**
+     * @param factorSet the factor set replacement fuels are calculated with
+     */
+    public ScenarioEngine(FactorCatalogue catalogue, int factorSet) {
+        factors = catalogue.factorSet(factorSet);
+        sourceCount = catalogue.sourceCount();
+    }
+
+    /**
+     * Sums {@code records} per site and source in fixed chunks on {@code pool}, merged in row
+     * order so the result does not depend on the number of threads.
+     *
+     * @param siteCount one more than the highest site id in {@code records}
+     */
+    public static Baseline baseline(RecordStore records, int sourceCount, int siteCount,
+                                    ForkJoinPool pool) {
+        int cells = siteCount * sourceCount;
+        int chunks = (records.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        double[][] chunkEnergy = new double[chunks][];
+        double[][] chunkEmissions = new double[chunks][];
+        if (chunks > 0) {
+            pool.invoke(new BaselineChunks(records, cells, sourceCount, chunkEnergy, chunkEmissions,
+                    0, chunks));
+        }
+
+        double[] energy = new double[cells];
+        double[] emissions = new double[cells];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            for (int cell = 0; cell < cells; cell++) {
+                energy[cell] += chunkEnergy[chunk][cell];
+                emissions[cell] += chunkEmissions[chunk][cell];
+            }
+        }
+        return new Baseline(siteCount, sourceCount, energy, emissions);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a replacement source has no energy factor, or if the
+     * shares switched away from one source at one site add up to more than 1
+     */
+    public Outcome evaluate(Baseline baseline, Scenario scenario) {
+        double[] switchedShare = new double[baseline.siteCount * sourceCount];
+        double saved = 0;
+        double energySwitched = 0;
+        for (Substitution substitution : scenario.substitutions) {
+            double energyFactor = factors.energyFactors[substitution.toSource];
+            if (!(energyFactor > 0)) {
+                throw new IllegalArgumentException("Source " + substitution.toSource
+                        + " has no energy factor in " + factors.id);
+            }
+            // Emissions per kWh of the replacement fuel
+            double intensity = factors.emissionFactors[substitution.toSource] / energyFactor;
+
+            int fromSite = substitution.site == ALL_SITES ? 0 : substitution.site;
+            int toSite = substitution.site == ALL_SITES ? baseline.siteCount : substitution.site + 1;
+            for (int site = fromSite; site < toSite; site++) {
+                int cell = site * sourceCount + substitution.fromSource;
+                switchedShare[cell] += substitution.share;
+                if (switchedShare[cell] > 1 + 1e-9) {
+                    throw new IllegalArgumentException("More than all of source "
+                            + substitution.fromSource + " is switched at site " + site);
+                }
+                double energy = baseline.energy[cell] * substitution.share;
+                saved += baseline.emissions[cell] * substitution.share - energy * intensity;
+                energySwitched += energy;
+            }
+        }
+        return new Outcome(scenario, baseline.totalEmissions - saved, saved, energySwitched);
+    }
+
+    /**
+     * Evaluates {@code scenarios} in parallel on {@code pool} and returns them by CO₂ saved,
+     * largest saving first; scenarios that save the same keep their order.
+     */
+    public List<Outcome> rank(Baseline baseline, List<Scenario> scenarios, ForkJoinPool pool) {
+        Outcome[] outcomes = new Outcome[scenarios.size()];
+        if (outcomes.length > 0) {
+            pool.invoke(new Evaluations(baseline, scenarios, outcomes, 0, outcomes.length));
+        }
+        Arrays.sort(outcomes, (a, b) -> Double.compare(b.saved, a.saved));
+        return Collections.unmodifiableList(Arrays.asList(outcomes));
+    }
+
+    private final class Evaluations extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 8;
+
+        private final Baseline baseline;
+        private final List<Scenario> scenarios;
+        private final Outcome[] outcomes;
+        private final int from;
+        private final int to;
+
+        Evaluations(Baseline baseline, List<Scenario> scenarios, Outcome[] outcomes, int from, int to) {
+            this.baseline = baseline;
+            this.scenarios = scenarios;
+            this.outcomes = outcomes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Evaluations(baseline, scenarios, outcomes, from, middle),
+                        new Evaluations(baseline, scenarios, outcomes, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                outcomes[i] = evaluate(baseline, scenarios.get(i));
+            }
+        }
+    }
+
+    private static final class BaselineChunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RecordStore records;
+        private final int cells;
+        private final int sourceCount;
+        private final double[][] chunkEnergy;
+        private final double[][] chunkEmissions;
+        private final int fromChunk;
+        private final int toChunk;
+
+        BaselineChunks(RecordStore records, int cells, int sourceCount, double[][] chunkEnergy,
+                       double[][] chunkEmissions, int fromChunk, int toChunk) {
+            this.records = records;
+            this.cells = cells;
+            this.sourceCount = sourceCount;
+            this.chunkEnergy = chunkEnergy;
+            this.chunkEmissions = chunkEmissions;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new BaselineChunks(records, cells, sourceCount, chunkEnergy, chunkEmissions,
+                                fromChunk, middle),
+                        new BaselineChunks(records, cells, sourceCount, chunkEnergy, chunkEmissions,
+                                middle, toChunk));
+                return;
+            }
+
+            int from = fromChunk * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, records.size());
+            short[] source = records.sourceIndexArray();
+            int[] site = records.siteArray();
+            double[] energy = records.energyArray();
+            double[] emissions = records.emissionsArray();
+            double[] sumEnergy = new double[cells];
+            double[] sumEmissions = new double[cells];
+            for (int row = from; row < to; row++) {
+                int cell = site[row] * sourceCount + source[row];
+                sumEnergy[cell] += energy[row];
+                sumEmissions[cell] += emissions[row];
+            }
+            chunkEnergy[fromChunk] = sumEnergy;
+            chunkEmissions[fromChunk] = sumEmissions;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.eap_emissionscalculator.engine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The site or building names records are tagged with, mapped to the small integer ids that are
+ * stored per record in the {@link HistoryLog}. Ids are handed out in order and never reused, and
+ * id {@link #NONE} stands for records without a site. Instances are not thread-safe.
+ *
+ * <p>Saved as a UTF-8 text file with one name per line, the line number being the id.
+ */
+public final class SiteTags {
+
+    public static final int NONE = 0;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public SiteTags() {
+        names.add("");
+        ids.put("", NONE);
+    }
+
+    /**
+     * Reads the tags saved at {@code path}; a missing file gives an empty set of tags.
+     */
+    public static SiteTags load(File path) throws IOException {
+        SiteTags tags = new SiteTags();
+        if (!path.exists()) return tags;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            // The first line is the empty NONE name
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                tags.ids.putIfAbsent(line, tags.names.size());
+                tags.names.add(line);
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Writes all tags to {@code path}, replacing the file only once the new one is complete.
+     */
+    public void save(File path) throws IOException {
+        File temp = new File(path.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            for (String name : names) {
+                writer.write(name);
+                writer.write('\n');
+            }
+        }
+        if (!temp.renameTo(path)) {
+            temp.delete();
+            throw new IOException("Could not replace " + path);
+        }
+    }
+
+    /**
+     * Returns an independent copy, e.g. for saving on another thread while tagging continues.
+     */
+    public SiteTags copy() {
+        SiteTags copy = new SiteTags();
+        for (int id = 1; id < names.size(); id++) {
+            copy.names.add(names.get(id));
+        }
+        copy.ids.putAll(ids);
+        return copy;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Returns the id of {@code name}, or -1 if it has not been tagged yet.
+     */
+    public int id(String name) {
+        Integer id = ids.get(normalize(name));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the id of {@code name}, assigning the next free id to names not seen before.
+     * Blank names map to {@link #NONE}.
+     */
+    public int intern(String name) {
+        String normalized = normalize(name);
+        Integer id = ids.get(normalized);
+        if (id != null) return id;
+
+        int newId = names.size();
+        names.add(normalized);
+        ids.put(normalized, newId);
+        return newId;
+    }
+
+    private static String normalize(String name) {
+        if (name == null) return "";
+        return name.replace('\n', ' ').replace('\r', ' ').trim();
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Writes records as a single-sheet Excel workbook with the same columns and totals row as the
+ * {@link CsvFormat CSV export}. The sheet XML is encoded into a reusable byte buffer and streamed
+ * into its zip entry as rows are produced, so memory use does not depend on the number of rows.
+ * Source names, units and labels are stored once in the shared strings table and referenced by
+ * index; quantities, energy and emissions are numeric cells. An exporter is not thread-safe, but
+ * may be reused for consecutive exports on the same thread.
+ *
+ * <p>As with {@link CsvExporter#setExact}, an exact exporter writes energy and emissions as whole
+ * hundredths and totals them itself.
+ */
+public final class XlsxExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    // Cell style indexes in STYLES
+    private static final int STYLE_HEADER = 1;
+    private static final int STYLE_DECIMAL = 2;
+
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>"
+            + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+            + "</Types>";
+
+    private static final String ROOT_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+
+    private static final String WORKBOOK = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+            + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets><sheet name=\"Емисии\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+            + "</workbook>";
+
+    private static final String WORKBOOK_RELS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+            + "<Relationship Id=\"rId3\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>"
+            + "</Relationships>";
+
+    // Default, bold header and "0.00" for energy and emissions; the stored values keep full precision
+    private static final String STYLES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+            + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+            + "<xf numFmtId=\"2\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>"
+            + "</styleSheet>";
+
+    private static final byte[] SHEET_START = ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<sheetData>").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SHEET_END = "</sheetData></worksheet>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ROW_START = "<row r=\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ROW_START_END = "\">".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ROW_END = "</row>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STRING_CELL_START = "<c t=\"s\"><v>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEADER_CELL_START = ("<c t=\"s\" s=\"" + STYLE_HEADER + "\"><v>")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NUMBER_CELL_START = "<c><v>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DECIMAL_CELL_START = ("<c s=\"" + STYLE_DECIMAL + "\"><v>")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CELL_END = "</v></c>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMPTY_CELL = "<c/>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ERROR_CELL = "<c t=\"e\"><v>#NUM!</v></c>".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final StringBuilder number = new StringBuilder(32);
+    private int position;
+    private boolean exact;
+    private ZipArchiveOutputStream zip;
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * Writes the workbook to {@code file}, replacing any existing content.
+     *
+     * @return {@code false} if the export was cancelled; the partial file is then deleted
+     */
+    public boolean export(File file, List<EnergySource> sources, RecordSource records,
+                          double totalEnergy, double totalEmissions,
+                          CsvExporter.ProgressListener listener, BooleanSupplier cancelled) throws IOException {
+        boolean completed = false;
+        // A file target lets the sizes be written into the local headers instead of data descriptors
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(file)) {
+            zip = out;
+            completed = write(sources, records, totalEnergy, totalEmissions, listener, cancelled);
+        } finally {
+            zip = null;
+            if (!completed) {
+                file.delete();
+            }
+        }
+        return completed;
+    }
+
+    private boolean write(List<EnergySource> sources, RecordSource records,
+                          double totalEnergy, double totalEmissions,
+                          CsvExporter.ProgressListener listener, BooleanSupplier cancelled) throws IOException {
+        // Every string in the sheet is known before the first row: labels, names and units
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        int[] columns = new int[CsvFormat.COLUMNS.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = intern(CsvFormat.COLUMNS[i], strings, stringIndex);
+        }
+        int totalsLabel = intern(CsvFormat.TOTALS_LABEL, strings, stringIndex);
+        int[] names = new int[sources.size()];
+        int[] units = new int[sources.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = intern(sources.get(i).name, strings, stringIndex);
+            units[i] = intern(sources.get(i).unit, strings, stringIndex);
+        }
+
+        writeEntry("[Content_Types].xml", CONTENT_TYPES);
+        writeEntry("_rels/.rels", ROOT_RELS);
+        writeEntry("xl/workbook.xml", WORKBOOK);
+        writeEntry("xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+        writeEntry("xl/styles.xml", STYLES);
+        writeEntry("xl/sharedStrings.xml", sharedStrings(strings));
+
+        zip.putArchiveEntry(new ZipArchiveEntry("xl/worksheets/sheet1.xml"));
+        position = 0;
+        put(SHEET_START);
+
+        startRow(1);
+        for (int column : columns) {
+            put(HEADER_CELL_START);
+            putInt(column);
+            put(CELL_END);
+        }
+        put(ROW_END);
+
+        long exactEnergy = 0;
+        long exactEmissions = 0;
+        int count = records.size();
+        for (int row = 0; row < count; row++) {
+            if (row % PROGRESS_INTERVAL == 0) {
+                if (cancelled != null && cancelled.getAsBoolean()) {
+                    // Closing the stream fails while an entry is open; the file is deleted anyway
+                    zip.closeArchiveEntry();
+                    return false;
+                }
+                if (listener != null) {
+                    listener.onProgress(row, count);
+                }
+            }
+
+            int source = records.sourceIndex(row);
+            startRow(row + 2);
+            putString(names[source]);
+            putNumber(NUMBER_CELL_START, records.quantity(row));
+            putString(units[source]);
+            if (exact) {
+                long energy = FixedPoint.hundredths(records.energy(row));
+                long emissions = FixedPoint.hundredths(records.emissions(row));
+                putHundredths(energy);
+                putHundredths(emissions);
+                exactEnergy = Math.addExact(exactEnergy, energy);
+                exactEmissions = Math.addExact(exactEmissions, emissions);
+            } else {
+                putNumber(DECIMAL_CELL_START, records.energy(row));
+                putNumber(DECIMAL_CELL_START, records.emissions(row));
+            }
+            put(ROW_END);
+        }
+
+        startRow(count + 2);
+        putString(totalsLabel);
+        put(EMPTY_CELL);
+        put(EMPTY_CELL);
+        if (exact) {
+            putHundredths(exactEnergy);
+            putHundredths(exactEmissions);
+        } else {
+            putNumber(DECIMAL_CELL_START, totalEnergy);
+            putNumber(DECIMAL_CELL_START, totalEmissions);
+        }
+        put(ROW_END);
+
+        put(SHEET_END);
+        flush();
+        zip.closeArchiveEntry();
+        zip.finish();
+
+        if (listener != null) {
+            listener.onProgress(count, count);
+        }
+        return true;
+    }
+
+    private static int intern(String value, List<String> strings, Map<String, Integer> index) {
+        Integer existing = index.get(value);
+        if (existing != null) return existing;
+        index.put(value, strings.size());
+        strings.add(value);
+        return strings.size() - 1;
+    }
+
+    private static String sharedStrings(List<String> strings) {
+        StringBuilder xml = new StringBuilder(256 + strings.size() * 32);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" uniqueCount=\"")
+                .append(strings.size()).append("\">");
+        for (String value : strings) {
+            xml.append("<si><t xml:space=\"preserve\">");
+            escape(value, xml);
+            xml.append("</t></si>");
+        }
+        return xml.append("</sst>").toString();
+    }
+
+    static void escape(String value, StringBuilder xml) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': xml.append("&amp;"); break;
+                case '<': xml.append("&lt;"); break;
+                case '>': xml.append("&gt;"); break;
+                case '"': xml.append("&quot;"); break;
+                default:
+                    // XML 1.0 has no representation for other control characters
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        xml.append(c);
+                    }
+            }
+        }
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putArchiveEntry(new ZipArchiveEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeArchiveEntry();
+    }
+
+    private void startRow(int row) throws IOException {
+        put(ROW_START);
+        putInt(row);
+        put(ROW_START_END);
+    }
+
+    private void putString(int index) throws IOException {
+        put(STRING_CELL_START);
+        putInt(index);
+        put(CELL_END);
+    }
+
+    // Same text as String.valueOf(double), which is a valid xsd:double for finite values
+    private void putNumber(byte[] cellStart, double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            put(ERROR_CELL);
+            return;
+        }
+        put(cellStart);
+        number.setLength(0);
+        number.append(value);
+        putAscii(number);
+        put(CELL_END);
+    }
+
+    private void putHundredths(long value) throws IOException {
+        put(DECIMAL_CELL_START);
+        number.setLength(0);
+        FixedPoint.append(value, number);
+        putAscii(number);
+        put(CELL_END);
+    }
+
+    private void putInt(int value) throws IOException {
+        number.setLength(0);
+        number.append(value);
+        putAscii(number);
+    }
+
+    private void putAscii(CharSequence text) throws IOException {
+        int length = text.length();
+        if (buffer.length - position < length) {
+            flush();
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (buffer.length - position < bytes.length) {
+            flush();
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void flush() throws IOException {
+        zip.write(buffer, 0, position);
+        position = 0;
+    }
+}
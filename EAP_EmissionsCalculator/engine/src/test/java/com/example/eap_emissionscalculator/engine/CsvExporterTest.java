@@ -0,0 +1,105 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CsvExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void export_matchesStringBuilderLayout() throws Exception {
+        List<EnergySource> sources = new ArrayList<>(EnergySources.defaults());
+        sources.add(new EnergySource("Смес, \"специална\"", "kg", 1.5, 0.25));
+        EmissionsEngine engine = new EmissionsEngine(sources);
+
+        RecordBatch batch = new RecordBatch();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            batch.add(random.nextInt(sources.size()), random.nextDouble() * 1000);
+        }
+        batch.add(0, 1e-7);
+        batch.add(9, 12345678.9);
+        engine.calculate(batch);
+
+        File file = folder.newFile();
+        boolean completed = new CsvExporter(256).export(file, sources, batch,
+                batch.totalEnergy(), batch.totalEmissions(), null, null);
+
+        assertTrue(completed);
+        assertArrayEquals(expected(sources, batch).getBytes(StandardCharsets.UTF_8),
+                Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void exactExport_totalsEqualSumOfExportedRows() throws Exception {
+        List<EnergySource> sources = EnergySources.defaults();
+        EmissionsEngine engine = new EmissionsEngine(sources, true);
+        RecordBatch batch = new RecordBatch();
+        Random random = new Random(9);
+        for (int i = 0; i < 5000; i++) {
+            batch.add(random.nextInt(sources.size()), random.nextInt(1_000_000) / 1000.0);
+        }
+        engine.calculate(batch);
+
+        File file = folder.newFile();
+        CsvExporter exporter = new CsvExporter(256);
+        exporter.setExact(true);
+        assertTrue(exporter.export(file, sources, batch, 0, 0, null, null));
+
+        String[] lines = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).split("\n");
+        BigDecimal energy = BigDecimal.ZERO;
+        BigDecimal emissions = BigDecimal.ZERO;
+        for (int i = 1; i < lines.length - 1; i++) {
+            // Names may contain quoted commas, so the numbers are taken from the end
+            String[] fields = lines[i].split(",");
+            energy = energy.add(new BigDecimal(fields[fields.length - 2]));
+            emissions = emissions.add(new BigDecimal(fields[fields.length - 1]));
+            assertEquals(2, new BigDecimal(fields[fields.length - 1]).scale());
+        }
+        String[] totals = lines[lines.length - 1].split(",");
+        assertEquals(energy, new BigDecimal(totals[3]));
+        assertEquals(emissions, new BigDecimal(totals[4]));
+        assertEquals(emissions.doubleValue(), batch.totalEmissions(), 0);
+    }
+
+    @Test
+    public void export_cancelledDeletesFile() throws Exception {
+        RecordBatch batch = new RecordBatch();
+        batch.add(0, 1);
+        File file = folder.newFile();
+
+        boolean completed = new CsvExporter().export(file, EnergySources.defaults(), batch,
+                0, 0, null, () -> true);
+
+        assertFalse(completed);
+        assertFalse(file.exists());
+    }
+
+    private static String expected(List<EnergySource> sources, RecordBatch batch) {
+        StringBuilder csvContent = new StringBuilder();
+        csvContent.append("Източник,Количество,Ед.,Енергия (kWh),CO₂ (kg)\n");
+        for (int i = 0; i < batch.size(); i++) {
+            EnergySource source = sources.get(batch.sourceIndex(i));
+            csvContent.append(CsvFormat.escape(source.name)).append(",")
+                    .append(batch.quantity(i)).append(",")
+                    .append(source.unit).append(",")
+                    .append(batch.energy(i)).append(",")
+                    .append(batch.emissions(i)).append("\n");
+        }
+        csvContent.append("ОБЩО,,,").append(batch.totalEnergy()).append(",").append(batch.totalEmissions());
+        return csvContent.toString();
+    }
+}
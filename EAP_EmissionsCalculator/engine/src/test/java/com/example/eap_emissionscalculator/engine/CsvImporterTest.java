@@ -0,0 +1,97 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CsvImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<EnergySource> sources = EnergySources.defaults();
+
+    @Test
+    public void read_roundTripsExportedFile() throws IOException {
+        EmissionsEngine engine = new EmissionsEngine(sources);
+        RecordBatch exported = new RecordBatch();
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            exported.add(random.nextInt(sources.size()), random.nextDouble() * 1e4);
+        }
+        exported.add(0, 1e-7);
+        exported.add(1, 1e9);
+        engine.calculate(exported);
+        File file = folder.newFile();
+        new CsvExporter().export(file, sources, exported,
+                exported.totalEnergy(), exported.totalEmissions(), null, null);
+
+        List<RecordBatch> batches = new ArrayList<>();
+        CsvImporter.Result result;
+        try (InputStream in = new FileInputStream(file)) {
+            result = new CsvImporter(sources, 0, 1000).read(in, batches::add, null);
+        }
+
+        assertEquals(exported.size(), result.imported);
+        assertEquals(0, result.rejected);
+        assertEquals(6, batches.size());
+        int row = 0;
+        for (RecordBatch batch : batches) {
+            for (int i = 0; i < batch.size(); i++, row++) {
+                assertEquals(exported.sourceIndex(row), batch.sourceIndex(i));
+                assertEquals(exported.quantity(row), batch.quantity(i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void read_acceptsSourceQuantityLayoutAndCountsRejects() throws IOException {
+        String csv = "\uFEFFНафта,12.5\r\n"
+                + "\"Дървени пелети, брикети\",\"3,25\"\n"
+                + "\n"
+                + "Непознат,4\n"
+                + "Електричество,abc\n"
+                + "Електричество,-1\n"
+                + "Електричество\n"
+                + "  Електричество , 100 ";
+
+        List<RecordBatch> batches = new ArrayList<>();
+        CsvImporter.Result result = new CsvImporter(sources)
+                .read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), batches::add, null);
+
+        assertEquals(3, result.imported);
+        assertEquals(4, result.rejected);
+        RecordBatch batch = batches.get(0);
+        assertEquals(1, batch.sourceIndex(0));
+        assertEquals(12.5, batch.quantity(0), 0);
+        assertEquals(8, batch.sourceIndex(1));
+        assertEquals(3.25, batch.quantity(1), 0);
+        assertEquals(11, batch.sourceIndex(2));
+        assertEquals(100, batch.quantity(2), 0);
+    }
+
+    @Test
+    public void read_rejectsZeroQuantity() throws IOException {
+        String csv = "Нафта,0\nНафта,0.000\nНафта,-0\nНафта,1\n";
+
+        List<RecordBatch> batches = new ArrayList<>();
+        CsvImporter.Result result = new CsvImporter(sources)
+                .read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), batches::add, null);
+
+        assertEquals(1, result.imported);
+        assertEquals(3, result.rejected);
+        assertEquals(1, batches.get(0).quantity(0), 0);
+    }
+}
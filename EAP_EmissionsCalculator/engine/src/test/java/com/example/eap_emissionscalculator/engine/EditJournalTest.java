@@ -0,0 +1,94 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EditJournalTest {
+
+    @Test
+    public void undoAndRedo_walkEntriesInOrder() {
+        EditJournal journal = new EditJournal(null);
+        journal.recordAdd(7, 3, 1, 2, 1000L, 12.5);
+        journal.recordEdit(7, 12.5, 0);
+
+        int edit = journal.undo();
+        assertEquals(EditJournal.EDIT, journal.kind(edit));
+        assertEquals(7, journal.recordId(edit));
+        assertEquals(12.5, journal.oldQuantity(edit), 0);
+        assertEquals(0, journal.newQuantity(edit), 0);
+
+        int add = journal.undo();
+        assertEquals(EditJournal.ADD, journal.kind(add));
+        assertEquals(3, journal.sourceIndex(add));
+        assertEquals(1, journal.factorSet(add));
+        assertEquals(2, journal.site(add));
+        assertEquals(1000L, journal.createdAt(add));
+        assertEquals(12.5, journal.newQuantity(add), 0);
+        assertEquals(-1, journal.undo());
+        assertFalse(journal.canUndo());
+
+        assertEquals(add, journal.redo());
+        assertEquals(edit, journal.redo());
+        assertEquals(-1, journal.redo());
+        assertEquals(2, journal.undoCount());
+    }
+
+    @Test
+    public void newEntry_dropsRedoAndReleasesItsSnapshots() {
+        List<Object> released = new ArrayList<>();
+        EditJournal journal = new EditJournal(released::add);
+        Object snapshot = new Object();
+        journal.recordAdd(0, 0, 0, 0, 0, 1);
+        journal.recordReset(snapshot);
+
+        int reset = journal.undo();
+        assertSame(snapshot, journal.snapshot(reset));
+        assertTrue(journal.canRedo());
+
+        journal.recordEdit(0, 1, 2);
+        assertFalse(journal.canRedo());
+        assertEquals(1, released.size());
+        assertSame(snapshot, released.get(0));
+        assertEquals(2, journal.undoCount());
+    }
+
+    @Test
+    public void fullRing_forgetsOldestEntries() {
+        List<Object> released = new ArrayList<>();
+        EditJournal journal = new EditJournal(4, released::add);
+        Object snapshot = new Object();
+        journal.recordReset(snapshot);
+        for (int i = 0; i < 10; i++) {
+            journal.recordEdit(i, i, i + 1);
+        }
+
+        assertEquals(4, journal.undoCount());
+        assertSame(snapshot, released.get(0));
+        for (int i = 9; i >= 6; i--) {
+            assertEquals(i, journal.recordId(journal.undo()));
+        }
+        assertEquals(-1, journal.undo());
+        for (int i = 6; i <= 9; i++) {
+            assertEquals(i, journal.recordId(journal.redo()));
+        }
+    }
+
+    @Test
+    public void clear_releasesEverySnapshot() {
+        List<Object> released = new ArrayList<>();
+        EditJournal journal = new EditJournal(released::add);
+        journal.recordReset("a");
+        journal.recordReset("b");
+        journal.undo();
+
+        journal.clear();
+
+        assertEquals(2, released.size());
+        assertFalse(journal.canUndo());
+        assertFalse(journal.canRedo());
+    }
+}
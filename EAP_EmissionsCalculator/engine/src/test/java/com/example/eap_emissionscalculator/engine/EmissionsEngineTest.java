@@ -0,0 +1,64 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmissionsEngineTest {
+
+    private final EmissionsEngine engine = new EmissionsEngine(EnergySources.defaults());
+
+    @Test
+    public void calculate_fillsRowsAndTotals() {
+        RecordBatch batch = new RecordBatch(2);
+        batch.add(0, 10);
+        batch.add(1, 2.5);
+        batch.add(11, 100);
+
+        engine.calculate(batch);
+
+        assertEquals(93.0, batch.energy(0), 1e-9);
+        assertEquals(19.0, batch.emissions(0), 1e-9);
+        assertEquals(25.0, batch.energy(1), 1e-9);
+        assertEquals(6.75, batch.emissions(1), 1e-9);
+        assertEquals(100.0, batch.energy(2), 1e-9);
+        assertEquals(80.0, batch.emissions(2), 1e-9);
+        assertEquals(218.0, batch.totalEnergy(), 1e-9);
+        assertEquals(105.75, batch.totalEmissions(), 1e-9);
+    }
+
+    @Test
+    public void calculate_matchesSingleRowFactors() {
+        RecordBatch batch = new RecordBatch();
+        for (int i = 0; i < engine.sourceCount(); i++) {
+            batch.add(i, 3.7);
+        }
+
+        engine.calculate(batch);
+
+        for (int i = 0; i < engine.sourceCount(); i++) {
+            assertEquals(engine.energy(i, 3.7), batch.energy(i), 0);
+            assertEquals(engine.emissions(i, 3.7), batch.emissions(i), 0);
+        }
+    }
+
+    @Test
+    public void clear_allowsReuse() {
+        RecordBatch batch = new RecordBatch();
+        batch.add(0, 1);
+        engine.calculate(batch);
+        batch.clear();
+        batch.add(11, 5);
+        engine.calculate(batch);
+
+        assertEquals(1, batch.size());
+        assertEquals(5.0, batch.totalEnergy(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void calculate_rejectsUnknownSource() {
+        RecordBatch batch = new RecordBatch();
+        batch.add(engine.sourceCount(), 1);
+        engine.calculate(batch);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExportArchiveTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void addCsv_compressesAndIndexesExport() throws Exception {
+        List<EnergySource> sources = EnergySources.defaults();
+        RecordBatch batch = batch(sources, 5000);
+        File directory = new File(folder.getRoot(), "Emissions");
+
+        ExportArchive archive = ExportArchive.open(directory);
+        ExportArchive.Entry entry = archive.addCsv("session", 1000, new CsvExporter(), sources, batch,
+                batch.totalEnergy(), batch.totalEmissions(), null, null);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new CsvExporter().write(Channels.newChannel(expected), sources, batch,
+                batch.totalEnergy(), batch.totalEmissions(), null, null);
+        assertTrue(entry.bytes < expected.size() / 2);
+        try (InputStream in = archive.open(entry)) {
+            assertArrayEquals(expected.toByteArray(), in.readAllBytes());
+        }
+
+        // Listed again from the index alone
+        List<ExportArchive.Entry> entries = ExportArchive.open(directory).entries();
+        assertEquals(1, entries.size());
+        assertEquals("session" + ExportArchive.CSV_SUFFIX, entries.get(0).fileName);
+        assertEquals(1000, entries.get(0).createdAt);
+        assertEquals(5000, entries.get(0).rows);
+        assertEquals(batch.totalEmissions(), entries.get(0).totalEmissions, 0);
+        assertEquals(entry.bytes, entries.get(0).bytes);
+    }
+
+    @Test
+    public void addCsv_cancelledLeavesNoEntry() throws Exception {
+        List<EnergySource> sources = EnergySources.defaults();
+        ExportArchive archive = ExportArchive.open(folder.getRoot());
+
+        assertNull(archive.addCsv("session", 0, new CsvExporter(), sources, batch(sources, 10),
+                0, 0, null, () -> true));
+        assertTrue(archive.entries().isEmpty());
+        assertFalse(new File(folder.getRoot(), "session" + ExportArchive.CSV_SUFFIX).exists());
+    }
+
+    @Test
+    public void open_listsUnindexedFilesAndDropsMissingOnes() throws Exception {
+        List<EnergySource> sources = EnergySources.defaults();
+        ExportArchive archive = ExportArchive.open(folder.getRoot());
+        ExportArchive.Entry gone = archive.addCsv("gone", 0, new CsvExporter(), sources,
+                batch(sources, 10), 0, 0, null, null);
+        assertTrue(archive.file(gone).delete());
+        File legacy = new File(folder.getRoot(), "CO2_Emissions_20240101_120000.csv");
+        Files.write(legacy.toPath(), "Нафта,1\n".getBytes(StandardCharsets.UTF_8));
+
+        List<ExportArchive.Entry> entries = ExportArchive.open(folder.getRoot()).entries();
+        assertEquals(1, entries.size());
+        assertEquals(legacy.getName(), entries.get(0).fileName);
+        assertEquals(-1, entries.get(0).rows);
+        assertTrue(entries.get(0).isCsv());
+    }
+
+    @Test
+    public void retain_deletesOldestBeyondAgeAndSize() throws Exception {
+        List<EnergySource> sources = EnergySources.defaults();
+        ExportArchive archive = ExportArchive.open(folder.getRoot());
+        long now = 100 * DAY;
+        for (int i = 0; i < 6; i++) {
+            archive.addCsv("session" + i, now - (50 - i * 10) * DAY, new CsvExporter(), sources,
+                    batch(sources, 200), 0, 0, null, null);
+        }
+        long size = archive.entries().get(5).bytes;
+
+        // Older than 25 days: sessions 0 to 2
+        assertEquals(3, archive.retain(Long.MAX_VALUE, 25 * DAY, now));
+        // Then the two oldest of the rest, to fit one export
+        assertEquals(2, archive.retain(size, Long.MAX_VALUE, now));
+        // The newest export is kept even when it alone is too large
+        assertEquals(0, archive.retain(0, 0, now));
+
+        List<ExportArchive.Entry> entries = ExportArchive.open(folder.getRoot()).entries();
+        assertEquals(1, entries.size());
+        assertEquals("session5" + ExportArchive.CSV_SUFFIX, entries.get(0).fileName);
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void retain_keepsFilesItDidNotWrite() throws Exception {
+        List<EnergySource> sources = EnergySources.defaults();
+        File foreign = new File(folder.getRoot(), "report.csv");
+        Files.write(foreign.toPath(), new byte[100_000]);
+        assertTrue(foreign.setLastModified(0));
+        ExportArchive archive = ExportArchive.open(folder.getRoot());
+        long now = 100 * DAY;
+        for (int i = 0; i < 2; i++) {
+            archive.addCsv("session" + i, now - (20 - i * 10) * DAY, new CsvExporter(), sources,
+                    batch(sources, 200), 0, 0, null, null);
+        }
+
+        // The foreign file is older and larger than both exports, but only session0 goes
+        assertEquals(1, archive.retain(0, 0, now));
+        assertEquals(0, ExportArchive.open(folder.getRoot()).retain(0, 0, now));
+
+        assertTrue(foreign.exists());
+        List<ExportArchive.Entry> entries = ExportArchive.open(folder.getRoot()).entries();
+        assertEquals(2, entries.size());
+        assertEquals(foreign.getName(), entries.get(0).fileName);
+        assertFalse(entries.get(0).isWrittenByArchive());
+        assertEquals("session1" + ExportArchive.CSV_SUFFIX, entries.get(1).fileName);
+    }
+
+    private static RecordBatch batch(List<EnergySource> sources, int rows) {
+        EmissionsEngine engine = new EmissionsEngine(sources);
+        RecordBatch batch = new RecordBatch(rows);
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(random.nextInt(sources.size()), random.nextInt(100_000) / 100.0);
+        }
+        engine.calculate(batch);
+        return batch;
+    }
+}
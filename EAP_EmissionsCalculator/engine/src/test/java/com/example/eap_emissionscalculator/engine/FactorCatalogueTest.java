@@ -0,0 +1,136 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class FactorCatalogueTest {
+
+    private static final String TWO_SETS = "{\"format\": 1, \"version\": 3, \"default\": \"new\","
+            + "\"sources\": [{\"id\": \"gas\", \"name\": \"Газ\", \"unit\": \"м³\"},"
+            + "              {\"id\": \"power\", \"name\": \"Ток\", \"unit\": \"kWh\"}],"
+            + "\"factorSets\": ["
+            + "  {\"id\": \"old\", \"region\": \"BG\", \"year\": 2020,"
+            + "   \"factors\": {\"gas\": [10, 2], \"power\": [1, 0.9]}},"
+            + "  {\"id\": \"new\", \"region\": \"BG\", \"year\": 2024,"
+            + "   \"factors\": {\"gas\": [10, 1.5], \"power\": [1, 0.5]}}]}";
+
+    @Test
+    public void bundled_keepsOriginalFactorTable() {
+        FactorCatalogue catalogue = FactorCatalogue.bundled();
+        EmissionsEngine engine = catalogue.engine(catalogue.defaultFactorSet());
+
+        assertEquals(13, catalogue.sourceCount());
+        assertEquals(0, catalogue.defaultFactorSet());
+        assertEquals("Природен газ", engine.source(0).name);
+        assertEquals(9.3, engine.source(0).energyFactor, 0);
+        assertEquals(83.4, engine.source(10).emissionFactor, 0);
+        assertEquals(11, catalogue.sourceIndex("electricity"));
+        assertSame(engine, catalogue.engine(0));
+    }
+
+    @Test
+    public void calculate_usesEachRowsPinnedFactorSet() throws IOException {
+        FactorCatalogue catalogue = parse(TWO_SETS);
+        assertEquals(3, catalogue.version());
+        assertEquals(1, catalogue.defaultFactorSet());
+        assertEquals(2020, catalogue.factorSet(catalogue.factorSetIndex("old")).year);
+
+        RecordBatch batch = new RecordBatch();
+        batch.add(0, 0, 10);
+        batch.add(0, 1, 10);
+        batch.add(catalogue.sourceIndex("power"), 0, 100);
+        catalogue.calculate(batch);
+
+        assertEquals(20.0, batch.emissions(0), 0);
+        assertEquals(15.0, batch.emissions(1), 0);
+        assertEquals(90.0, batch.emissions(2), 1e-9);
+        assertEquals(125.0, batch.totalEmissions(), 1e-9);
+    }
+
+    @Test
+    public void extendsCatalogue_acceptsOnlyAppendedEntries() throws IOException {
+        FactorCatalogue base = parse(TWO_SETS);
+        FactorCatalogue appended = parse(TWO_SETS
+                .replace("{\"id\": \"power\", \"name\": \"Ток\", \"unit\": \"kWh\"}",
+                        "{\"id\": \"power\", \"name\": \"Електричество\", \"unit\": \"kWh\"},"
+                                + "{\"id\": \"wood\", \"name\": \"Дърва\", \"unit\": \"kg\"}")
+                .replace("\"power\": [1, 0.9]", "\"power\": [1, 0.9], \"wood\": [4, 0]")
+                .replace("\"power\": [1, 0.5]", "\"power\": [1, 0.5], \"wood\": [4, 0]"));
+        FactorCatalogue reordered = parse(TWO_SETS
+                .replace("{\"id\": \"gas\", \"name\": \"Газ\", \"unit\": \"м³\"},", "")
+                .replace("{\"id\": \"power\", \"name\": \"Ток\", \"unit\": \"kWh\"}",
+                        "{\"id\": \"power\", \"name\": \"Ток\", \"unit\": \"kWh\"},"
+                                + "{\"id\": \"gas\", \"name\": \"Газ\", \"unit\": \"м³\"}"));
+        FactorCatalogue newUnit = parse(TWO_SETS.replace("\"м³\"", "\"kWh\""));
+        FactorCatalogue droppedSet = parse(TWO_SETS.replace("\"default\": \"new\",", "")
+                .replace("{\"id\": \"old\"", "{\"id\": \"older\""));
+
+        assertEquals(1, reordered.sourceIndex("gas"));
+        assertTrue(appended.extendsCatalogue(base));
+        assertTrue(base.extendsCatalogue(base));
+        assertFalse(reordered.extendsCatalogue(base));
+        assertFalse(newUnit.extendsCatalogue(base));
+        assertFalse(droppedSet.extendsCatalogue(base));
+        assertFalse(base.extendsCatalogue(appended));
+    }
+
+    @Test
+    public void exactView_sharesFactorsAndRoundsToHundredths() throws IOException {
+        FactorCatalogue catalogue = parse(TWO_SETS);
+        FactorCatalogue exact = catalogue.withExactArithmetic(true);
+        assertSame(exact, exact.withExactArithmetic(true));
+        assertTrue(exact.engine(1).isExact());
+        assertFalse(catalogue.engine(1).isExact());
+
+        RecordBatch batch = new RecordBatch();
+        batch.add(1, 0, 0.333);
+        batch.add(1, 0, 0.333);
+        batch.add(1, 0, 0.333);
+        exact.calculate(batch);
+
+        // 0.333 * 0.9 = 0.2997 rounds to 0.30 per row
+        assertEquals(0.30, batch.emissions(0), 0);
+        assertEquals(0.90, batch.totalEmissions(), 0);
+        assertEquals(0.30, exact.engine(0).emissions(1, 0.333), 0);
+    }
+
+    @Test
+    public void calculateKeepingOverflow_keepsOverflowingRowsAtZero() throws IOException {
+        FactorCatalogue exact = parse(TWO_SETS).withExactArithmetic(true);
+        RecordBatch batch = new RecordBatch();
+        batch.add(1, 0, 2);
+        batch.add(1, 0, 1e17);
+        batch.add(1, 0, 3);
+
+        assertEquals(1, exact.calculateKeepingOverflow(batch));
+        assertEquals(3, batch.size());
+        assertEquals(1.8, batch.emissions(0), 0);
+        assertEquals(0, batch.emissions(1), 0);
+        assertEquals(2.7, batch.emissions(2), 0);
+        assertEquals(4.5, batch.totalEmissions(), 0);
+        try {
+            exact.calculate(batch);
+            fail();
+        } catch (ArithmeticException expected) {
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsSetWithMissingFactors() throws IOException {
+        parse(TWO_SETS.replace("\"power\": [1, 0.5]", "\"other\": [1, 0.5]"));
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsFactorOutOfFixedPointRange() throws IOException {
+        parse(TWO_SETS.replace("\"power\": [1, 0.5]", "\"power\": [1, 1e15]"));
+    }
+
+    private static FactorCatalogue parse(String json) throws IOException {
+        return FactorCatalogue.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FixedPointFormatterTest {
+
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.forLanguageTag("bg-BG"), Locale.GERMANY, Locale.forLanguageTag("ar-EG")
+    };
+
+    private static final double[] EDGE_CASES = {
+            0, -0.0, 0.005, 0.015, 0.125, 1.005, 2.675, 0.994999, 0.995, 9.995, 99.5,
+            123456.785, FixedPointFormatter.FAST_PATH_LIMIT - 0.005, FixedPointFormatter.FAST_PATH_LIMIT,
+            1e20, Double.MAX_VALUE, Double.MIN_VALUE, -1.5, -0.001,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    public void edgeCases_matchStringFormat() {
+        for (Locale locale : LOCALES) {
+            FixedPointFormatter formatter = new FixedPointFormatter(locale);
+            for (double value : EDGE_CASES) {
+                assertEquals(locale + " " + value, expected(locale, value), formatter.format(value));
+            }
+        }
+    }
+
+    @Test
+    public void randomValues_matchStringFormat() {
+        Random random = new Random(3);
+        for (Locale locale : LOCALES) {
+            FixedPointFormatter formatter = new FixedPointFormatter(locale);
+            char[] buffer = new char[FixedPointFormatter.BUFFER_SIZE];
+            for (int i = 0; i < 20_000; i++) {
+                double value = i % 2 == 0
+                        ? random.nextDouble() * Math.pow(10, random.nextInt(10))
+                        : random.nextInt(1_000_000) / 1000.0;
+                String expected = expected(locale, value);
+
+                int length = formatter.format(value, buffer);
+                assertEquals(expected, new String(buffer, 0, length));
+            }
+        }
+    }
+
+    @Test
+    public void stringBuilder_appendsAfterExistingContent() {
+        FixedPointFormatter formatter = new FixedPointFormatter(Locale.forLanguageTag("bg-BG"));
+        StringBuilder out = new StringBuilder("ОБЩО: ");
+
+        formatter.format(1234.5, out);
+
+        assertEquals("ОБЩО: 1234,50", out.toString());
+    }
+
+    @Test
+    public void bufferTooSmall_returnsMinusOne() {
+        FixedPointFormatter formatter = new FixedPointFormatter(Locale.US);
+
+        assertEquals(-1, formatter.format(12345.0, new char[4]));
+        assertEquals(-1, formatter.format(1e20, new char[FixedPointFormatter.BUFFER_SIZE]));
+    }
+
+    private static String expected(Locale locale, double value) {
+        return String.format(locale, "%.2f", value);
+    }
+}
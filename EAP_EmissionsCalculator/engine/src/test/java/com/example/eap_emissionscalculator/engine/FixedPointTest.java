@@ -0,0 +1,64 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FixedPointTest {
+
+    @Test
+    public void scale_roundsDecimalTextHalfAwayFromZero() {
+        assertEquals(2001, FixedPoint.quantity(2.0005));
+        assertEquals(100, FixedPoint.quantity(0.1));
+        assertEquals(-2001, FixedPoint.quantity(-2.0005));
+        assertEquals(26750, FixedPoint.factor(2.675));
+        assertEquals(268, FixedPoint.hundredths(2.675));
+        assertEquals(0, FixedPoint.quantity(0.0004));
+    }
+
+    @Test
+    public void multiply_matchesBigDecimal() {
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            long quantity = random.nextInt(100_000_000);
+            long factor = random.nextInt(1_000_000);
+            long expected = BigDecimal.valueOf(quantity).scaleByPowerOfTen(-3)
+                    .multiply(BigDecimal.valueOf(factor).scaleByPowerOfTen(-4))
+                    .setScale(2, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+            assertEquals(expected, FixedPoint.multiply(quantity, factor));
+        }
+        assertEquals(-1, FixedPoint.multiply(-5, 10_000));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void multiply_throwsOnOverflow() {
+        FixedPoint.multiply(Long.MAX_VALUE / 1000, FixedPoint.factor(9.3));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void scale_rejectsNaN() {
+        FixedPoint.quantity(Double.NaN);
+    }
+
+    @Test
+    public void hundredths_roundTripThroughDouble() {
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            long hundredths = random.nextLong() % 1_000_000_000_000L;
+            assertEquals(hundredths, FixedPoint.hundredths(FixedPoint.toDouble(hundredths)));
+        }
+    }
+
+    @Test
+    public void append_writesTwoDecimals() {
+        assertEquals("12.05", FixedPoint.append(1205, new StringBuilder()).toString());
+        assertEquals("-0.05", FixedPoint.append(-5, new StringBuilder()).toString());
+        assertEquals("-3.10", FixedPoint.append(-310, new StringBuilder()).toString());
+        assertEquals("0.00", FixedPoint.append(0, new StringBuilder()).toString());
+    }
+}
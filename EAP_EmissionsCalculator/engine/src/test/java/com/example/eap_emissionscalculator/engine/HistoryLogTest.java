@@ -0,0 +1,141 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class HistoryLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendAndUpdate_surviveReopen() throws IOException {
+        File path = new File(folder.getRoot(), "history.log");
+        try (HistoryLog log = HistoryLog.open(path)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(i % 13, 0, i % 4, 1000L + i, i * 1.5);
+            }
+            log.updateQuantity(42, 7.25);
+        }
+
+        try (HistoryLog log = HistoryLog.open(path)) {
+            assertEquals(100, log.size());
+            RecordBatch batch = new RecordBatch();
+            int read = 0;
+            while (read < log.size()) {
+                read += log.read(read, 32, batch);
+            }
+
+            assertEquals(100, batch.size());
+            assertEquals(41 % 13, batch.sourceIndex(41));
+            assertEquals(61.5, batch.quantity(41), 0);
+            assertEquals(41 % 4, batch.site(41));
+            assertEquals(1041L, batch.createdAt(41));
+            assertEquals(7.25, batch.quantity(42), 0);
+        }
+    }
+
+    @Test
+    public void appendAll_writesRowsInOrder() throws IOException {
+        RecordBatch batch = new RecordBatch();
+        batch.add(3, 1.5);
+        batch.add(4, 2.5);
+        try (HistoryLog log = HistoryLog.open(new File(folder.getRoot(), "history.log"))) {
+            log.append(0, 0, 0, 0, 9);
+            log.appendAll(batch, 0);
+
+            RecordBatch read = new RecordBatch();
+            assertEquals(3, log.read(0, 10, read));
+            assertEquals(4, read.sourceIndex(2));
+            assertEquals(2.5, read.quantity(2), 0);
+        }
+    }
+
+    @Test
+    public void clear_truncatesToHeader() throws IOException {
+        File path = new File(folder.getRoot(), "history.log");
+        try (HistoryLog log = HistoryLog.open(path)) {
+            log.append(1, 0, 0, 0, 2);
+            log.clear();
+            log.append(2, 0, 0, 0, 3);
+        }
+
+        try (HistoryLog log = HistoryLog.open(path)) {
+            RecordBatch batch = new RecordBatch();
+            assertEquals(1, log.read(0, 10, batch));
+            assertEquals(2, batch.sourceIndex(0));
+        }
+        assertEquals(HistoryLog.HEADER_SIZE + HistoryLog.SLOT_SIZE, path.length());
+    }
+
+    @Test
+    public void truncate_dropsTrailingSlots() throws IOException {
+        File path = new File(folder.getRoot(), "history.log");
+        try (HistoryLog log = HistoryLog.open(path)) {
+            log.append(1, 0, 0, 0, 2);
+            log.append(2, 0, 0, 0, 3);
+            log.append(3, 0, 0, 0, 4);
+            log.truncate(1);
+            log.append(4, 0, 0, 0, 5);
+        }
+
+        try (HistoryLog log = HistoryLog.open(path)) {
+            RecordBatch batch = new RecordBatch();
+            assertEquals(2, log.read(0, 10, batch));
+            assertEquals(1, batch.sourceIndex(0));
+            assertEquals(4, batch.sourceIndex(1));
+            assertEquals(5, batch.quantity(1), 0);
+        }
+    }
+
+    @Test
+    public void setFactorSet_rewritesOnlyFactorSets() throws IOException {
+        File path = new File(folder.getRoot(), "history.log");
+        try (HistoryLog log = HistoryLog.open(path)) {
+            for (int i = 0; i < 5000; i++) {
+                log.append(i % 13, 0, 7, 1000L + i, i);
+            }
+            log.setFactorSet(2);
+        }
+
+        try (HistoryLog log = HistoryLog.open(path)) {
+            RecordBatch batch = new RecordBatch();
+            log.read(0, log.size(), batch);
+            assertEquals(5000, batch.size());
+            assertEquals(2, batch.factorSet(4999));
+            assertEquals(4999 % 13, batch.sourceIndex(4999));
+            assertEquals(7, batch.site(4999));
+            assertEquals(4999.0, batch.quantity(4999), 0);
+        }
+    }
+
+    @Test
+    public void tornSlot_isDropped() throws IOException {
+        File path = new File(folder.getRoot(), "history.log");
+        try (HistoryLog log = HistoryLog.open(path)) {
+            log.append(1, 0, 0, 0, 2);
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(path, "rw")) {
+            raw.setLength(raw.length() + 5);
+        }
+
+        try (HistoryLog log = HistoryLog.open(path)) {
+            assertEquals(1, log.size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsForeignFile() throws IOException {
+        File path = folder.newFile();
+        Files.write(path.toPath(), "Източник,Количество\n".getBytes("UTF-8"));
+        HistoryLog.open(path);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IoSchedulerTest {
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private final List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void submit_coalescesRepeatedRequests() throws Exception {
+        IoScheduler scheduler = new IoScheduler(8, this::post, failures::add);
+        CountDownLatch release = block(scheduler);
+        AtomicInteger runs = new AtomicInteger();
+        List<Boolean> finished = new ArrayList<>();
+
+        IoScheduler.Handle first = scheduler.submit("export", handle -> {
+            runs.incrementAndGet();
+            return true;
+        }, (completed, error) -> finished.add(completed));
+        IoScheduler.Handle second = scheduler.submit("export", handle -> {
+            runs.incrementAndGet();
+            return true;
+        }, (completed, error) -> finished.add(completed));
+
+        assertSame(first, second);
+        assertTrue(scheduler.isActive("export"));
+        release.countDown();
+        drain(scheduler);
+
+        assertEquals(1, runs.get());
+        assertEquals(List.of(true), finished);
+        assertFalse(scheduler.isActive("export"));
+    }
+
+    @Test
+    public void submit_refusesJobsWhenQueueIsFull() throws Exception {
+        IoScheduler scheduler = new IoScheduler(2, this::post, failures::add);
+        CountDownLatch release = block(scheduler);
+        scheduler.execute(() -> { });
+        scheduler.submit("a", handle -> true, (completed, error) -> { });
+        try {
+            scheduler.submit("b", handle -> true, (completed, error) -> { });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // Writes are still accepted
+            scheduler.execute(() -> { });
+        }
+        assertEquals(3, scheduler.waiting());
+        release.countDown();
+        drain(scheduler);
+        assertEquals(0, scheduler.waiting());
+    }
+
+    @Test
+    public void cancelJobs_skipsQueuedJobsButNotWrites() throws Exception {
+        IoScheduler scheduler = new IoScheduler(8, this::post, failures::add);
+        CountDownLatch release = block(scheduler);
+        AtomicInteger runs = new AtomicInteger();
+        List<Boolean> finished = new ArrayList<>();
+        scheduler.submit("export", handle -> {
+            runs.incrementAndGet();
+            return true;
+        }, (completed, error) -> finished.add(completed));
+        scheduler.execute(runs::incrementAndGet);
+
+        scheduler.cancelJobs();
+        assertFalse(scheduler.isActive("export"));
+        release.countDown();
+        drain(scheduler);
+
+        assertEquals(1, runs.get());
+        assertEquals(List.of(false), finished);
+    }
+
+    @Test
+    public void progress_deliversOnlyLatestPendingUpdate() throws Exception {
+        IoScheduler scheduler = new IoScheduler(8, this::post, failures::add);
+        List<Integer> progress = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+        scheduler.submit("export", handle -> {
+            handle.progress(1, 10);
+            handle.progress(5, 10);
+            handle.progress(9, 10);
+            throw new IOException("disk full");
+        }, new IoScheduler.Callback() {
+            @Override
+            public void onProgress(int done, int total) {
+                progress.add(done);
+                assertEquals(10, total);
+            }
+
+            @Override
+            public void onFinished(boolean completed, Exception error) {
+                assertFalse(completed);
+                errors.add(error);
+            }
+        });
+        drain(scheduler);
+
+        assertEquals(List.of(9), progress);
+        assertEquals("disk full", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void failingTasks_doNotStopLaterTasks() throws Exception {
+        IoScheduler scheduler = new IoScheduler(8, this::post, failures::add);
+        List<Exception> errors = new ArrayList<>();
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.execute(() -> {
+            throw new IndexOutOfBoundsException("row 7");
+        });
+        scheduler.submit("export", handle -> {
+            throw new IllegalStateException("exporter bug");
+        }, (completed, error) -> {
+            assertFalse(completed);
+            errors.add(error);
+        });
+        scheduler.execute(runs::incrementAndGet);
+        drain(scheduler);
+
+        assertEquals(1, runs.get());
+        assertEquals("row 7", failures.get(0).getMessage());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+        assertFalse(scheduler.isActive("export"));
+        assertEquals(0, scheduler.waiting());
+    }
+
+    private synchronized void post(Runnable callback) {
+        callbacks.add(callback);
+    }
+
+    /**
+     * Occupies the worker until the returned latch is released.
+     */
+    private static CountDownLatch block(IoScheduler scheduler) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    /**
+     * Waits for everything queued so far, then runs the callbacks as the main thread would.
+     */
+    private void drain(IoScheduler scheduler) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        List<Runnable> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : pending) {
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueContiguously() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            long low = LatencyHistogram.lowestValue(bucket);
+            long high = LatencyHistogram.highestValue(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(low));
+            assertEquals(bucket, LatencyHistogram.bucket(high));
+            if (bucket + 1 < LatencyHistogram.BUCKET_COUNT) {
+                assertEquals(high + 1, LatencyHistogram.lowestValue(bucket + 1));
+            }
+            assertTrue(high - low <= high / 32);
+        }
+    }
+
+    @Test
+    public void percentiles_matchSortedValuesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(5);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal like latencies from microseconds to tens of milliseconds
+            values[i] = (long) Math.exp(7 + random.nextGaussian() * 2);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.valueAtPercentile(percentile);
+            assertTrue(percentile + ": " + estimate + " vs " + exact,
+                    estimate >= exact && estimate <= exact + exact / 32);
+        }
+        assertEquals(values[values.length - 1], histogram.valueAtPercentile(100));
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(values.length, histogram.count());
+    }
+
+    @Test
+    public void reset_clearsRecordings() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(-5);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(50));
+
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.valueAtPercentile(99));
+        assertEquals(0, histogram.mean(), 0);
+    }
+}
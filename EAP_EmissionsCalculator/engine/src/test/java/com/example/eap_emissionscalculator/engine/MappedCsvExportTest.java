@@ -0,0 +1,90 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedCsvExportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void open_readsRowsAndTotalsOfExport() throws Exception {
+        List<EnergySource> sources = new ArrayList<>(EnergySources.defaults());
+        sources.add(new EnergySource("Смес, \"специална\"\nвтори ред", "kg", 1.5, 0.25));
+        EmissionsEngine engine = new EmissionsEngine(sources);
+        RecordBatch batch = new RecordBatch();
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            batch.add(random.nextInt(sources.size()), random.nextDouble() * 1000);
+        }
+        engine.calculate(batch);
+
+        File file = folder.newFile();
+        assertTrue(new CsvExporter(256).export(file, sources, batch,
+                batch.totalEnergy(), batch.totalEmissions(), null, null));
+        MappedCsvExport export = MappedCsvExport.open(file);
+
+        assertEquals(batch.size(), export.size());
+        assertTrue(export.hasTotals());
+        assertEquals(batch.totalEnergy(), export.totalEnergy(), 0);
+        assertEquals(batch.totalEmissions(), export.totalEmissions(), 0);
+
+        // Forwards, backwards and jumping across checkpoints
+        MappedCsvExport.Row row = new MappedCsvExport.Row();
+        int[] order = new int[batch.size() * 2];
+        for (int i = 0; i < batch.size(); i++) {
+            order[i] = i;
+            order[batch.size() + i] = random.nextInt(batch.size());
+        }
+        for (int i : order) {
+            export.read(i, row);
+            EnergySource source = sources.get(batch.sourceIndex(i));
+            assertEquals(source.name, row.source);
+            assertEquals(source.unit, row.unit);
+            assertEquals(batch.quantity(i), row.quantity, 0);
+            assertEquals(batch.energy(i), row.energy, 0);
+            assertEquals(batch.emissions(i), row.emissions, 0);
+        }
+    }
+
+    @Test
+    public void wrap_withoutTotalsOrHeader() {
+        MappedCsvExport export = MappedCsvExport.wrap(
+                "Ток,1.5,kWh,1.5,0.7\r\n\r\n\"a,b\",2,kg,3,4\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, export.size());
+        assertFalse(export.hasTotals());
+        assertTrue(Double.isNaN(export.totalEmissions()));
+        MappedCsvExport.Row row = export.read(1, new MappedCsvExport.Row());
+        assertEquals("a,b", row.source);
+        assertEquals(4, row.emissions, 0);
+        assertEquals("Ток", export.read(0, row).source);
+        assertEquals(0.7, row.emissions, 0);
+    }
+
+    @Test
+    public void wrap_headerAndTotalsOnly() {
+        MappedCsvExport export = MappedCsvExport.wrap(
+                (CsvFormat.HEADER + CsvFormat.TOTALS_PREFIX + "0.0,0.0").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, export.size());
+        assertTrue(export.hasTotals());
+        assertEquals(0, export.totalEnergy(), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void read_outOfRangeThrows() {
+        MappedCsvExport.wrap(CsvFormat.HEADER.getBytes(StandardCharsets.UTF_8))
+                .read(0, new MappedCsvExport.Row());
+    }
+}
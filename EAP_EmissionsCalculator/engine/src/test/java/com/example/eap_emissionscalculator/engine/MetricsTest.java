@@ -0,0 +1,45 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void report_listsOperationsAndCounters() {
+        Metrics metrics = new Metrics();
+        Metrics.Operation calculate = metrics.operation("calculate");
+        Metrics.Operation export = metrics.operation("export");
+        Metrics.Counter rows = metrics.counter("rows.bound");
+
+        calculate.record(2_000_000);
+        calculate.recordAllocation(100);
+        calculate.recordAllocation(300);
+        rows.add(42);
+
+        String[] lines = metrics.report().split("\n");
+        assertTrue(lines[1].startsWith("calculate"));
+        assertTrue(lines[1].matches("calculate +1 +2\\.000 +2\\.000 +2\\.000 +2\\.000 +200"));
+        assertTrue(lines[2].matches("export +0 +0\\.000 +0\\.000 +0\\.000 +0\\.000 +-"));
+        assertTrue(lines[4].matches("rows\\.bound +42"));
+        assertEquals(200, calculate.allocatedBytesPerRun());
+        assertEquals(-1, export.allocatedBytesPerRun());
+    }
+
+    @Test
+    public void reset_clearsOperationsAndCounters() {
+        Metrics metrics = new Metrics();
+        Metrics.Operation calculate = metrics.operation("calculate");
+        Metrics.Counter rows = metrics.counter("rows");
+        calculate.record(10);
+        calculate.recordAllocation(10);
+        rows.increment();
+
+        metrics.reset();
+
+        assertEquals(0, calculate.latency().count());
+        assertEquals(-1, calculate.allocatedBytesPerRun());
+        assertEquals(0, rows.get());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class RecalculationTest {
+
+    private static final String TWO_SETS = "{\"format\": 1, \"version\": 1, \"default\": \"old\","
+            + "\"sources\": [{\"id\": \"gas\", \"name\": \"Газ\", \"unit\": \"м³\"},"
+            + "              {\"id\": \"power\", \"name\": \"Ток\", \"unit\": \"kWh\"}],"
+            + "\"factorSets\": ["
+            + "  {\"id\": \"old\", \"region\": \"BG\", \"year\": 2020,"
+            + "   \"factors\": {\"gas\": [10, 2], \"power\": [1, 0.9]}},"
+            + "  {\"id\": \"new\", \"region\": \"BG\", \"year\": 2024,"
+            + "   \"factors\": {\"gas\": [10, 1.7], \"power\": [1, 0.43]}}]}";
+
+    @Test
+    public void repin_recalculatesEveryRowAndTotals() throws IOException {
+        FactorCatalogue catalogue = parse(TWO_SETS);
+        RecordStore records = history(catalogue, 30_000);
+
+        Recalculation.Result result = Recalculation.run(records, catalogue, 1, ForkJoinPool.commonPool());
+
+        EmissionsEngine engine = catalogue.engine(1);
+        double expected = 0;
+        for (int row = 0; row < records.size(); row++) {
+            assertEquals(1, records.factorSet(row));
+            assertEquals(engine.emissions(records.sourceIndex(row), records.quantity(row)),
+                    records.emissions(row), 0);
+            expected += records.emissions(row);
+        }
+        assertEquals(expected, result.totals.emissions(), 1e-6);
+        assertEquals(records.size(), result.totals.count());
+        assertEquals(records.size(), result.changedRows);
+    }
+
+    @Test
+    public void exactCatalogue_roundsRowsAndTotalsTheirSum() throws IOException {
+        FactorCatalogue catalogue = parse(TWO_SETS).withExactArithmetic(true);
+        RecordStore records = history(catalogue, 10_000);
+
+        Recalculation.Result result = Recalculation.run(records, catalogue, 1, ForkJoinPool.commonPool());
+
+        long emissions = 0;
+        for (int row = 0; row < records.size(); row++) {
+            long hundredths = FixedPoint.hundredths(records.emissions(row));
+            assertEquals(FixedPoint.toDouble(hundredths), records.emissions(row), 0);
+            emissions += hundredths;
+        }
+        assertTrue(result.totals.isExact());
+        assertEquals(FixedPoint.toDouble(emissions), result.totals.emissions(), 0);
+    }
+
+    @Test
+    public void totals_doNotDependOnParallelism() throws IOException {
+        FactorCatalogue catalogue = parse(TWO_SETS);
+        RecordStore history = history(catalogue, 50_000);
+
+        Recalculation.Result single = Recalculation.run(history.copy(), catalogue, 1, new ForkJoinPool(1));
+        Recalculation.Result parallel = Recalculation.run(history.copy(), catalogue, 1, new ForkJoinPool(4));
+
+        assertEquals(Double.doubleToLongBits(single.totals.energy()),
+                Double.doubleToLongBits(parallel.totals.energy()));
+        assertEquals(Double.doubleToLongBits(single.totals.emissions()),
+                Double.doubleToLongBits(parallel.totals.emissions()));
+        assertEquals(Double.doubleToLongBits(single.totals.sourceEmissions(1)),
+                Double.doubleToLongBits(parallel.totals.sourceEmissions(1)));
+    }
+
+    @Test
+    public void keepFactorSet_changesNothingThatIsUpToDate() throws IOException {
+        FactorCatalogue catalogue = parse(TWO_SETS);
+        RecordStore records = history(catalogue, 5000);
+
+        Recalculation.Result result = Recalculation.run(records, catalogue,
+                Recalculation.KEEP_FACTOR_SET, ForkJoinPool.commonPool());
+
+        assertEquals(0, result.changedRows);
+        assertEquals(0, Recalculation.run(new RecordStore(), catalogue, 1,
+                ForkJoinPool.commonPool()).totals.count());
+    }
+
+    private static RecordStore history(FactorCatalogue catalogue, int rows) {
+        RecordBatch batch = new RecordBatch(rows);
+        Random random = new Random(17);
+        for (int i = 0; i < rows; i++) {
+            batch.add(random.nextInt(2), 0, random.nextDouble() * 500);
+        }
+        catalogue.calculate(batch);
+        RecordStore records = new RecordStore(rows);
+        records.addAll(batch);
+        return records;
+    }
+
+    private static FactorCatalogue parse(String json) throws IOException {
+        return FactorCatalogue.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
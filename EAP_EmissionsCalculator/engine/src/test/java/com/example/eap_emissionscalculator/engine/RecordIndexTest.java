@@ -0,0 +1,133 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecordIndexTest {
+
+    private static final int SOURCES = 5;
+
+    @Test
+    public void select_matchesScanAcrossFilters() {
+        Random random = new Random(42);
+        RecordStore store = new RecordStore();
+        for (int i = 0; i < 2000; i++) {
+            addRandom(store, random);
+        }
+        RecordIndex index = new RecordIndex(store, SOURCES);
+        RecordIndex.Selection selection = new RecordIndex.Selection(SOURCES);
+
+        RecordIndex.Filter[] filters = {
+                new RecordIndex.Filter(RecordIndex.ANY_SOURCE, Double.NEGATIVE_INFINITY,
+                        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY),
+                new RecordIndex.Filter(3, Double.NEGATIVE_INFINITY,
+                        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY),
+                new RecordIndex.Filter(RecordIndex.ANY_SOURCE, 10, 12, Double.NEGATIVE_INFINITY),
+                new RecordIndex.Filter(RecordIndex.ANY_SOURCE, Double.NEGATIVE_INFINITY,
+                        Double.POSITIVE_INFINITY, 290),
+                new RecordIndex.Filter(1, 20, 80, 50),
+                new RecordIndex.Filter(RecordIndex.ANY_SOURCE, 10, 90, 5),
+                new RecordIndex.Filter(2, 50, 40, Double.NEGATIVE_INFINITY),
+        };
+        for (RecordIndex.Filter filter : filters) {
+            index.select(filter, selection);
+            assertSameAsScan(store, filter, selection);
+        }
+    }
+
+    @Test
+    public void updates_keepIndexConsistentWithStore() {
+        Random random = new Random(7);
+        RecordStore store = new RecordStore();
+        RecordIndex index = new RecordIndex(store, SOURCES);
+
+        // Single rows, then a page at a time like the history loader
+        for (int i = 0; i < 50; i++) {
+            addRandom(store, random);
+            index.added(store.size() - 1, store.size());
+        }
+        int from = store.size();
+        for (int i = 0; i < 500; i++) {
+            addRandom(store, random);
+        }
+        index.added(from, store.size());
+
+        for (int i = 0; i < 200; i++) {
+            int row = random.nextInt(store.size());
+            double oldQuantity = store.quantity(row);
+            double oldEmissions = store.emissions(row);
+            double quantity = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 100;
+            store.setQuantity(row, quantity, quantity * 2, quantity * 3);
+            index.changed(row, oldQuantity, oldEmissions);
+        }
+
+        store.truncate(400);
+        index.truncated(400);
+        assertEquals(400, index.size());
+
+        RecordIndex.Selection selection = new RecordIndex.Selection(SOURCES);
+        RecordIndex.Filter filter = new RecordIndex.Filter(RecordIndex.ANY_SOURCE, 25, 75, 100);
+        index.select(filter, selection);
+        assertSameAsScan(store, filter, selection);
+
+        filter = new RecordIndex.Filter(4, 0, 0, Double.NEGATIVE_INFINITY);
+        index.select(filter, selection);
+        assertSameAsScan(store, filter, selection);
+    }
+
+    @Test
+    public void rebuild_followsSwappedStore() {
+        RecordStore store = new RecordStore();
+        store.add(0, 0, 0, 0, 1, 2, 3);
+        RecordIndex index = new RecordIndex(store, SOURCES);
+
+        RecordStore other = new RecordStore();
+        other.add(2, 0, 0, 0, 5, 10, 15);
+        other.add(2, 0, 0, 0, 6, 12, 18);
+        store.swap(other);
+        index.rebuild();
+
+        RecordIndex.Selection selection = new RecordIndex.Selection(SOURCES);
+        index.select(new RecordIndex.Filter(2, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY), selection);
+        assertEquals(2, selection.size());
+        assertEquals(33, selection.totals().emissions(), 1e-9);
+        assertEquals(1, selection.indexOf(1));
+        assertEquals(-1, selection.indexOf(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void added_rejectsRowsOutOfOrder() {
+        RecordStore store = new RecordStore();
+        RecordIndex index = new RecordIndex(store, SOURCES);
+        store.add(0, 0, 0, 0, 1, 1, 1);
+        store.add(0, 0, 0, 0, 1, 1, 1);
+        index.added(1, 2);
+    }
+
+    private static void addRandom(RecordStore store, Random random) {
+        // Coarse quantities so that many rows share a key
+        double quantity = random.nextInt(100);
+        store.add(random.nextInt(SOURCES), 0, 0, 0, quantity, quantity * 2,
+                quantity * (1 + random.nextInt(3)));
+    }
+
+    private static void assertSameAsScan(RecordStore store, RecordIndex.Filter filter,
+                                         RecordIndex.Selection selection) {
+        RunningTotals expected = new RunningTotals(SOURCES);
+        int matched = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (filter.source != RecordIndex.ANY_SOURCE && store.sourceIndex(row) != filter.source) continue;
+            if (store.quantity(row) < filter.minQuantity || store.quantity(row) > filter.maxQuantity) continue;
+            if (store.emissions(row) < filter.minEmissions) continue;
+            assertEquals(row, selection.row(matched++));
+            expected.add(store.sourceIndex(row), store.energy(row), store.emissions(row));
+        }
+        assertEquals(matched, selection.size());
+        assertEquals(expected.energy(), selection.totals().energy(), 1e-9);
+        assertEquals(expected.emissions(), selection.totals().emissions(), 1e-9);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RecordStoreTest {
+
+    @Test
+    public void addAll_copiesCalculatedBatchAndGrows() {
+        FactorCatalogue catalogue = FactorCatalogue.bundled();
+        RecordBatch batch = new RecordBatch();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(i % 13, 0, i % 5, 1000L + i, i * 0.5);
+        }
+        catalogue.calculate(batch);
+
+        RecordStore store = new RecordStore(4);
+        store.add(2, 0, 1, 10L, 3, 30, 6);
+        int first = store.addAll(batch);
+
+        assertEquals(1, first);
+        assertEquals(1001, store.size());
+        assertEquals(batch.sourceIndex(700), store.sourceIndex(701));
+        assertEquals(batch.site(700), store.site(701));
+        assertEquals(batch.createdAt(700), store.createdAt(701));
+        assertEquals(batch.quantity(700), store.quantity(701), 0);
+        assertEquals(batch.emissions(700), store.emissions(701), 0);
+    }
+
+    @Test
+    public void ids_stayStableAndAreNotReusedAfterClear() {
+        RecordStore store = new RecordStore();
+        store.add(0, 0, 0, 0, 1, 1, 1);
+        store.add(1, 0, 0, 0, 2, 2, 2);
+        int second = store.id(1);
+        assertEquals(1, store.rowOf(second));
+
+        store.clear();
+        assertEquals(-1, store.rowOf(second));
+
+        store.add(3, 0, 0, 0, 4, 4, 4);
+        assertNotEquals(second, store.id(0));
+        assertEquals(0, store.rowOf(store.id(0)));
+    }
+
+    @Test
+    public void truncate_reusesIdsOfRemovedRows() {
+        RecordStore store = new RecordStore();
+        store.add(0, 0, 0, 0, 1, 1, 1);
+        store.add(1, 0, 0, 0, 2, 2, 2);
+        int second = store.id(1);
+
+        store.truncate(1);
+        assertEquals(1, store.size());
+        assertEquals(-1, store.rowOf(second));
+
+        store.add(1, 0, 0, 0, 2, 2, 2);
+        assertEquals(second, store.id(1));
+    }
+
+    @Test
+    public void removeAll_movesRecordsAndSwapRestoresThem() {
+        RecordStore store = new RecordStore();
+        store.add(0, 0, 0, 0, 1, 1, 1);
+        store.add(1, 0, 0, 0, 2, 20, 4);
+        int second = store.id(1);
+
+        RecordStore removed = store.removeAll();
+        assertTrue(store.isEmpty());
+        assertEquals(2, removed.size());
+        assertEquals(20, removed.energy(1), 0);
+        store.add(2, 0, 0, 0, 3, 3, 3);
+        assertNotEquals(second, store.id(0));
+
+        store.truncate(0);
+        store.swap(removed);
+        assertEquals(2, store.size());
+        assertEquals(1, store.rowOf(second));
+        assertEquals(4, store.emissions(1), 0);
+    }
+
+    @Test
+    public void copy_isIndependentSnapshot() {
+        RecordStore store = new RecordStore();
+        store.add(0, 0, 0, 0, 1, 10, 2);
+        RecordStore copy = store.copy();
+
+        store.setQuantity(0, 5, 50, 10);
+        store.add(1, 0, 0, 0, 1, 1, 1);
+
+        assertEquals(1, copy.size());
+        assertEquals(1.0, copy.quantity(0), 0);
+        assertEquals(10.0, copy.energy(0), 0);
+        assertEquals(store.id(0), copy.id(0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RollupsTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Sofia");
+
+    @Test
+    public void groups_matchRecomputedSubtotalsAfterEdits() {
+        Rollups rollups = new Rollups(ZONE);
+        Random random = new Random(11);
+        int rows = 5000;
+        int[] source = new int[rows];
+        int[] site = new int[rows];
+        long[] createdAt = new long[rows];
+        double[] energy = new double[rows];
+        long start = at(2025, 1, 1, 0);
+        for (int i = 0; i < rows; i++) {
+            source[i] = random.nextInt(13);
+            site[i] = random.nextInt(200);
+            createdAt[i] = start + (long) i * 3_600_000L * 4;
+            energy[i] = random.nextDouble() * 1000;
+            rollups.add(source[i], site[i], createdAt[i], energy[i], energy[i] / 4);
+        }
+        for (int i = 0; i < rows; i += 7) {
+            double newEnergy = random.nextDouble() * 1000;
+            rollups.replace(source[i], site[i], createdAt[i], energy[i], energy[i] / 4,
+                    newEnergy, newEnergy / 4);
+            energy[i] = newEnergy;
+        }
+
+        Rollup bySiteMonth = rollups.bySiteMonth();
+        for (int group = 0; group < bySiteMonth.size(); group++) {
+            long key = bySiteMonth.key(group);
+            double expected = 0;
+            int count = 0;
+            for (int i = 0; i < rows; i++) {
+                if (Rollups.siteMonthKey(site[i], rollups.monthKey(createdAt[i])) == key) {
+                    expected += energy[i];
+                    count++;
+                }
+            }
+            assertEquals(expected, bySiteMonth.energy(group), 1e-9);
+            assertEquals(expected / 4, bySiteMonth.emissions(group), 1e-9);
+            assertEquals(count, bySiteMonth.count(group));
+        }
+        assertEquals(200, rollups.bySite().size());
+        assertEquals(13, rollups.bySource().size());
+    }
+
+    @Test
+    public void monthKey_followsLocalCalendarAcrossMonthBoundaries() {
+        Rollups rollups = new Rollups(ZONE);
+
+        int march = rollups.monthKey(at(2026, 3, 31, 23));
+        int april = rollups.monthKey(at(2026, 4, 1, 0));
+        int januaryNextYear = rollups.monthKey(at(2027, 1, 15, 12));
+
+        assertEquals(2026, Rollups.year(march));
+        assertEquals(3, Rollups.monthOfYear(march));
+        assertEquals(1, Rollups.quarter(march));
+        assertEquals(4, Rollups.monthOfYear(april));
+        assertEquals(2, Rollups.quarter(april));
+        assertEquals(march, rollups.monthKey(at(2026, 3, 1, 0)));
+        assertEquals(2027, Rollups.year(januaryNextYear));
+        assertEquals(1, Rollups.monthOfYear(januaryNextYear));
+    }
+
+    @Test
+    public void rollup_keepsGroupsSortedAndRemovesToZero() {
+        Rollup rollup = new Rollup();
+        for (long key = 40; key > 0; key -= 2) {
+            rollup.add(key, key, key / 2.0);
+        }
+        rollup.add(7, 1, 1);
+        rollup.remove(7, 1, 1);
+
+        assertEquals(21, rollup.size());
+        for (int i = 1; i < rollup.size(); i++) {
+            assertTrue(rollup.key(i - 1) < rollup.key(i));
+        }
+        int seven = rollup.indexOf(7);
+        assertEquals(0, rollup.count(seven));
+        assertEquals(0.0, rollup.energy(seven), 0);
+        assertEquals(-1, rollup.indexOf(9));
+    }
+
+    private static long at(int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).atZone(ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RunningTotalsTest {
+
+    @Test
+    public void addAndReplace_trackTotalsAndSubtotals() {
+        RunningTotals totals = new RunningTotals(3);
+        totals.add(0, 10, 1);
+        totals.add(2, 5, 2);
+        totals.add(0, 1, 0.5);
+        totals.replace(0, 10, 1, 20, 3);
+
+        assertEquals(26.0, totals.energy(), 0);
+        assertEquals(5.5, totals.emissions(), 0);
+        assertEquals(21.0, totals.sourceEnergy(0), 0);
+        assertEquals(3.5, totals.sourceEmissions(0), 0);
+        assertEquals(2, totals.sourceCount(0));
+        assertEquals(0, totals.sourceCount(1));
+        assertEquals(3, totals.count());
+    }
+
+    @Test
+    public void exact_sumsWholeHundredths() {
+        RunningTotals totals = new RunningTotals(2, true);
+        for (int i = 0; i < 1000; i++) {
+            totals.add(i % 2, 0.1, 0.01);
+        }
+        totals.replace(0, 0.1, 0.01, 0.2, 0.02);
+        totals.remove(1, 0.1, 0.01);
+
+        assertTrue(totals.isExact());
+        assertEquals(100.0, totals.energy(), 0);
+        assertEquals(10.0, totals.emissions(), 0);
+        assertEquals(5.01, totals.sourceEmissions(0), 0);
+
+        RunningTotals merged = new RunningTotals(2, true);
+        merged.addAll(totals);
+        merged.addAll(totals);
+        assertEquals(20.0, merged.emissions(), 0);
+        assertEquals(1998, merged.count());
+    }
+
+    @Test
+    public void removingEverything_returnsToZero() {
+        RunningTotals totals = new RunningTotals(1);
+        double[] values = new double[1000];
+        Random random = new Random(7);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 1e6;
+            totals.add(0, values[i], values[i] / 3);
+        }
+        for (double value : values) {
+            totals.remove(0, value, value / 3);
+        }
+
+        assertEquals(0.0, totals.energy(), 1e-9);
+        assertEquals(0.0, totals.emissions(), 1e-9);
+        assertEquals(0, totals.count());
+    }
+
+    @Test
+    public void manyEdits_stayCloseToExactSum() {
+        RunningTotals totals = new RunningTotals(1);
+        double[] values = new double[5000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 1000;
+            totals.add(0, values[i], 0);
+        }
+        for (int edit = 0; edit < 50000; edit++) {
+            int row = random.nextInt(values.length);
+            double next = random.nextDouble() * 1000;
+            totals.replace(0, values[row], 0, next, 0);
+            values[row] = next;
+        }
+
+        BigDecimal exact = BigDecimal.ZERO;
+        for (double value : values) {
+            exact = exact.add(new BigDecimal(value));
+        }
+        assertEquals(exact.doubleValue(), totals.energy(), 1e-9);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ScenarioEngineTest {
+
+    private static final int SITES = 4;
+
+    private final FactorCatalogue catalogue = FactorCatalogue.bundled();
+    private final int set = catalogue.defaultFactorSet();
+    private final int oil = catalogue.sourceIndex("heating_oil");
+    private final int gas = catalogue.sourceIndex("natural_gas");
+    private final int pellets = catalogue.sourceIndex("wood_pellets");
+
+    @Test
+    public void evaluate_matchesRecalculatingEachRecord() {
+        RecordStore records = history(50_000);
+        ScenarioEngine engine = new ScenarioEngine(catalogue, set);
+        ScenarioEngine.Baseline baseline = ScenarioEngine.baseline(records, catalogue.sourceCount(),
+                SITES, ForkJoinPool.commonPool());
+
+        ScenarioEngine.Scenario scenario = new ScenarioEngine.Scenario("oil to gas", Arrays.asList(
+                new ScenarioEngine.Substitution(oil, gas, 0.5, 1),
+                new ScenarioEngine.Substitution(oil, pellets, 0.5, 1),
+                new ScenarioEngine.Substitution(oil, gas, 1, 2)));
+        ScenarioEngine.Outcome outcome = engine.evaluate(baseline, scenario);
+
+        FactorCatalogue.FactorSet factors = catalogue.factorSet(set);
+        double gasIntensity = factors.emissionFactor(gas) / factors.energyFactor(gas);
+        double pelletIntensity = factors.emissionFactor(pellets) / factors.energyFactor(pellets);
+        double expected = 0;
+        double switched = 0;
+        for (int row = 0; row < records.size(); row++) {
+            double emissions = records.emissions(row);
+            if (records.sourceIndex(row) == oil && records.site(row) == 1) {
+                emissions = records.energy(row) * (0.5 * gasIntensity + 0.5 * pelletIntensity);
+                switched += records.energy(row);
+            } else if (records.sourceIndex(row) == oil && records.site(row) == 2) {
+                emissions = records.energy(row) * gasIntensity;
+                switched += records.energy(row);
+            }
+            expected += emissions;
+        }
+        assertEquals(expected, outcome.emissions, expected * 1e-12);
+        assertEquals(baseline.totalEmissions() - expected, outcome.saved, expected * 1e-12);
+        assertEquals(switched, outcome.energySwitched, switched * 1e-12);
+        assertTrue(outcome.saved > 0);
+    }
+
+    @Test
+    public void rank_ordersBySavingWhateverThePool() {
+        RecordStore records = history(100_000);
+        ScenarioEngine engine = new ScenarioEngine(catalogue, set);
+        List<ScenarioEngine.Scenario> scenarios = new ArrayList<>();
+        for (int from = 0; from < catalogue.sourceCount(); from++) {
+            for (int to = 0; to < catalogue.sourceCount(); to++) {
+                if (from == to || !(catalogue.factorSet(set).energyFactor(to) > 0)) continue;
+                scenarios.add(new ScenarioEngine.Scenario(from + "->" + to, Collections.singletonList(
+                        new ScenarioEngine.Substitution(from, to, 1, ScenarioEngine.ALL_SITES))));
+            }
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            ScenarioEngine.Baseline one = ScenarioEngine.baseline(records, catalogue.sourceCount(),
+                    SITES, single);
+            ScenarioEngine.Baseline four = ScenarioEngine.baseline(records, catalogue.sourceCount(),
+                    SITES, several);
+            assertEquals(one.totalEmissions(), four.totalEmissions(), 0);
+
+            List<ScenarioEngine.Outcome> ranked = engine.rank(four, scenarios, several);
+            assertEquals(scenarios.size(), ranked.size());
+            for (int i = 1; i < ranked.size(); i++) {
+                assertTrue(ranked.get(i - 1).saved >= ranked.get(i).saved);
+            }
+            for (ScenarioEngine.Outcome outcome : ranked) {
+                assertEquals(engine.evaluate(one, outcome.scenario).saved, outcome.saved, 0);
+            }
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void evaluate_rejectsSwitchingMoreThanAll() {
+        ScenarioEngine.Baseline baseline = ScenarioEngine.baseline(history(10), catalogue.sourceCount(),
+                SITES, ForkJoinPool.commonPool());
+        new ScenarioEngine(catalogue, set).evaluate(baseline, new ScenarioEngine.Scenario("too much",
+                Arrays.asList(new ScenarioEngine.Substitution(oil, gas, 0.75, ScenarioEngine.ALL_SITES),
+                        new ScenarioEngine.Substitution(oil, pellets, 0.5, 3))));
+    }
+
+    private RecordStore history(int rows) {
+        RecordBatch batch = new RecordBatch(rows);
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(random.nextInt(catalogue.sourceCount()), set, random.nextInt(SITES), 0,
+                    random.nextDouble() * 1000);
+        }
+        catalogue.calculate(batch);
+        RecordStore records = new RecordStore(rows);
+        records.addAll(batch);
+        return records;
+    }
+}
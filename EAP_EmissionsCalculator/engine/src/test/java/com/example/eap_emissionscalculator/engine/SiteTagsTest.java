@@ -0,0 +1,44 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SiteTagsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void intern_assignsStableIdsThatSurviveSaveAndLoad() throws IOException {
+        SiteTags tags = new SiteTags();
+        int school = tags.intern("Училище №3");
+        int office = tags.intern(" Офис София ");
+
+        assertEquals(SiteTags.NONE, tags.intern("  "));
+        assertEquals(school, tags.intern("Училище №3"));
+        assertEquals(office, tags.id("Офис София"));
+
+        File path = new File(folder.getRoot(), "sites.txt");
+        tags.save(path);
+        SiteTags loaded = SiteTags.load(path);
+
+        assertEquals(3, loaded.size());
+        assertEquals("Училище №3", loaded.name(school));
+        assertEquals(office, loaded.id("Офис София"));
+        assertEquals(3, loaded.intern("Склад"));
+    }
+
+    @Test
+    public void load_missingFileGivesNoTags() throws IOException {
+        SiteTags tags = SiteTags.load(new File(folder.getRoot(), "missing.txt"));
+
+        assertEquals(1, tags.size());
+        assertEquals(-1, tags.id("Склад"));
+    }
+}
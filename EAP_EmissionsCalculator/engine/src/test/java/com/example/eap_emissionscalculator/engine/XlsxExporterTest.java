@@ -0,0 +1,136 @@
+package com.example.eap_emissionscalculator.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+public class XlsxExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void export_writesWorkbookParts() throws Exception {
+        File file = folder.newFile();
+        RecordBatch batch = new RecordBatch();
+        batch.add(0, 10);
+        new EmissionsEngine(EnergySources.defaults()).calculate(batch);
+
+        assertTrue(new XlsxExporter().export(file, EnergySources.defaults(), batch,
+                batch.totalEnergy(), batch.totalEmissions(), null, null));
+
+        Map<String, String> parts = read(file);
+        assertTrue(parts.containsKey("[Content_Types].xml"));
+        assertTrue(parts.containsKey("_rels/.rels"));
+        assertTrue(parts.containsKey("xl/workbook.xml"));
+        assertTrue(parts.containsKey("xl/_rels/workbook.xml.rels"));
+        assertTrue(parts.containsKey("xl/styles.xml"));
+        assertTrue(parts.containsKey("xl/sharedStrings.xml"));
+        assertTrue(parts.containsKey("xl/worksheets/sheet1.xml"));
+    }
+
+    @Test
+    public void export_writesSharedStringsAndNumericCells() throws Exception {
+        List<EnergySource> sources = new ArrayList<>(EnergySources.defaults());
+        sources.add(new EnergySource("Смес <A & B>", "kg", 1.5, 0.25));
+        int mixed = sources.size() - 1;
+
+        RecordBatch batch = new RecordBatch();
+        batch.add(mixed, 2);
+        batch.add(mixed, 4.5);
+        new EmissionsEngine(sources).calculate(batch);
+
+        File file = folder.newFile();
+        new XlsxExporter().export(file, sources, batch, 9.75, 1.625, null, null);
+        Map<String, String> parts = read(file);
+
+        String strings = parts.get("xl/sharedStrings.xml");
+        assertTrue(strings.contains("<t xml:space=\"preserve\">Източник</t>"));
+        assertTrue(strings.contains("<t xml:space=\"preserve\">ОБЩО</t>"));
+        assertTrue(strings.contains("<t xml:space=\"preserve\">Смес &lt;A &amp; B&gt;</t>"));
+
+        int name = sharedStrings(strings).indexOf("Смес <A & B>");
+        String sheet = parts.get("xl/worksheets/sheet1.xml");
+        assertTrue(sheet.contains("<row r=\"2\"><c t=\"s\"><v>" + name + "</v></c><c><v>2.0</v></c>"));
+        assertTrue(sheet.contains("<row r=\"3\"><c t=\"s\"><v>" + name + "</v></c><c><v>4.5</v></c>"));
+        assertTrue(sheet.contains("<c s=\"2\"><v>" + batch.energy(1) + "</v></c>"));
+        assertTrue(sheet.contains("<row r=\"4\"><c t=\"s\"><v>" + CsvFormat.COLUMNS.length + "</v></c>"
+                + "<c/><c/><c s=\"2\"><v>9.75</v></c><c s=\"2\"><v>1.625</v></c></row>"));
+        assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+    }
+
+    @Test
+    public void export_sharesRepeatedUnits() throws Exception {
+        File file = folder.newFile();
+        new XlsxExporter().export(file, EnergySources.defaults(), new RecordBatch(), 0, 0, null, null);
+
+        String strings = read(file).get("xl/sharedStrings.xml");
+        List<String> values = sharedStrings(strings);
+        assertTrue(values.contains("kg"));
+        assertEquals(values.indexOf("kg"), values.lastIndexOf("kg"));
+    }
+
+    @Test
+    public void export_nonFiniteValueIsErrorCell() throws Exception {
+        File file = folder.newFile();
+        new XlsxExporter().export(file, EnergySources.defaults(), new RecordBatch(),
+                Double.NaN, Double.POSITIVE_INFINITY, null, null);
+
+        String sheet = read(file).get("xl/worksheets/sheet1.xml");
+        assertTrue(sheet.contains("<c t=\"e\"><v>#NUM!</v></c><c t=\"e\"><v>#NUM!</v></c></row>"));
+    }
+
+    @Test
+    public void export_cancelledDeletesFile() throws Exception {
+        RecordBatch batch = new RecordBatch();
+        batch.add(0, 1);
+        File file = folder.newFile();
+
+        boolean completed = new XlsxExporter().export(file, EnergySources.defaults(), batch,
+                0, 0, null, () -> true);
+
+        assertFalse(completed);
+        assertFalse(file.exists());
+    }
+
+    private static List<String> sharedStrings(String xml) {
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        while ((start = xml.indexOf("<t xml:space=\"preserve\">", start)) >= 0) {
+            start = xml.indexOf('>', start) + 1;
+            int end = xml.indexOf("</t>", start);
+            values.add(xml.substring(start, end)
+                    .replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&"));
+            start = end;
+        }
+        return values;
+    }
+
+    private static Map<String, String> read(File file) throws Exception {
+        Map<String, String> parts = new HashMap<>();
+        try (ZipFile zip = new ZipFile(file)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    in.transferTo(out);
+                    parts.put(entry.getName(), out.toString(StandardCharsets.UTF_8.name()));
+                }
+            }
+        }
+        return parts;
+    }
+}
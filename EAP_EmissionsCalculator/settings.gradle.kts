@@ -21,4 +21,8 @@ dependencyResolutionManagement {
 
 rootProject.name = "EAP_EmissionsCalculator"
 include(":app")
+include(":engine")
+include(":benchmarks")
+include(":cli")
+include(":baselineprofile")
  
\ No newline at end of file